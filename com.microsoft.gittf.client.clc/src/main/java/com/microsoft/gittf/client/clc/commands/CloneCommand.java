@@ -111,6 +111,11 @@ public class CloneCommand
 
         new SwitchArgument("mentions", Messages.getString("Command.Argument.Mentions.HelpText")), //$NON-NLS-1$ //$NON-NLS-2$
 
+        new ValueArgument("download-threads", //$NON-NLS-1$
+            Messages.getString("Command.Argument.DownloadThreads.ValueDescription"), //$NON-NLS-1$
+            Messages.getString("Command.Argument.DownloadThreads.HelpText"), //$NON-NLS-1$
+            ArgumentOptions.VALUE_REQUIRED),
+
         new FreeArgument("projectcollection", //$NON-NLS-1$
             Messages.getString("Command.Argument.ProjectCollection.HelpText"), //$NON-NLS-1$
             ArgumentOptions.REQUIRED),
@@ -168,6 +173,7 @@ public class CloneCommand
         }
 
         final boolean tag = getTagFromArguments();
+        final int downloadThreads = getDownloadThreadsFromArguments();
 
         final URI serverURI = URIUtil.getServerURI(collection);
         tfsPath = ServerPath.canonicalize(tfsPath);
@@ -213,6 +219,11 @@ public class CloneCommand
             cloneTask.setVersionSpec(versionSpec);
             cloneTask.setTag(tag);
 
+            if (downloadThreads > 0)
+            {
+                cloneTask.setDownloadThreads(downloadThreads);
+            }
+
             final TaskStatus cloneStatus = new CommandTaskExecutor(getProgressMonitor()).execute(cloneTask);
 
             if (!cloneStatus.isOK())
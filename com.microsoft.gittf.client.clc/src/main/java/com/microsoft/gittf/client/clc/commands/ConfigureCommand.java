@@ -31,6 +31,7 @@ import java.text.MessageFormat;
 import org.eclipse.jgit.lib.Repository;
 
 import com.microsoft.gittf.client.clc.ExitCode;
+import com.microsoft.gittf.client.clc.Main;
 import com.microsoft.gittf.client.clc.Messages;
 import com.microsoft.gittf.client.clc.arguments.Argument;
 import com.microsoft.gittf.client.clc.arguments.ArgumentOptions;
@@ -42,6 +43,8 @@ import com.microsoft.gittf.client.clc.commands.framework.Command;
 import com.microsoft.gittf.client.clc.commands.framework.CommandTaskExecutor;
 import com.microsoft.gittf.core.config.GitTFConfiguration;
 import com.microsoft.gittf.core.tasks.ConfigureRepositoryTask;
+import com.microsoft.gittf.core.tasks.CreateWorkspaceTask;
+import com.microsoft.gittf.core.tasks.DeleteReusableWorkspaceTask;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.util.StringUtil;
 import com.microsoft.gittf.core.util.URIUtil;
@@ -126,6 +129,18 @@ public class ConfigureCommand
             new SwitchArgument("ignore-author", Messages.getString("CheckinCommand.Argument.IgnoreAuthor.HelpText")) //$NON-NLS-1$ //$NON-NLS-2$
         ),
 
+        new ChoiceArgument(Messages.getString("ConfigureCommand.Argument.ReuseWorkspaceChoice.HelpText"), //$NON-NLS-1$
+            /*
+             * Users can specify one of --reuse-workspace or
+             * --no-reuse-workspace (Default: no-reuse-workspace).
+             */
+            new SwitchArgument("reuse-workspace", //$NON-NLS-1$
+                Messages.getString("ConfigureCommand.Argument.ReuseWorkspace.HelpText")), //$NON-NLS-1$
+
+            new SwitchArgument("no-reuse-workspace", //$NON-NLS-1$
+                Messages.getString("ConfigureCommand.Argument.NoReuseWorkspace.HelpText")) //$NON-NLS-1$
+        ),
+
         new ValueArgument("user-map", //$NON-NLS-1$
             Messages.getString("CheckinCommand.Argument.UserMap.ValueDescription"), //$NON-NLS-1$
             Messages.getString("CheckinCommand.Argument.UserMap.HelpText"), //$NON-NLS-1$)
@@ -236,6 +251,8 @@ public class ConfigureCommand
                 !getArguments().contains("gated") && //$NON-NLS-1$
                 !getArguments().contains("keep-author") && //$NON-NLS-1$
                 !getArguments().contains("ignore-author") && //$NON-NLS-1$
+                !getArguments().contains("reuse-workspace") && //$NON-NLS-1$
+                !getArguments().contains("no-reuse-workspace") && //$NON-NLS-1$
                 !getArguments().contains("username") && //$NON-NLS-1$
                 !getArguments().contains("password") && //$NON-NLS-1$
                 !getArguments().contains("user-map")) //$NON-NLS-1$ 
@@ -288,6 +305,15 @@ public class ConfigureCommand
             configureTask.setKeepAuthor(false);
         }
 
+        if (getArguments().contains("reuse-workspace")) //$NON-NLS-1$
+        {
+            configureTask.setReuseWorkspace(true);
+        }
+        else if (getArguments().contains("no-reuse-workspace")) //$NON-NLS-1$
+        {
+            configureTask.setReuseWorkspace(false);
+        }
+
         if (getArguments().contains("user-map")) //$NON-NLS-1$
         {
             final String userMap = ((ValueArgument) getArguments().getArgument("user-map")).getValue(); //$NON-NLS-1$
@@ -311,6 +337,23 @@ public class ConfigureCommand
 
         configureTask.setTempDirectory(null);
 
+        /*
+         * The kept workspace would not be found again if the repository is
+         * bound to another server path, delete it while the repository is
+         * still configured for the server it was created on
+         */
+        if (currentConfiguration != null && CreateWorkspaceTask.getReusableWorkspaceName(repository) != null)
+        {
+            final boolean serverPathChanged =
+                !serverURI.equals(currentConfiguration.getServerURI())
+                    || !ServerPath.equals(tfsPath, currentConfiguration.getServerPath());
+
+            if (serverPathChanged || getArguments().contains("no-reuse-workspace")) //$NON-NLS-1$
+            {
+                deleteReusableWorkspace(repository);
+            }
+        }
+
         TaskStatus configureStatus = new CommandTaskExecutor(getProgressMonitor()).execute(configureTask);
 
         if (!configureStatus.isOK())
@@ -321,6 +364,28 @@ public class ConfigureCommand
         return ExitCode.SUCCESS;
     }
 
+    private void deleteReusableWorkspace(final Repository repository)
+    {
+        try
+        {
+            final TaskStatus deleteStatus =
+                new CommandTaskExecutor(getProgressMonitor()).execute(new DeleteReusableWorkspaceTask(
+                    repository,
+                    getVersionControlClient()));
+
+            if (!deleteStatus.isOK())
+            {
+                Main.printWarning(Messages.formatString("ConfigureCommand.CouldNotDeleteWorkspaceFormat", //$NON-NLS-1$
+                    deleteStatus.getMessage()));
+            }
+        }
+        catch (Exception e)
+        {
+            Main.printWarning(Messages.formatString("ConfigureCommand.CouldNotDeleteWorkspaceFormat", //$NON-NLS-1$
+                e.getLocalizedMessage()));
+        }
+    }
+
     private boolean isValidPath(final String path)
         throws Exception
     {
@@ -77,6 +77,11 @@ public class FetchCommand
         new SwitchArgument("force", Messages.getString("FetchCommand.Argument.Force.HelpText")), //$NON-NLS-1$ //$NON-NLS-2$
 
         new SwitchArgument("mentions", Messages.getString("Command.Argument.Mentions.HelpText")), //$NON-NLS-1$ //$NON-NLS-2$
+
+        new ValueArgument("download-threads", //$NON-NLS-1$
+            Messages.getString("Command.Argument.DownloadThreads.ValueDescription"), //$NON-NLS-1$
+            Messages.getString("Command.Argument.DownloadThreads.HelpText"), //$NON-NLS-1$
+            ArgumentOptions.VALUE_REQUIRED),
     };
 
     @Override
@@ -122,6 +127,7 @@ public class FetchCommand
         }
 
         final boolean force = getArguments().contains("force"); //$NON-NLS-1$
+        final int downloadThreads = getDownloadThreadsFromArguments();
 
         final WorkItemClient witClient = mentions ? getConnection().getWorkItemClient() : null;
         final FetchTask fetchTask = new FetchTask(getRepository(), getVersionControlService(), witClient);
@@ -129,6 +135,11 @@ public class FetchCommand
         fetchTask.setDeep(deep);
         fetchTask.setForce(force);
 
+        if (downloadThreads > 0)
+        {
+            fetchTask.setDownloadThreads(downloadThreads);
+        }
+
         final TaskStatus fetchStatus = new CommandTaskExecutor(getProgressMonitor()).execute(fetchTask);
 
         return fetchStatus.isOK() ? ExitCode.SUCCESS : ExitCode.FAILURE;
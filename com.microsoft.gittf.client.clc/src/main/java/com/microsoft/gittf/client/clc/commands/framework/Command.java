@@ -192,6 +192,46 @@ public abstract class Command
         return depth;
     }
 
+    /**
+     * Gets the number of concurrent downloads specified with the
+     * --download-threads argument.
+     * 
+     * @return the number of concurrent downloads or <code>0</code> if the
+     *         argument was not specified
+     * @throws Exception
+     *         if the specified value is not a positive number
+     */
+    public int getDownloadThreadsFromArguments()
+        throws Exception
+    {
+        if (!getArguments().contains("download-threads")) //$NON-NLS-1$
+        {
+            return 0;
+        }
+
+        final String threadsValue = ((ValueArgument) getArguments().getArgument("download-threads")).getValue(); //$NON-NLS-1$
+
+        try
+        {
+            final int threads = Integer.parseInt(threadsValue);
+
+            if (threads <= 0 || threads > GitTFConstants.GIT_TF_MAX_DOWNLOAD_THREADS)
+            {
+                throw new Exception(Messages.formatString("Command.Argument.DownloadThreads.ParseErrorFormat", //$NON-NLS-1$
+                    threadsValue,
+                    GitTFConstants.GIT_TF_MAX_DOWNLOAD_THREADS));
+            }
+
+            return threads;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new Exception(Messages.formatString("Command.Argument.DownloadThreads.ParseErrorFormat", //$NON-NLS-1$
+                threadsValue,
+                GitTFConstants.GIT_TF_MAX_DOWNLOAD_THREADS));
+        }
+    }
+
     public boolean getDeepFromArguments()
     {
         if (getArguments().contains("deep")) //$NON-NLS-1$
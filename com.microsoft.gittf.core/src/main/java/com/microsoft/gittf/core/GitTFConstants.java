@@ -38,7 +38,39 @@ public final class GitTFConstants
     /**
      * The latest format version of the git tf configuration file
      */
-    public static final int GIT_TF_CURRENT_FORMAT_VERSION = 1;
+    public static final int GIT_TF_CURRENT_FORMAT_VERSION = 2;
+
+    /**
+     * The name of the file that maps changesets to commits
+     */
+    public static final String GIT_TF_CHANGESET_INDEX_NAME = "git-tf-changesets"; //$NON-NLS-1$
+
+    /**
+     * The name of the file that lists the files of the last bridged changeset
+     */
+    public static final String GIT_TF_ITEM_MANIFEST_NAME = "git-tf-items"; //$NON-NLS-1$
+
+    /**
+     * The number of changesets recorded in a batch after which their tags and
+     * the HWM are saved
+     */
+    public static final int GIT_TF_CHANGESET_BATCH_SIZE = 100;
+
+    /**
+     * The name of the file that caches TFS identity searches
+     */
+    public static final String GIT_TF_IDENTITY_CACHE_NAME = "git-tf-identities"; //$NON-NLS-1$
+
+    /**
+     * The time in milliseconds that the identities found by a search are
+     * cached
+     */
+    public static final long GIT_TF_IDENTITY_CACHE_TIME_TO_LIVE = 7L * 24 * 60 * 60 * 1000;
+
+    /**
+     * The time in milliseconds that a search that found no identity is cached
+     */
+    public static final long GIT_TF_IDENTITY_CACHE_NOT_FOUND_TIME_TO_LIVE = 24L * 60 * 60 * 1000;
 
     /**
      * The root of the temporary directory to use
@@ -76,11 +108,99 @@ public final class GitTFConstants
      */
     public static final boolean GIT_TF_DEFAULT_KEEP_AUTHOR = false;
 
+    /**
+     * The default reuse-workspace option
+     */
+    public static final boolean GIT_TF_DEFAULT_REUSE_WORKSPACE = false;
+
+    /**
+     * The name of the folder in the git-tf directory that contains the working
+     * folders of reusable workspaces, one per workspace name
+     */
+    public static final String GIT_TF_WORKSPACE_DIRNAME = "workspace"; //$NON-NLS-1$
+
     /**
      * The default file path for the user map
      */
     public static final String GIT_TF_DEFAULT_USER_MAP = "./USERMAP"; //$NON-NLS-1$
 
+    /**
+     * The default number of items downloaded concurrently when creating
+     * commits for TFS changesets
+     */
+    public static final int GIT_TF_DEFAULT_DOWNLOAD_THREADS = 4;
+
+    /**
+     * The maximum number of items downloaded concurrently when creating
+     * commits for TFS changesets
+     */
+    public static final int GIT_TF_MAX_DOWNLOAD_THREADS = 32;
+
+    /**
+     * The largest item content that is buffered in memory while downloading,
+     * larger items are spilled to a temporary file before they are inserted
+     * in the repository
+     */
+    public static final int GIT_TF_DOWNLOAD_IN_CORE_LIMIT = 1024 * 1024;
+
+    /**
+     * The default number of changesets whose items are listed and downloaded
+     * ahead of the changeset being fetched
+     */
+    public static final int GIT_TF_DEFAULT_PREFETCH_CHANGESETS = 2;
+
+    /**
+     * The maximum number of changesets prefetched ahead of the changeset being
+     * fetched
+     */
+    public static final int GIT_TF_MAX_PREFETCH_CHANGESETS = 16;
+
+    /**
+     * The largest total size of the file content prefetched for upcoming
+     * changesets
+     */
+    public static final long GIT_TF_PREFETCH_BUFFER_LIMIT = 64L * 1024 * 1024;
+
+    /**
+     * The number of items extracted concurrently into the working folder when
+     * pending changes for a check-in
+     */
+    public static final int GIT_TF_EXTRACT_THREADS = 4;
+
+    /**
+     * The number of commits analyzed ahead of the commit being checked in when
+     * checking in several commits
+     */
+    public static final int GIT_TF_CHECKIN_ANALYSIS_LOOKAHEAD = 2;
+
+    /**
+     * The number of changes sent in the first pend request of a check-in
+     */
+    public static final int GIT_TF_INITIAL_PEND_BATCH_SIZE = 10;
+
+    /**
+     * The default maximum number of changes sent in a single pend request
+     */
+    public static final int GIT_TF_DEFAULT_PEND_BATCH_SIZE = 500;
+
+    /**
+     * The number of changesets queried at once when paging through the history
+     * of a deep fetch
+     */
+    public static final int GIT_TF_HISTORY_PAGE_SIZE = 250;
+
+    /**
+     * The number of changesets whose linked work items are looked up ahead of
+     * the changeset being fetched when adding work item mentions
+     */
+    public static final int GIT_TF_WORK_ITEM_LOOKAHEAD = 100;
+
+    /**
+     * The number of work item lookups run concurrently ahead of the changeset
+     * being fetched
+     */
+    public static final int GIT_TF_WORK_ITEM_LOOKUP_THREADS = 4;
+
     private GitTFConstants()
     {
     }
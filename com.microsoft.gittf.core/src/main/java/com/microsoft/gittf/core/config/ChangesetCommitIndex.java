@@ -0,0 +1,568 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.util.FS;
+
+import com.microsoft.gittf.core.Messages;
+import com.microsoft.gittf.core.util.Check;
+
+/**
+ * Stores the mapping between changesets and commits in a compact binary file.
+ * The file starts with a short header followed by fixed size records, each
+ * holding a changeset id and the raw commit id, sorted by changeset id. A
+ * commit is found with a binary search over the records and bridging a newer
+ * changeset only appends a record to the end of the file.
+ * 
+ * The records are read with positioned reads rather than by mapping the file
+ * into memory, since a mapped file cannot be replaced on some platforms until
+ * the mapping is garbage collected.
+ * 
+ */
+public class ChangesetCommitIndex
+{
+    private static final byte[] SIGNATURE =
+    {
+        'G', 'T', 'F', 'M'
+    };
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = SIGNATURE.length + 4;
+    private static final int RECORD_LENGTH = 4 + Constants.OBJECT_ID_LENGTH;
+
+    private final File indexFile;
+
+    /* The commit to changeset lookup is only built when first needed */
+    private Map<ObjectId, Integer> commitChangesets;
+    private long commitChangesetsLength = -1;
+    private long commitChangesetsLastModified = -1;
+
+    /**
+     * Constructor
+     * 
+     * @param indexFile
+     *        the file to store the index in
+     */
+    public ChangesetCommitIndex(final File indexFile)
+    {
+        Check.notNull(indexFile, "indexFile"); //$NON-NLS-1$
+
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Gets the commit id that the changeset refers to
+     * 
+     * @param changesetID
+     *        the changeset id
+     * @return the commit id, or null if the changeset is not in the index
+     * @throws IOException
+     */
+    public ObjectId getCommitID(final int changesetID)
+        throws IOException
+    {
+        final RandomAccessFile file = openForRead();
+
+        if (file == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            final long record = findRecord(file, getRecordCount(file), changesetID);
+
+            if (record < 0)
+            {
+                return null;
+            }
+
+            file.seek(getRecordOffset(record) + 4);
+
+            final byte[] commitID = new byte[Constants.OBJECT_ID_LENGTH];
+            file.readFully(commitID);
+
+            return ObjectId.fromRaw(commitID);
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Gets the highest changeset id in the index that is lower than the
+     * changeset specified
+     * 
+     * @param changesetID
+     *        the changeset id
+     * @return the previous changeset id, or -1 if there is none
+     * @throws IOException
+     */
+    public int getPreviousChangesetID(final int changesetID)
+        throws IOException
+    {
+        final RandomAccessFile file = openForRead();
+
+        if (file == null)
+        {
+            return -1;
+        }
+
+        try
+        {
+            final long record = findRecord(file, getRecordCount(file), changesetID);
+
+            /* the record before the match or before the insertion point */
+            final long previousRecord = record >= 0 ? record - 1 : -(record + 1) - 1;
+
+            if (previousRecord < 0)
+            {
+                return -1;
+            }
+
+            file.seek(getRecordOffset(previousRecord));
+            return file.readInt();
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Gets the records for the changesets that are higher than the changeset
+     * specified
+     * 
+     * @param changesetID
+     *        the changeset id
+     * @return the commit ids keyed by changeset id
+     * @throws IOException
+     */
+    public SortedMap<Integer, ObjectId> getEntriesAfter(final int changesetID)
+        throws IOException
+    {
+        final SortedMap<Integer, ObjectId> entries = new TreeMap<Integer, ObjectId>();
+        final RandomAccessFile file = openForRead();
+
+        if (file == null)
+        {
+            return entries;
+        }
+
+        try
+        {
+            final long recordCount = getRecordCount(file);
+            final long record = findRecord(file, recordCount, changesetID);
+            final long firstRecord = record >= 0 ? record + 1 : -(record + 1);
+
+            final byte[] records = new byte[(int) ((recordCount - firstRecord) * RECORD_LENGTH)];
+
+            file.seek(getRecordOffset(firstRecord));
+            file.readFully(records);
+
+            for (int offset = 0; offset < records.length; offset += RECORD_LENGTH)
+            {
+                final int entryChangesetID =
+                    ((records[offset] & 0xff) << 24)
+                        | ((records[offset + 1] & 0xff) << 16)
+                        | ((records[offset + 2] & 0xff) << 8)
+                        | (records[offset + 3] & 0xff);
+
+                entries.put(entryChangesetID, ObjectId.fromRaw(records, offset + 4));
+            }
+        }
+        finally
+        {
+            file.close();
+        }
+
+        return entries;
+    }
+
+    /**
+     * Gets the changeset id that the commit refers to
+     * 
+     * @param commitID
+     *        the commit id
+     * @return the changeset id, or -1 if the commit is not in the index
+     * @throws IOException
+     */
+    public int getChangesetID(final ObjectId commitID)
+        throws IOException
+    {
+        Check.notNull(commitID, "commitID"); //$NON-NLS-1$
+
+        if (commitChangesets == null
+            || commitChangesetsLength != indexFile.length()
+            || commitChangesetsLastModified != indexFile.lastModified())
+        {
+            commitChangesetsLength = indexFile.length();
+            commitChangesetsLastModified = indexFile.lastModified();
+
+            final Map<ObjectId, Integer> changesets = new HashMap<ObjectId, Integer>();
+
+            for (Entry<Integer, ObjectId> entry : readAll().entrySet())
+            {
+                changesets.put(entry.getValue(), entry.getKey());
+            }
+
+            commitChangesets = changesets;
+        }
+
+        final Integer changesetID = commitChangesets.get(commitID);
+        return changesetID != null ? changesetID : -1;
+    }
+
+    /**
+     * Sets the commit id that the changeset refers to
+     * 
+     * @param changesetID
+     *        the changeset id
+     * @param commitID
+     *        the commit id
+     * @throws IOException
+     */
+    public void put(final int changesetID, final ObjectId commitID)
+        throws IOException
+    {
+        final SortedMap<Integer, ObjectId> entries = new TreeMap<Integer, ObjectId>();
+        entries.put(changesetID, commitID);
+
+        putAll(entries);
+    }
+
+    /**
+     * Sets the commit ids that the changesets refer to. If all the changesets
+     * are newer than the changesets in the index the records are appended,
+     * otherwise the index is rewritten.
+     * 
+     * @param entries
+     *        the commit ids keyed by changeset id
+     * @throws IOException
+     */
+    public void putAll(final SortedMap<Integer, ObjectId> entries)
+        throws IOException
+    {
+        Check.notNull(entries, "entries"); //$NON-NLS-1$
+
+        if (entries.isEmpty())
+        {
+            return;
+        }
+
+        Check.isTrue(entries.firstKey() >= 0, "changesetID >= 0"); //$NON-NLS-1$
+
+        commitChangesets = null;
+
+        /*
+         * Hold the lock from reading the last record until the new records are
+         * written so that concurrent writers cannot interleave their records
+         */
+        final LockFile lockFile = new LockFile(indexFile, FS.DETECTED);
+
+        if (!lockFile.lock())
+        {
+            throw new IOException(Messages.formatString("ChangesetCommitIndex.CannotLockFormat", //$NON-NLS-1$
+                indexFile.getAbsolutePath()));
+        }
+
+        try
+        {
+            if (append(entries))
+            {
+                return;
+            }
+
+            final SortedMap<Integer, ObjectId> allEntries = readAll();
+            allEntries.putAll(entries);
+
+            rewrite(lockFile, allEntries);
+        }
+        finally
+        {
+            lockFile.unlock();
+        }
+    }
+
+    /**
+     * Reads all the records of the index
+     * 
+     * @return the commit ids keyed by changeset id
+     * @throws IOException
+     */
+    public SortedMap<Integer, ObjectId> readAll()
+        throws IOException
+    {
+        final SortedMap<Integer, ObjectId> entries = new TreeMap<Integer, ObjectId>();
+
+        if (!indexFile.exists())
+        {
+            return entries;
+        }
+
+        final DataInputStream input =
+            new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 64 * RECORD_LENGTH));
+
+        try
+        {
+            readHeader(input);
+
+            final byte[] commitID = new byte[Constants.OBJECT_ID_LENGTH];
+
+            while (true)
+            {
+                final int changesetID;
+
+                try
+                {
+                    changesetID = input.readInt();
+                    input.readFully(commitID);
+                }
+                catch (EOFException e)
+                {
+                    /* End of the index or a partially written record */
+                    break;
+                }
+
+                entries.put(changesetID, ObjectId.fromRaw(commitID));
+            }
+        }
+        finally
+        {
+            input.close();
+        }
+
+        return entries;
+    }
+
+    /*
+     * Appends the records to the index when all of them are newer than the
+     * last record. The caller must hold the index lock.
+     */
+    private boolean append(final SortedMap<Integer, ObjectId> entries)
+        throws IOException
+    {
+        final RandomAccessFile file = new RandomAccessFile(indexFile, "rw"); //$NON-NLS-1$
+
+        try
+        {
+            if (file.length() < HEADER_LENGTH)
+            {
+                file.setLength(0);
+                file.write(SIGNATURE);
+                file.writeInt(VERSION);
+            }
+
+            final long recordCount = getRecordCount(file);
+            final long endOfRecords = getRecordOffset(recordCount);
+
+            /* Drop a record that was only partially written */
+            if (file.length() != endOfRecords)
+            {
+                file.setLength(endOfRecords);
+            }
+
+            int lastChangesetID = -1;
+
+            if (recordCount > 0)
+            {
+                file.seek(getRecordOffset(recordCount - 1));
+                lastChangesetID = file.readInt();
+            }
+
+            if (entries.firstKey() <= lastChangesetID)
+            {
+                return false;
+            }
+
+            file.seek(endOfRecords);
+            file.write(toRecords(entries));
+
+            return true;
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /*
+     * Replaces the index with the records through the held lock file
+     */
+    private void rewrite(final LockFile lockFile, final SortedMap<Integer, ObjectId> entries)
+        throws IOException
+    {
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(lockFile.getOutputStream()));
+
+        try
+        {
+            output.write(SIGNATURE);
+            output.writeInt(VERSION);
+            output.write(toRecords(entries));
+        }
+        finally
+        {
+            output.close();
+        }
+
+        if (!lockFile.commit())
+        {
+            throw new IOException(Messages.formatString("ChangesetCommitIndex.CannotLockFormat", //$NON-NLS-1$
+                indexFile.getAbsolutePath()));
+        }
+    }
+
+    private RandomAccessFile openForRead()
+        throws IOException
+    {
+        if (!indexFile.exists())
+        {
+            return null;
+        }
+
+        return new RandomAccessFile(indexFile, "r"); //$NON-NLS-1$
+    }
+
+    private long getRecordCount(final RandomAccessFile file)
+        throws IOException
+    {
+        if (file.length() < HEADER_LENGTH)
+        {
+            return 0;
+        }
+
+        file.seek(0);
+        readHeader(file);
+
+        return (file.length() - HEADER_LENGTH) / RECORD_LENGTH;
+    }
+
+    private void readHeader(final DataInput input)
+        throws IOException
+    {
+        final byte[] signature = new byte[SIGNATURE.length];
+
+        try
+        {
+            input.readFully(signature);
+
+            if (Arrays.equals(SIGNATURE, signature) && input.readInt() == VERSION)
+            {
+                return;
+            }
+        }
+        catch (EOFException e)
+        {
+            /* the header is truncated */
+        }
+
+        throw new IOException(Messages.formatString("ChangesetCommitIndex.NotAnIndexFormat", //$NON-NLS-1$
+            indexFile.getAbsolutePath()));
+    }
+
+    /**
+     * Binary search for the record of a changeset
+     * 
+     * @return the index of the record, or (-(insertion point) - 1) if the
+     *         changeset is not in the index
+     */
+    private static long findRecord(final RandomAccessFile file, final long recordCount, final int changesetID)
+        throws IOException
+    {
+        long low = 0;
+        long high = recordCount - 1;
+
+        while (low <= high)
+        {
+            final long middle = (low + high) >>> 1;
+
+            file.seek(getRecordOffset(middle));
+            final int middleChangesetID = file.readInt();
+
+            if (middleChangesetID < changesetID)
+            {
+                low = middle + 1;
+            }
+            else if (middleChangesetID > changesetID)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    private static long getRecordOffset(final long record)
+    {
+        return HEADER_LENGTH + (record * RECORD_LENGTH);
+    }
+
+    private static byte[] toRecords(final SortedMap<Integer, ObjectId> entries)
+    {
+        final byte[] records = new byte[entries.size() * RECORD_LENGTH];
+        int offset = 0;
+
+        for (Entry<Integer, ObjectId> entry : entries.entrySet())
+        {
+            final int changesetID = entry.getKey();
+
+            records[offset++] = (byte) (changesetID >>> 24);
+            records[offset++] = (byte) (changesetID >>> 16);
+            records[offset++] = (byte) (changesetID >>> 8);
+            records[offset++] = (byte) changesetID;
+
+            entry.getValue().copyRawTo(records, offset);
+            offset += Constants.OBJECT_ID_LENGTH;
+        }
+
+        return records;
+    }
+}
@@ -27,10 +27,12 @@ package com.microsoft.gittf.core.config;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
@@ -46,14 +48,26 @@ import com.microsoft.gittf.core.util.TagUtil;
 /**
  * The ChangesetCommitMap class maintains the mapping between changesets and
  * commits. It also maintains the HWM which is the latest changeset downloaded
- * from TFS. All this information is stored in the .git\git-tf file in the
- * repository. This file uses the same format used by the config files.
+ * from TFS. The mapping is stored in the .git\git-tf-changesets index and the
+ * HWM in the .git\git-tf file in the repository, which uses the same format
+ * used by the config files. Older repositories kept the mapping in the
+ * .git\git-tf file, these entries are moved to the index when they are found.
  * 
  */
 public class ChangesetCommitMap
 {
     private final Repository repository;
     private final FileBasedConfig configFile;
+    private final ChangesetCommitIndex index;
+
+    /*
+     * The changesets recorded in the current batch whose tags and HWM have not
+     * been saved yet
+     */
+    private SortedMap<Integer, ObjectId> batchChangesets;
+    private int batchHighWaterMark = -1;
+    private List<Integer> batchTaggedChangesets;
+    private boolean batchStarted = false;
 
     /**
      * Constructor
@@ -68,6 +82,8 @@ public class ChangesetCommitMap
         this.repository = repository;
         this.configFile =
             new FileBasedConfig(new File(repository.getDirectory(), GitTFConstants.GIT_TF_NAME), FS.DETECTED);
+        this.index =
+            new ChangesetCommitIndex(new File(repository.getDirectory(), GitTFConstants.GIT_TF_CHANGESET_INDEX_NAME));
     }
 
     /**
@@ -93,19 +109,7 @@ public class ChangesetCommitMap
 
         ensureConfigUptoDate();
 
-        cleanupPreviousEntries(changesetID);
-
-        configFile.setString(
-            ConfigurationConstants.CONFIGURATION_SECTION,
-            ConfigurationConstants.COMMIT_SUBSECTION,
-            MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)),
-            commitID.getName());
-
-        configFile.setInt(
-            ConfigurationConstants.CONFIGURATION_SECTION,
-            ConfigurationConstants.CHANGESET_SUBSECTION,
-            MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitID.getName()),
-            changesetID);
+        index.put(changesetID, commitID);
 
         /* Update the high water mark automatically */
         if ((changesetID > getLastBridgedChangesetID(false)) || forceHWMUpdate)
@@ -115,11 +119,194 @@ public class ChangesetCommitMap
                 ConfigurationConstants.CHANGESET_SUBSECTION,
                 ConfigurationConstants.CHANGESET_HIGHWATER,
                 changesetID);
+
+            configFile.save();
         }
 
+        TagUtil.createTFSChangesetTag(repository, commitID, changesetID);
+    }
+
+    /**
+     * Starts a batch of changeset commit updates. The mapping of each
+     * changeset recorded in the batch is written to the index right away, the
+     * tags and the HWM are saved every
+     * {@link GitTFConstants#GIT_TF_CHANGESET_BATCH_SIZE} changesets and when
+     * the batch is committed. The tags created in the batch are packed when it
+     * is committed.
+     * 
+     * The first changeset of a batch is saved in the config file before its
+     * mapping is written and cleared when the batch is committed. If a
+     * previous batch did not complete, the changesets in the index from its
+     * first changeset on have their tags and the HWM saved now if their
+     * commits exist. Other changesets above the HWM are left alone, since a
+     * forced fetch lowers the HWM below changesets that were fetched before.
+     * 
+     * @throws IOException
+     */
+    public void beginBatch()
+        throws IOException
+    {
+        Check.isTrue(batchChangesets == null, "batchChangesets == null"); //$NON-NLS-1$
+
+        ensureConfigUptoDate();
+
+        batchChangesets = new TreeMap<Integer, ObjectId>();
+        batchHighWaterMark = -1;
+        batchTaggedChangesets = new ArrayList<Integer>();
+        batchStarted = false;
+
+        final int unsavedBatchChangesetID =
+            configFile.getInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.CHANGESET_SUBSECTION,
+                ConfigurationConstants.CHANGESET_BATCH,
+                -1);
+
+        if (unsavedBatchChangesetID < 0)
+        {
+            return;
+        }
+
+        final SortedMap<Integer, ObjectId> unsavedChangesets = index.getEntriesAfter(unsavedBatchChangesetID - 1);
+
+        if (unsavedChangesets.isEmpty())
+        {
+            return;
+        }
+
+        final ObjectReader objectReader = repository.newObjectReader();
+
+        try
+        {
+            for (Entry<Integer, ObjectId> unsavedChangeset : unsavedChangesets.entrySet())
+            {
+                if (objectReader.has(unsavedChangeset.getValue()))
+                {
+                    batchChangesets.put(unsavedChangeset.getKey(), unsavedChangeset.getValue());
+                    batchHighWaterMark = unsavedChangeset.getKey();
+                }
+            }
+        }
+        finally
+        {
+            objectReader.release();
+        }
+
+        saveBatch();
+        clearBatchStart();
+    }
+
+    /**
+     * Records the commit id that this changeset refers to in the current batch
+     * 
+     * @param changesetID
+     *        the changeset id
+     * @param commitID
+     *        the commit id
+     * @param forceHWMUpdate
+     *        whether to set the HWM to this changeset even if it is lower
+     * @throws IOException
+     */
+    public void recordChangesetCommit(int changesetID, ObjectId commitID, boolean forceHWMUpdate)
+        throws IOException
+    {
+        Check.notNull(batchChangesets, "batchChangesets"); //$NON-NLS-1$
+        Check.isTrue(changesetID >= 0, "changesetID >= 0"); //$NON-NLS-1$
+        Check.notNull(commitID, "commitID"); //$NON-NLS-1$
+
+        /* Mark the batch as started before its first mapping is written */
+        if (!batchStarted)
+        {
+            ensureConfigUptoDate();
+
+            configFile.setInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.CHANGESET_SUBSECTION,
+                ConfigurationConstants.CHANGESET_BATCH,
+                changesetID);
+
+            configFile.save();
+
+            batchStarted = true;
+        }
+
+        index.put(changesetID, commitID);
+
+        batchChangesets.put(changesetID, commitID);
+
+        if ((changesetID > getLastBridgedChangesetID(false)) || forceHWMUpdate)
+        {
+            batchHighWaterMark = changesetID;
+        }
+
+        if (batchChangesets.size() >= GitTFConstants.GIT_TF_CHANGESET_BATCH_SIZE)
+        {
+            saveBatch();
+        }
+    }
+
+    /**
+     * Saves the tags and the HWM of the changesets recorded in the current
+     * batch and ends the batch
+     * 
+     * @throws IOException
+     */
+    public void commitBatch()
+        throws IOException
+    {
+        Check.notNull(batchChangesets, "batchChangesets"); //$NON-NLS-1$
+
+        saveBatch();
+
+        if (batchStarted)
+        {
+            clearBatchStart();
+            batchStarted = false;
+        }
+
+        TagUtil.packTFSChangesetTags(repository, batchTaggedChangesets);
+
+        batchChangesets = null;
+        batchTaggedChangesets = null;
+    }
+
+    private void clearBatchStart()
+        throws IOException
+    {
+        ensureConfigUptoDate();
+
+        configFile.unset(
+            ConfigurationConstants.CONFIGURATION_SECTION,
+            ConfigurationConstants.CHANGESET_SUBSECTION,
+            ConfigurationConstants.CHANGESET_BATCH);
+
         configFile.save();
+    }
 
-        TagUtil.createTFSChangesetTag(repository, commitID, changesetID);
+    private void saveBatch()
+        throws IOException
+    {
+        /* The HWM is saved last since it marks the batch as complete */
+        if (TagUtil.createTFSChangesetTags(repository, batchChangesets))
+        {
+            batchTaggedChangesets.addAll(batchChangesets.keySet());
+        }
+
+        if (batchHighWaterMark >= 0)
+        {
+            ensureConfigUptoDate();
+
+            configFile.setInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.CHANGESET_SUBSECTION,
+                ConfigurationConstants.CHANGESET_HIGHWATER,
+                batchHighWaterMark);
+
+            configFile.save();
+        }
+
+        batchChangesets.clear();
+        batchHighWaterMark = -1;
     }
 
     /**
@@ -135,11 +322,14 @@ public class ChangesetCommitMap
 
         ensureConfigUptoDate();
 
-        return configFile.getInt(
-            ConfigurationConstants.CONFIGURATION_SECTION,
-            ConfigurationConstants.CHANGESET_SUBSECTION,
-            MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitID.getName()),
-            -1);
+        try
+        {
+            return index.getChangesetID(commitID);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
@@ -159,18 +349,21 @@ public class ChangesetCommitMap
 
         ensureConfigUptoDate();
 
-        String commitHash =
-            configFile.getString(
-                ConfigurationConstants.CONFIGURATION_SECTION,
-                ConfigurationConstants.COMMIT_SUBSECTION,
-                MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)));
+        final ObjectId changesetCommitId;
 
-        if (commitHash == null)
+        try
         {
-            return null;
+            changesetCommitId = index.getCommitID(changesetID);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
         }
 
-        ObjectId changesetCommitId = ObjectId.fromString(commitHash);
+        if (changesetCommitId == null)
+        {
+            return null;
+        }
 
         if (!validate)
         {
@@ -222,8 +415,9 @@ public class ChangesetCommitMap
     {
         ensureConfigUptoDate();
 
+        /* The HWM of the current batch has not been saved yet */
         int changeset =
-            configFile.getInt(
+            batchHighWaterMark >= 0 ? batchHighWaterMark : configFile.getInt(
                 ConfigurationConstants.CONFIGURATION_SECTION,
                 ConfigurationConstants.CHANGESET_SUBSECTION,
                 ConfigurationConstants.CHANGESET_HIGHWATER,
@@ -268,77 +462,32 @@ public class ChangesetCommitMap
     {
         ensureConfigUptoDate();
 
-        Set<String> downloadedChangesetEntries =
-            configFile.getNames(ConfigurationConstants.CONFIGURATION_SECTION, ConfigurationConstants.COMMIT_SUBSECTION);
-
-        Set<Integer> sortedDownloadedChangesetEntries = new TreeSet<Integer>(Collections.reverseOrder());
-
-        for (String downloadedChangesetEntry : downloadedChangesetEntries)
-        {
-            String changesetNumberString =
-                downloadedChangesetEntry.substring(MessageFormat.format(
-                    ConfigurationConstants.COMMIT_CHANGESET_FORMAT,
-                    "").length()); //$NON-NLS-1$
-
-            int changesetIDEntry = Integer.parseInt(changesetNumberString);
-
-            sortedDownloadedChangesetEntries.add(changesetIDEntry);
-        }
-
-        Iterator<Integer> changesetIterator = sortedDownloadedChangesetEntries.iterator();
-        while (changesetIterator.hasNext())
+        try
         {
-            int currentChangeset = changesetIterator.next();
+            int currentChangeset = index.getPreviousChangesetID(changesetID);
 
-            if (currentChangeset >= changesetID)
+            while (currentChangeset >= 0)
             {
-                continue;
-            }
+                if (!validate)
+                {
+                    return currentChangeset;
+                }
 
-            if (!validate)
-            {
-                return currentChangeset;
-            }
-            else
-            {
                 ObjectId commitId = getCommitID(currentChangeset, true);
                 if (commitId != null && !ObjectId.zeroId().equals(commitId))
                 {
                     return currentChangeset;
                 }
+
+                currentChangeset = index.getPreviousChangesetID(currentChangeset);
             }
         }
-
-        return -1;
-    }
-
-    /**
-     * Cleans the entries for the changeset specified
-     * 
-     * @param changesetID
-     */
-    private void cleanupPreviousEntries(int changesetID)
-    {
-        String commitHash =
-            configFile.getString(
-                ConfigurationConstants.CONFIGURATION_SECTION,
-                ConfigurationConstants.COMMIT_SUBSECTION,
-                MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)));
-
-        if (commitHash == null || commitHash.length() == 0)
+        catch (IOException e)
         {
-            return;
+            throw new RuntimeException(e);
         }
 
-        configFile.unset(
-            ConfigurationConstants.CONFIGURATION_SECTION,
-            ConfigurationConstants.COMMIT_SUBSECTION,
-            MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)));
-
-        configFile.unset(
-            ConfigurationConstants.CONFIGURATION_SECTION,
-            ConfigurationConstants.CHANGESET_SUBSECTION,
-            MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitHash));
+        return -1;
     }
 
     /**
@@ -351,6 +500,8 @@ public class ChangesetCommitMap
             if (configFile != null && configFile.isOutdated())
             {
                 configFile.load();
+
+                moveConfigurationEntriesToIndex();
             }
         }
         catch (Exception e)
@@ -359,6 +510,78 @@ public class ChangesetCommitMap
         }
     }
 
+    /**
+     * Moves the changeset and commit entries that older versions kept in the
+     * config file to the index. The HWM stays in the config file.
+     * 
+     * @throws IOException
+     */
+    private void moveConfigurationEntriesToIndex()
+        throws IOException
+    {
+        final Set<String> changesetEntries =
+            configFile.getNames(ConfigurationConstants.CONFIGURATION_SECTION, ConfigurationConstants.COMMIT_SUBSECTION);
+
+        if (changesetEntries.isEmpty())
+        {
+            return;
+        }
+
+        final int changesetPrefixLength =
+            MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, "").length(); //$NON-NLS-1$
+
+        final SortedMap<Integer, ObjectId> entries = new TreeMap<Integer, ObjectId>();
+
+        for (String changesetEntry : changesetEntries)
+        {
+            final String commitHash =
+                configFile.getString(
+                    ConfigurationConstants.CONFIGURATION_SECTION,
+                    ConfigurationConstants.COMMIT_SUBSECTION,
+                    changesetEntry);
+
+            if (commitHash != null && ObjectId.isId(commitHash))
+            {
+                entries.put(
+                    Integer.parseInt(changesetEntry.substring(changesetPrefixLength)),
+                    ObjectId.fromString(commitHash));
+            }
+        }
+
+        index.putAll(entries);
+
+        configFile.unsetSection(ConfigurationConstants.CONFIGURATION_SECTION, ConfigurationConstants.COMMIT_SUBSECTION);
+
+        final Set<String> commitEntries =
+            configFile.getNames(ConfigurationConstants.CONFIGURATION_SECTION, ConfigurationConstants.CHANGESET_SUBSECTION);
+
+        for (String commitEntry : commitEntries)
+        {
+            if (!ConfigurationConstants.CHANGESET_HIGHWATER.equalsIgnoreCase(commitEntry)
+                && !ConfigurationConstants.CHANGESET_BATCH.equalsIgnoreCase(commitEntry))
+            {
+                configFile.unset(
+                    ConfigurationConstants.CONFIGURATION_SECTION,
+                    ConfigurationConstants.CHANGESET_SUBSECTION,
+                    commitEntry);
+            }
+        }
+
+        configFile.save();
+    }
+
+    /**
+     * Used for upgrade, moves the changeset and commit entries from the git-tf
+     * config file to the changeset index
+     * 
+     * @param repository
+     */
+    public static void moveConfigurationEntriesToIndex(Repository repository)
+    {
+        /* Loading the config file moves any entries it has */
+        new ChangesetCommitMap(repository).ensureConfigUptoDate();
+    }
+
     /**
      * Used for upgrade, copoes the entries from repository config to the new
      * config location
@@ -0,0 +1,442 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.FS;
+
+import com.microsoft.gittf.core.GitTFConstants;
+import com.microsoft.gittf.core.Messages;
+import com.microsoft.gittf.core.util.Check;
+
+/**
+ * Records the files of the commit created for a changeset: the server path,
+ * the changeset the file was last changed in, its content hash and the blob it
+ * was stored in. The manifest of the last bridged changeset is kept in a
+ * compact binary file, so that the next fetch can reuse the blobs of unchanged
+ * files without listing all the items of the previous changeset on the server.
+ * 
+ * The file starts with a short header that holds the changeset and the commit
+ * the manifest was written for, followed by one record per file.
+ */
+public class ChangesetItemManifest
+{
+    private static final byte[] SIGNATURE =
+    {
+        'G', 'T', 'F', 'I'
+    };
+
+    private static final int VERSION = 1;
+
+    private static final byte[] NO_HASH = new byte[0];
+    private static final int MAX_HASH_LENGTH = 255;
+
+    private int changesetID;
+
+    /* Keyed by the lower case server path, TFS paths are case insensitive */
+    private final SortedMap<String, ManifestEntry> entries;
+
+    /**
+     * Constructor
+     * 
+     * @param changesetID
+     *        the changeset the manifest describes
+     */
+    public ChangesetItemManifest(final int changesetID)
+    {
+        this(changesetID, new TreeMap<String, ManifestEntry>());
+    }
+
+    private ChangesetItemManifest(final int changesetID, final SortedMap<String, ManifestEntry> entries)
+    {
+        Check.isTrue(changesetID >= 0, "changesetID >= 0"); //$NON-NLS-1$
+        Check.notNull(entries, "entries"); //$NON-NLS-1$
+
+        this.changesetID = changesetID;
+        this.entries = entries;
+    }
+
+    /**
+     * Gets the changeset the manifest describes
+     * 
+     * @return the changeset id
+     */
+    public int getChangesetID()
+    {
+        return changesetID;
+    }
+
+    /**
+     * Gets the number of files in the manifest
+     * 
+     * @return the number of files
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Makes the manifest describe a later changeset. The files are kept in
+     * place rather than copied, so only the changes of the later changeset have
+     * to be applied to it.
+     * 
+     * @param changesetID
+     *        the changeset the manifest describes from now on
+     * @return this manifest
+     */
+    public ChangesetItemManifest moveTo(final int changesetID)
+    {
+        Check.isTrue(changesetID >= this.changesetID, "changesetID >= this.changesetID"); //$NON-NLS-1$
+
+        this.changesetID = changesetID;
+
+        return this;
+    }
+
+    /**
+     * Records a file, replacing the file or folder that was at the same path.
+     * 
+     * @param serverPath
+     *        the server path of the file
+     * @param changesetVersion
+     *        the changeset the file was last changed in
+     * @param contentHash
+     *        the hash of the file content, may be <code>null</code>
+     * @param blobID
+     *        the blob the content is stored in
+     */
+    public void put(final String serverPath, final int changesetVersion, final byte[] contentHash, final ObjectId blobID)
+    {
+        Check.notNullOrEmpty(serverPath, "serverPath"); //$NON-NLS-1$
+        Check.notNull(blobID, "blobID"); //$NON-NLS-1$
+
+        remove(serverPath);
+
+        final byte[] hash = contentHash != null && contentHash.length <= MAX_HASH_LENGTH ? contentHash : NO_HASH;
+
+        entries.put(serverPath.toLowerCase(), new ManifestEntry(serverPath, changesetVersion, hash, blobID.copy()));
+    }
+
+    /**
+     * Removes a file, or a folder and all the files in it.
+     * 
+     * @param serverPath
+     *        the server path of the file or folder
+     */
+    public void remove(final String serverPath)
+    {
+        Check.notNullOrEmpty(serverPath, "serverPath"); //$NON-NLS-1$
+
+        final String key = serverPath.toLowerCase();
+
+        entries.remove(key);
+
+        /* '0' is the character that sorts right after the separator */
+        entries.subMap(key + '/', key + '0').clear();
+    }
+
+    /**
+     * Gets the blob of a file if the file has not changed since the changeset
+     * the manifest describes.
+     * 
+     * @param serverPath
+     *        the server path of the file
+     * @param changesetVersion
+     *        the changeset the file was last changed in
+     * @param contentHash
+     *        the hash of the file content, may be <code>null</code>
+     * @return the blob id, or <code>null</code> if the file is not in the
+     *         manifest at that version
+     */
+    public ObjectId getBlobID(final String serverPath, final int changesetVersion, final byte[] contentHash)
+    {
+        Check.notNull(serverPath, "serverPath"); //$NON-NLS-1$
+
+        final ManifestEntry entry = entries.get(serverPath.toLowerCase());
+
+        if (entry == null || entry.getChangesetVersion() != changesetVersion)
+        {
+            return null;
+        }
+
+        if (contentHash != null
+            && contentHash.length > 0
+            && entry.getContentHash().length > 0
+            && !Arrays.equals(contentHash, entry.getContentHash()))
+        {
+            return null;
+        }
+
+        return entry.getBlobID();
+    }
+
+    /**
+     * Reads the manifest stored for the last bridged changeset of the
+     * repository.
+     * 
+     * @param repository
+     *        the git repository
+     * @param changesetID
+     *        the changeset the manifest has to describe
+     * @param commitID
+     *        the commit the manifest has to be written for
+     * @return the manifest, or <code>null</code> if no manifest is stored for
+     *         this changeset and commit
+     * @throws IOException
+     */
+    public static ChangesetItemManifest loadFrom(
+        final Repository repository,
+        final int changesetID,
+        final ObjectId commitID)
+        throws IOException
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+
+        return read(getManifestFile(repository), changesetID, commitID);
+    }
+
+    /**
+     * Stores this manifest as the manifest of the last bridged changeset of
+     * the repository.
+     * 
+     * @param repository
+     *        the git repository
+     * @param commitID
+     *        the commit created for the changeset
+     * @throws IOException
+     */
+    public void saveTo(final Repository repository, final ObjectId commitID)
+        throws IOException
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+
+        write(getManifestFile(repository), commitID);
+    }
+
+    /**
+     * Reads a manifest file.
+     * 
+     * @param manifestFile
+     *        the file to read
+     * @param changesetID
+     *        the changeset the manifest has to describe
+     * @param commitID
+     *        the commit the manifest has to be written for
+     * @return the manifest, or <code>null</code> if the file does not exist or
+     *         was written for another changeset or commit
+     * @throws IOException
+     */
+    public static ChangesetItemManifest read(final File manifestFile, final int changesetID, final ObjectId commitID)
+        throws IOException
+    {
+        Check.notNull(manifestFile, "manifestFile"); //$NON-NLS-1$
+        Check.notNull(commitID, "commitID"); //$NON-NLS-1$
+
+        if (!manifestFile.exists())
+        {
+            return null;
+        }
+
+        final DataInputStream input =
+            new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)));
+
+        try
+        {
+            final byte[] signature = new byte[SIGNATURE.length];
+            final byte[] rawID = new byte[Constants.OBJECT_ID_LENGTH];
+
+            input.readFully(signature);
+
+            if (!Arrays.equals(SIGNATURE, signature) || input.readInt() != VERSION)
+            {
+                throw new IOException(Messages.formatString("ChangesetItemManifest.NotAManifestFormat", //$NON-NLS-1$
+                    manifestFile.getAbsolutePath()));
+            }
+
+            final int manifestChangesetID = input.readInt();
+            input.readFully(rawID);
+
+            if (manifestChangesetID != changesetID || !commitID.equals(ObjectId.fromRaw(rawID)))
+            {
+                return null;
+            }
+
+            final int entryCount = input.readInt();
+            final SortedMap<String, ManifestEntry> entries = new TreeMap<String, ManifestEntry>();
+
+            for (int i = 0; i < entryCount; i++)
+            {
+                final String serverPath = input.readUTF();
+                final int changesetVersion = input.readInt();
+                final byte[] contentHash = new byte[input.readUnsignedByte()];
+                input.readFully(contentHash);
+                input.readFully(rawID);
+
+                entries.put(serverPath.toLowerCase(), new ManifestEntry(
+                    serverPath,
+                    changesetVersion,
+                    contentHash,
+                    ObjectId.fromRaw(rawID)));
+            }
+
+            return new ChangesetItemManifest(changesetID, entries);
+        }
+        catch (EOFException e)
+        {
+            throw new IOException(Messages.formatString("ChangesetItemManifest.NotAManifestFormat", //$NON-NLS-1$
+                manifestFile.getAbsolutePath()));
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    /**
+     * Writes the manifest to a file, replacing the manifest stored in it.
+     * 
+     * @param manifestFile
+     *        the file to write
+     * @param commitID
+     *        the commit created for the changeset
+     * @throws IOException
+     */
+    public void write(final File manifestFile, final ObjectId commitID)
+        throws IOException
+    {
+        Check.notNull(manifestFile, "manifestFile"); //$NON-NLS-1$
+        Check.notNull(commitID, "commitID"); //$NON-NLS-1$
+
+        final LockFile lockFile = new LockFile(manifestFile, FS.DETECTED);
+
+        if (!lockFile.lock())
+        {
+            throw new IOException(Messages.formatString("ChangesetItemManifest.CannotLockFormat", //$NON-NLS-1$
+                manifestFile.getAbsolutePath()));
+        }
+
+        try
+        {
+            final DataOutputStream output =
+                new DataOutputStream(new BufferedOutputStream(lockFile.getOutputStream()));
+
+            try
+            {
+                output.write(SIGNATURE);
+                output.writeInt(VERSION);
+                output.writeInt(changesetID);
+                commitID.copyRawTo(output);
+                output.writeInt(entries.size());
+
+                for (final Entry<String, ManifestEntry> entry : entries.entrySet())
+                {
+                    final ManifestEntry manifestEntry = entry.getValue();
+
+                    output.writeUTF(manifestEntry.getServerPath());
+                    output.writeInt(manifestEntry.getChangesetVersion());
+                    output.writeByte(manifestEntry.getContentHash().length);
+                    output.write(manifestEntry.getContentHash());
+                    manifestEntry.getBlobID().copyRawTo(output);
+                }
+            }
+            finally
+            {
+                output.close();
+            }
+
+            if (!lockFile.commit())
+            {
+                throw new IOException(Messages.formatString("ChangesetItemManifest.CannotLockFormat", //$NON-NLS-1$
+                    manifestFile.getAbsolutePath()));
+            }
+        }
+        finally
+        {
+            lockFile.unlock();
+        }
+    }
+
+    private static File getManifestFile(final Repository repository)
+    {
+        return new File(repository.getDirectory(), GitTFConstants.GIT_TF_ITEM_MANIFEST_NAME);
+    }
+
+    private static class ManifestEntry
+    {
+        private final String serverPath;
+        private final int changesetVersion;
+        private final byte[] contentHash;
+        private final ObjectId blobID;
+
+        public ManifestEntry(
+            final String serverPath,
+            final int changesetVersion,
+            final byte[] contentHash,
+            final ObjectId blobID)
+        {
+            this.serverPath = serverPath;
+            this.changesetVersion = changesetVersion;
+            this.contentHash = contentHash;
+            this.blobID = blobID;
+        }
+
+        public String getServerPath()
+        {
+            return serverPath;
+        }
+
+        public int getChangesetVersion()
+        {
+            return changesetVersion;
+        }
+
+        public byte[] getContentHash()
+        {
+            return contentHash;
+        }
+
+        public ObjectId getBlobID()
+        {
+            return blobID;
+        }
+    }
+}
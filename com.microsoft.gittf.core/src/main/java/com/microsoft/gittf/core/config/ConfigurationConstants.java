@@ -42,6 +42,10 @@ public class ConfigurationConstants
     public static final String TEMP_DIRECTORY = "tempdir"; //$NON-NLS-1$
     public static final String KEEP_AUTHOR = "keep-author"; //$NON-NLS-1$
     public static final String USER_MAP = "user-map"; //$NON-NLS-1$
+    public static final String DOWNLOAD_THREADS = "download-threads"; //$NON-NLS-1$
+    public static final String PEND_BATCH_SIZE = "pend-batch-size"; //$NON-NLS-1$
+    public static final String REUSE_WORKSPACE = "reuse-workspace"; //$NON-NLS-1$
+    public static final String PREFETCH_CHANGESETS = "prefetch-changesets"; //$NON-NLS-1$
 
     public static final String SERVER_SUBSECTION = "server"; //$NON-NLS-1$
     public static final String SERVER_COLLECTION_URI = "collection"; //$NON-NLS-1$
@@ -50,11 +54,15 @@ public class ConfigurationConstants
     public static final String PASSWORD = "password"; //$NON-NLS-1$
     public static final String GATED_BUILD_DEFINITION = "gated"; //$NON-NLS-1$
 
+    public static final String WORKSPACE_SUBSECTION = "workspace"; //$NON-NLS-1$
+    public static final String WORKSPACE_NAME = "name"; //$NON-NLS-1$
+
     public static final String COMMIT_SUBSECTION = "commits"; //$NON-NLS-1$
     public static final String COMMIT_CHANGESET_FORMAT = "changeset-{0}"; //$NON-NLS-1$
     public static final String CHANGESET_SUBSECTION = "changesets"; //$NON-NLS-1$
     public static final String CHANGESET_COMMIT_FORMAT = "commit-{0}"; //$NON-NLS-1$
     public static final String CHANGESET_HIGHWATER = "hwm"; //$NON-NLS-1$
+    public static final String CHANGESET_BATCH = "batch"; //$NON-NLS-1$
 
     private ConfigurationConstants()
     {
@@ -30,6 +30,7 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -59,6 +60,13 @@ public class GitTFConfiguration
 {
     private static final Log log = LogFactory.getLog(GitTFConfiguration.class);
 
+    /*
+     * The configuration last read from each repository. These snapshots are
+     * never handed out, callers of loadFrom get a copy they are free to change.
+     */
+    private static final Map<Repository, GitTFConfiguration> snapshots =
+        new WeakHashMap<Repository, GitTFConfiguration>();
+
     /* Server section parameters */
     private final URI serverURI;
     private final String tfsPath;
@@ -74,6 +82,10 @@ public class GitTFConfiguration
     private String tempDirectory;
     private boolean keepAuthor;
     private String userMap;
+    private int downloadThreads;
+    private int pendBatchSize;
+    private boolean reuseWorkspace;
+    private int prefetchChangesets;
 
     /* Parameter names defined in the local repository config file */
     private final Map<String, Boolean> locallyDefinedNames;
@@ -98,6 +110,18 @@ public class GitTFConfiguration
      *        The default setting for including metadata on changesets
      * @param tempDirectory
      *        The temporary directory to use
+     * @param downloadThreads
+     *        The number of items to download concurrently when creating
+     *        commits for changesets
+     * @param pendBatchSize
+     *        The maximum number of changes to send in a single pend request
+     *        when checking in
+     * @param reuseWorkspace
+     *        <code>true</code> if a single TFS workspace should be kept and
+     *        reused by all the git-tf commands run on the repository
+     * @param prefetchChangesets
+     *        The number of changesets to prefetch ahead of the changeset being
+     *        fetched
      * @param locallyDefinedNames
      *        Parameter names defined in the local repository config file (must
      *        not be <code>null</code>)
@@ -115,6 +139,10 @@ public class GitTFConfiguration
         final String tempDirectory,
         final boolean keepAuthor,
         final String userMap,
+        final int downloadThreads,
+        final int pendBatchSize,
+        final boolean reuseWorkspace,
+        final int prefetchChangesets,
         final Map<String, Boolean> locallyDefinedNames)
     {
         Check.notNull(serverURI, "serverURI"); //$NON-NLS-1$
@@ -133,6 +161,10 @@ public class GitTFConfiguration
         this.tempDirectory = tempDirectory;
         this.keepAuthor = keepAuthor;
         this.userMap = userMap;
+        this.downloadThreads = downloadThreads;
+        this.pendBatchSize = pendBatchSize;
+        this.reuseWorkspace = reuseWorkspace;
+        this.prefetchChangesets = prefetchChangesets;
         this.locallyDefinedNames = locallyDefinedNames;
     }
 
@@ -153,12 +185,44 @@ public class GitTFConfiguration
 
         this.serverURI = serverURI;
         this.tfsPath = tfsPath;
+        this.downloadThreads = GitTFConstants.GIT_TF_DEFAULT_DOWNLOAD_THREADS;
+        this.pendBatchSize = GitTFConstants.GIT_TF_DEFAULT_PEND_BATCH_SIZE;
+        this.reuseWorkspace = GitTFConstants.GIT_TF_DEFAULT_REUSE_WORKSPACE;
+        this.prefetchChangesets = GitTFConstants.GIT_TF_DEFAULT_PREFETCH_CHANGESETS;
 
         this.locallyDefinedNames = new HashMap<String, Boolean>();
         locallyDefinedNames.put(ConfigurationConstants.SERVER_COLLECTION_URI, true);
         locallyDefinedNames.put(ConfigurationConstants.SERVER_PATH, true);
     }
 
+    /**
+     * Creates a copy of the given git-tf configuration.
+     * 
+     * @param configuration
+     *        The configuration to copy (must not be <code>null</code>)
+     */
+    private GitTFConfiguration(final GitTFConfiguration configuration)
+    {
+        this(
+            configuration.serverURI,
+            configuration.tfsPath,
+            configuration.username,
+            configuration.password,
+            configuration.deep,
+            configuration.tag,
+            configuration.includeMetaData,
+            configuration.fileFormatVersion,
+            configuration.buildDefinition,
+            configuration.tempDirectory,
+            configuration.keepAuthor,
+            configuration.userMap,
+            configuration.downloadThreads,
+            configuration.pendBatchSize,
+            configuration.reuseWorkspace,
+            configuration.prefetchChangesets,
+            new HashMap<String, Boolean>(configuration.locallyDefinedNames));
+    }
+
     /**
      * @return The URI of the TFS server (never <code>null</code>)
      */
@@ -298,6 +362,57 @@ public class GitTFConfiguration
         return userMap;
     }
 
+    /**
+     * Returns the number of items that should be downloaded concurrently from
+     * the server when creating commits for TFS changesets.
+     * 
+     * @return the number of concurrent downloads (always at least
+     *         <code>1</code>)
+     */
+    public int getDownloadThreads()
+    {
+        return downloadThreads;
+    }
+
+    /**
+     * Returns the maximum number of changes that are sent to the server in a
+     * single pend request when checking in. Smaller batches are sent while
+     * the server is slow to respond.
+     * 
+     * @return the maximum number of changes per pend request (always at least
+     *         <code>1</code>)
+     */
+    public int getPendBatchSize()
+    {
+        return pendBatchSize;
+    }
+
+    /**
+     * Returns whether the TFS workspace used to check in and shelve is kept
+     * between git-tf commands. A reused workspace only needs the local versions
+     * of the items changed since it was last used to be updated, instead of
+     * creating a new workspace and updating the local version of every item.
+     * 
+     * @return <code>true</code> if the workspace is reused
+     */
+    public boolean getReuseWorkspace()
+    {
+        return reuseWorkspace;
+    }
+
+    /**
+     * Returns the number of changesets whose items are listed and downloaded
+     * in the background while the commit for the current changeset is created
+     * in a deep fetch or clone.
+     * 
+     * @return the number of changesets to prefetch, <code>0</code> if nothing
+     *         is prefetched
+     */
+    public int getPrefetchChangesets()
+    {
+        return prefetchChangesets;
+    }
+
     /*
      * Configuration field setters. Each setter keeps track that the field has
      * changed along with changig the fields value
@@ -362,6 +477,30 @@ public class GitTFConfiguration
         locallyDefinedNames.put(ConfigurationConstants.USER_MAP, true);
     }
 
+    public void setDownloadThreads(final int downloadThreads)
+    {
+        this.downloadThreads = downloadThreads;
+        locallyDefinedNames.put(ConfigurationConstants.DOWNLOAD_THREADS, true);
+    }
+
+    public void setPendBatchSize(final int pendBatchSize)
+    {
+        this.pendBatchSize = pendBatchSize;
+        locallyDefinedNames.put(ConfigurationConstants.PEND_BATCH_SIZE, true);
+    }
+
+    public void setReuseWorkspace(final boolean reuseWorkspace)
+    {
+        this.reuseWorkspace = reuseWorkspace;
+        locallyDefinedNames.put(ConfigurationConstants.REUSE_WORKSPACE, true);
+    }
+
+    public void setPrefetchChangesets(final int prefetchChangesets)
+    {
+        this.prefetchChangesets = prefetchChangesets;
+        locallyDefinedNames.put(ConfigurationConstants.PREFETCH_CHANGESETS, true);
+    }
+
     /**
      * Checks if the specified parameter has been explicitly defined in the
      * local config file or has to be saved in that config file.
@@ -391,6 +530,8 @@ public class GitTFConfiguration
     {
         Check.notNull(repository, "repository"); //$NON-NLS-1$
 
+        invalidate(repository);
+
         repository.getConfig().setString(
             ConfigurationConstants.CONFIGURATION_SECTION,
             ConfigurationConstants.SERVER_SUBSECTION,
@@ -467,6 +608,42 @@ public class GitTFConfiguration
             }
         }
 
+        if (isLocallyDefined(ConfigurationConstants.DOWNLOAD_THREADS))
+        {
+            repository.getConfig().setInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.GENERAL_SUBSECTION,
+                ConfigurationConstants.DOWNLOAD_THREADS,
+                downloadThreads);
+        }
+
+        if (isLocallyDefined(ConfigurationConstants.PEND_BATCH_SIZE))
+        {
+            repository.getConfig().setInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.GENERAL_SUBSECTION,
+                ConfigurationConstants.PEND_BATCH_SIZE,
+                pendBatchSize);
+        }
+
+        if (isLocallyDefined(ConfigurationConstants.REUSE_WORKSPACE))
+        {
+            repository.getConfig().setBoolean(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.GENERAL_SUBSECTION,
+                ConfigurationConstants.REUSE_WORKSPACE,
+                reuseWorkspace);
+        }
+
+        if (isLocallyDefined(ConfigurationConstants.PREFETCH_CHANGESETS))
+        {
+            repository.getConfig().setInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.GENERAL_SUBSECTION,
+                ConfigurationConstants.PREFETCH_CHANGESETS,
+                prefetchChangesets);
+        }
+
         if (isLocallyDefined(ConfigurationConstants.GATED_BUILD_DEFINITION)
             && !StringUtil.isNullOrEmpty(buildDefinition))
         {
@@ -545,6 +722,10 @@ public class GitTFConfiguration
         result.append(Messages.formatString("GitTFConfiguration.ToString.TagFormat", this.tag) + OutputConstants.NEW_LINE); //$NON-NLS-1$
         result.append(Messages.formatString("GitTFConfiguration.ToString.IncludeMetaDataFormat", this.includeMetaData) + OutputConstants.NEW_LINE); //$NON-NLS-1$
         result.append(Messages.formatString("GitTFConfiguration.KeepAuthorFormat", this.keepAuthor) + OutputConstants.NEW_LINE); //$NON-NLS-1$
+        result.append(Messages.formatString("GitTFConfiguration.DownloadThreadsFormat", this.downloadThreads) + OutputConstants.NEW_LINE); //$NON-NLS-1$
+        result.append(Messages.formatString("GitTFConfiguration.PendBatchSizeFormat", this.pendBatchSize) + OutputConstants.NEW_LINE); //$NON-NLS-1$
+        result.append(Messages.formatString("GitTFConfiguration.ReuseWorkspaceFormat", this.reuseWorkspace) + OutputConstants.NEW_LINE); //$NON-NLS-1$
+        result.append(Messages.formatString("GitTFConfiguration.PrefetchChangesetsFormat", this.prefetchChangesets) + OutputConstants.NEW_LINE); //$NON-NLS-1$
         if (!StringUtil.isNullOrEmpty(userMap))
         {
             result.append(Messages.formatString("GitTFConfiguration.UserMapFormat", this.userMap) + OutputConstants.NEW_LINE); //$NON-NLS-1$
@@ -569,6 +750,11 @@ public class GitTFConfiguration
     /**
      * Loads the git-tf configuration from the given git repository.
      * 
+     * The configuration is only read from the repository's git configuration
+     * the first time it is loaded, or after it was changed by
+     * {@link #saveTo(Repository)}, {@link #removeFrom(Repository)} or
+     * {@link #invalidate(Repository)}.
+     * 
      * @param repository
      *        The {@link Repository} to load git-tf configuration data from
      *        (must not be <code>null</code>)
@@ -579,6 +765,53 @@ public class GitTFConfiguration
     {
         Check.notNull(repository, "repository"); //$NON-NLS-1$
 
+        GitTFConfiguration snapshot;
+
+        synchronized (snapshots)
+        {
+            snapshot = snapshots.get(repository);
+        }
+
+        if (snapshot == null)
+        {
+            snapshot = readFrom(repository);
+
+            if (snapshot == null)
+            {
+                return null;
+            }
+
+            synchronized (snapshots)
+            {
+                snapshots.put(repository, snapshot);
+            }
+        }
+
+        return new GitTFConfiguration(snapshot);
+    }
+
+    /**
+     * Discards the git-tf configuration loaded from the given git repository,
+     * the next {@link #loadFrom(Repository)} reads the repository's git
+     * configuration again. Must be called after changing the git-tf
+     * configuration without using this class.
+     * 
+     * @param repository
+     *        The {@link Repository} the configuration was loaded from (must
+     *        not be <code>null</code>)
+     */
+    public static void invalidate(final Repository repository)
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+
+        synchronized (snapshots)
+        {
+            snapshots.remove(repository);
+        }
+    }
+
+    private static GitTFConfiguration readFrom(final Repository repository)
+    {
         final String projectCollection =
             repository.getConfig().getString(
                 ConfigurationConstants.CONFIGURATION_SECTION,
@@ -656,6 +889,34 @@ public class GitTFConfiguration
                 ConfigurationConstants.GENERAL_SUBSECTION,
                 ConfigurationConstants.USER_MAP);
 
+        final int downloadThreads =
+            repository.getConfig().getInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.GENERAL_SUBSECTION,
+                ConfigurationConstants.DOWNLOAD_THREADS,
+                GitTFConstants.GIT_TF_DEFAULT_DOWNLOAD_THREADS);
+
+        final int pendBatchSize =
+            repository.getConfig().getInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.GENERAL_SUBSECTION,
+                ConfigurationConstants.PEND_BATCH_SIZE,
+                GitTFConstants.GIT_TF_DEFAULT_PEND_BATCH_SIZE);
+
+        final boolean reuseWorkspace =
+            repository.getConfig().getBoolean(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.GENERAL_SUBSECTION,
+                ConfigurationConstants.REUSE_WORKSPACE,
+                GitTFConstants.GIT_TF_DEFAULT_REUSE_WORKSPACE);
+
+        final int prefetchChangesets =
+            repository.getConfig().getInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.GENERAL_SUBSECTION,
+                ConfigurationConstants.PREFETCH_CHANGESETS,
+                GitTFConstants.GIT_TF_DEFAULT_PREFETCH_CHANGESETS);
+
         if (projectCollection == null)
         {
             log.error("No project collection configuration in repository"); //$NON-NLS-1$
@@ -710,6 +971,10 @@ public class GitTFConfiguration
             tempDirectory,
             keepAuthor,
             userMap,
+            Math.min(Math.max(downloadThreads, 1), GitTFConstants.GIT_TF_MAX_DOWNLOAD_THREADS),
+            Math.max(pendBatchSize, 1),
+            reuseWorkspace,
+            Math.min(Math.max(prefetchChangesets, 0), GitTFConstants.GIT_TF_MAX_PREFETCH_CHANGESETS),
             isDefined);
     }
 
@@ -724,6 +989,8 @@ public class GitTFConfiguration
     {
         Check.notNull(repository, "repository"); //$NON-NLS-1$
 
+        invalidate(repository);
+
         repository.getConfig().unsetSection(
             ConfigurationConstants.CONFIGURATION_SECTION,
             ConfigurationConstants.SERVER_SUBSECTION);
@@ -731,5 +998,9 @@ public class GitTFConfiguration
         repository.getConfig().unsetSection(
             ConfigurationConstants.CONFIGURATION_SECTION,
             ConfigurationConstants.GENERAL_SUBSECTION);
+
+        repository.getConfig().unsetSection(
+            ConfigurationConstants.CONFIGURATION_SECTION,
+            ConfigurationConstants.WORKSPACE_SUBSECTION);
     }
 }
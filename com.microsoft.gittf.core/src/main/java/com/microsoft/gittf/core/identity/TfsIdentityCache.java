@@ -0,0 +1,342 @@
+package com.microsoft.gittf.core.identity;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.util.FS;
+
+import com.microsoft.gittf.core.GitTFConstants;
+import com.microsoft.gittf.core.util.Check;
+
+/**
+ * Caches the results of TFS identity searches in a file in the repository
+ * directory, so that the same Git authors are not searched for on the server
+ * on every check-in. Searches that found no identity are cached as well, for
+ * a shorter time. The cache is only an optimization: a file that cannot be
+ * read or written is logged and otherwise ignored.
+ * 
+ * The first line of the file holds the URI of the server the identities were
+ * searched on, a file written for another server is ignored. Each following
+ * line holds the expiry time, the search factor and the search value of one
+ * search followed by the unique and display names of the identities found,
+ * separated by tabs.
+ */
+public class TfsIdentityCache
+{
+    final Log log = LogFactory.getLog(TfsIdentityCache.class.getName());
+
+    private static final char SEPARATOR = '\t';
+    private static final String CHARSET = "UTF-8"; //$NON-NLS-1$
+
+    private final File cacheFile;
+    private final String serverURI;
+    private final long timeToLive;
+    private final long notFoundTimeToLive;
+
+    private final Map<String, CacheEntry> entries = new HashMap<String, CacheEntry>();
+
+    private boolean loaded = false;
+    private boolean changed = false;
+
+    public TfsIdentityCache(final File cacheFile, final URI serverURI)
+    {
+        this(
+            cacheFile,
+            serverURI,
+            GitTFConstants.GIT_TF_IDENTITY_CACHE_TIME_TO_LIVE,
+            GitTFConstants.GIT_TF_IDENTITY_CACHE_NOT_FOUND_TIME_TO_LIVE);
+    }
+
+    public TfsIdentityCache(
+        final File cacheFile,
+        final URI serverURI,
+        final long timeToLive,
+        final long notFoundTimeToLive)
+    {
+        Check.notNull(cacheFile, "cacheFile"); //$NON-NLS-1$
+        Check.notNull(serverURI, "serverURI"); //$NON-NLS-1$
+
+        this.cacheFile = cacheFile;
+        this.serverURI = serverURI.toString();
+        this.timeToLive = timeToLive;
+        this.notFoundTimeToLive = notFoundTimeToLive;
+    }
+
+    /**
+     * Gets the identities found by an earlier search
+     * 
+     * @param searchFactor
+     *        the search factor value
+     * @param searchValue
+     *        the value searched for
+     * @return the identities found, an empty list if the search found none or
+     *         null if the search is not cached or has expired
+     */
+    public List<TfsUser> get(final int searchFactor, final String searchValue)
+    {
+        ensureLoaded();
+
+        final CacheEntry entry = entries.get(getKey(searchFactor, searchValue));
+
+        if (entry == null || entry.isExpired(System.currentTimeMillis()))
+        {
+            return null;
+        }
+
+        return new ArrayList<TfsUser>(entry.users);
+    }
+
+    /**
+     * Records the identities found by a search
+     * 
+     * @param searchFactor
+     *        the search factor value
+     * @param searchValue
+     *        the value searched for
+     * @param users
+     *        the identities found, may be null or empty if none were found
+     */
+    public void put(final int searchFactor, final String searchValue, final List<TfsUser> users)
+    {
+        Check.notNull(searchValue, "searchValue"); //$NON-NLS-1$
+
+        ensureLoaded();
+
+        final List<TfsUser> cachedUsers =
+            users != null ? new ArrayList<TfsUser>(users) : Collections.<TfsUser> emptyList();
+
+        /* Values that cannot be written to a line are simply not cached */
+        if (!canWrite(searchValue))
+        {
+            return;
+        }
+
+        for (final TfsUser user : cachedUsers)
+        {
+            if (!canWrite(user.getName()) || !canWrite(user.getDisplayName()))
+            {
+                return;
+            }
+        }
+
+        final long expires =
+            System.currentTimeMillis() + (cachedUsers.size() > 0 ? timeToLive : notFoundTimeToLive);
+
+        entries.put(getKey(searchFactor, searchValue), new CacheEntry(
+            searchFactor,
+            searchValue,
+            expires,
+            cachedUsers));
+        changed = true;
+    }
+
+    /**
+     * Writes the cache file if any search has been recorded since it was
+     * loaded. Expired entries are dropped.
+     */
+    public void save()
+    {
+        if (!changed)
+        {
+            return;
+        }
+
+        final LockFile lockFile = new LockFile(cacheFile, FS.DETECTED);
+
+        try
+        {
+            if (!lockFile.lock())
+            {
+                log.warn("Could not lock the identity cache " + cacheFile.getAbsolutePath()); //$NON-NLS-1$
+                return;
+            }
+
+            try
+            {
+                final BufferedWriter writer =
+                    new BufferedWriter(new OutputStreamWriter(lockFile.getOutputStream(), CHARSET));
+
+                try
+                {
+                    writer.write(serverURI);
+                    writer.newLine();
+
+                    final long now = System.currentTimeMillis();
+
+                    for (final CacheEntry entry : entries.values())
+                    {
+                        if (!entry.isExpired(now))
+                        {
+                            writer.write(entry.toLine());
+                            writer.newLine();
+                        }
+                    }
+                }
+                finally
+                {
+                    writer.close();
+                }
+
+                if (lockFile.commit())
+                {
+                    changed = false;
+                }
+                else
+                {
+                    log.warn("Could not update the identity cache " + cacheFile.getAbsolutePath()); //$NON-NLS-1$
+                }
+            }
+            finally
+            {
+                lockFile.unlock();
+            }
+        }
+        catch (final IOException e)
+        {
+            log.warn("Could not write the identity cache " + cacheFile.getAbsolutePath(), e); //$NON-NLS-1$
+        }
+    }
+
+    private void ensureLoaded()
+    {
+        if (loaded)
+        {
+            return;
+        }
+
+        loaded = true;
+
+        if (!cacheFile.isFile())
+        {
+            return;
+        }
+
+        try
+        {
+            final BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), CHARSET));
+
+            try
+            {
+                /* The identities of another server must not be returned */
+                final String cacheServerURI = reader.readLine();
+
+                if (cacheServerURI == null || !cacheServerURI.equalsIgnoreCase(serverURI))
+                {
+                    return;
+                }
+
+                final long now = System.currentTimeMillis();
+
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    final CacheEntry entry = CacheEntry.fromLine(line);
+
+                    if (entry != null && !entry.isExpired(now))
+                    {
+                        entries.put(getKey(entry.searchFactor, entry.searchValue), entry);
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (final IOException e)
+        {
+            log.warn("Could not read the identity cache " + cacheFile.getAbsolutePath(), e); //$NON-NLS-1$
+            entries.clear();
+        }
+    }
+
+    private static String getKey(final int searchFactor, final String searchValue)
+    {
+        /* Identity searches are not case sensitive */
+        return String.valueOf(searchFactor) + SEPARATOR + searchValue.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static boolean canWrite(final String value)
+    {
+        return value != null && value.indexOf(SEPARATOR) < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0;
+    }
+
+    private static class CacheEntry
+    {
+        private final int searchFactor;
+        private final String searchValue;
+        private final long expires;
+        private final List<TfsUser> users;
+
+        public CacheEntry(final int searchFactor, final String searchValue, final long expires, final List<TfsUser> users)
+        {
+            this.searchFactor = searchFactor;
+            this.searchValue = searchValue;
+            this.expires = expires;
+            this.users = users;
+        }
+
+        public boolean isExpired(final long now)
+        {
+            return now >= expires;
+        }
+
+        public String toLine()
+        {
+            final StringBuilder line = new StringBuilder();
+
+            line.append(expires).append(SEPARATOR).append(searchFactor).append(SEPARATOR).append(searchValue);
+
+            for (final TfsUser user : users)
+            {
+                line.append(SEPARATOR).append(user.getName()).append(SEPARATOR).append(user.getDisplayName());
+            }
+
+            return line.toString();
+        }
+
+        public static CacheEntry fromLine(final String line)
+        {
+            final String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+
+            if (fields.length < 3 || fields.length % 2 == 0)
+            {
+                return null;
+            }
+
+            try
+            {
+                final long expires = Long.parseLong(fields[0]);
+                final int searchFactor = Integer.parseInt(fields[1]);
+                final List<TfsUser> users = new ArrayList<TfsUser>();
+
+                for (int i = 3; i < fields.length; i += 2)
+                {
+                    users.add(new TfsUser(fields[i], fields[i + 1]));
+                }
+
+                return new CacheEntry(searchFactor, fields[2], expires, users);
+            }
+            catch (final NumberFormatException e)
+            {
+                return null;
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.microsoft.gittf.core.identity;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.text.MessageFormat;
@@ -13,7 +14,10 @@ import java.util.Map.Entry;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.lib.Repository;
 
+import com.microsoft.gittf.core.GitTFConstants;
+import com.microsoft.gittf.core.config.GitTFConfiguration;
 import com.microsoft.gittf.core.impl.TfsIdentityManagementService;
 import com.microsoft.gittf.core.interfaces.IdentityManagementService;
 import com.microsoft.gittf.core.tasks.SearchIdentitesTask;
@@ -41,13 +45,24 @@ public class TfsUserMap
 
     private final IdentityManagementService IMS;
     private final List<CommitDelta> commitsToCheckin;
+    private final TfsIdentityCache identityCache;
 
-    public TfsUserMap(final TFSConnection connection, final String userMapPath, final List<CommitDelta> commitsToCheckin)
+    public TfsUserMap(
+        final TFSConnection connection,
+        final Repository repository,
+        final String userMapPath,
+        final List<CommitDelta> commitsToCheckin)
     {
         super(userMapPath);
 
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+
         this.IMS = new TfsIdentityManagementService(connection);
         this.commitsToCheckin = commitsToCheckin;
+        this.identityCache =
+            new TfsIdentityCache(
+                new File(repository.getDirectory(), GitTFConstants.GIT_TF_IDENTITY_CACHE_NAME),
+                GitTFConfiguration.loadFrom(repository).getServerURI());
     }
 
     @Override
@@ -127,10 +142,40 @@ public class TfsUserMap
 
         Map<String, List<TfsUser>> userMap = new HashMap<String, List<TfsUser>>();
 
+        /*
+         * Use the results of earlier searches that have not expired and only
+         * search the server for the remaining values, in a single request.
+         */
+        final List<String> notCachedValues = new ArrayList<String>();
+
+        for (final String searchValue : searchValues)
+        {
+            final List<TfsUser> cachedUsers = identityCache.get(searchFactor.getValue(), searchValue);
+
+            if (cachedUsers == null)
+            {
+                notCachedValues.add(searchValue);
+            }
+            else if (cachedUsers.size() > 0)
+            {
+                userMap.put(searchValue, cachedUsers);
+            }
+        }
+
+        log.debug(MessageFormat.format("{0} of {1} identity searches found in the cache", //$NON-NLS-1$
+            searchValues.size() - notCachedValues.size(),
+            searchValues.size()));
+
+        if (notCachedValues.size() == 0)
+        {
+            return userMap;
+        }
+
         TaskStatus searchStatus;
         SearchIdentitesTask searchTask;
 
-        searchTask = new SearchIdentitesTask(IMS, searchFactor, searchValues.toArray(new String[searchValues.size()]));
+        searchTask =
+            new SearchIdentitesTask(IMS, searchFactor, notCachedValues.toArray(new String[notCachedValues.size()]));
         searchStatus = new TaskExecutor(progressMonitor.newSubTask(1)).execute(searchTask);
 
         if (searchStatus.isOK())
@@ -140,7 +185,7 @@ public class TfsUserMap
             {
                 for (int k = 0; k < identitiesList.length; k++)
                 {
-                    log.debug("Search for:    " + searchValues.get(k)); //$NON-NLS-1$
+                    log.debug("Search for:    " + notCachedValues.get(k)); //$NON-NLS-1$
 
                     final TeamFoundationIdentity[] mappedIdentites = identitiesList[k];
                     if (mappedIdentites != null && mappedIdentites.length > 0)
@@ -180,14 +225,20 @@ public class TfsUserMap
 
                         if (tfsUsers.size() > 0)
                         {
-                            userMap.put(searchValues.get(k), tfsUsers);
+                            userMap.put(notCachedValues.get(k), tfsUsers);
                         }
+
+                        identityCache.put(searchFactor.getValue(), notCachedValues.get(k), tfsUsers);
                     }
                     else
                     {
                         log.debug("Found:         0"); //$NON-NLS-1$
+
+                        identityCache.put(searchFactor.getValue(), notCachedValues.get(k), null);
                     }
                 }
+
+                identityCache.save();
             }
         }
         else if (searchStatus.getSeverity().equals(TaskStatus.CANCEL))
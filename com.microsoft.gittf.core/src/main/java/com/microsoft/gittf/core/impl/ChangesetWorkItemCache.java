@@ -0,0 +1,258 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.impl;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.microsoft.gittf.core.GitTFConstants;
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.tfs.core.artifact.ArtifactID;
+import com.microsoft.tfs.core.artifact.ArtifactIDFactory;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import com.microsoft.tfs.core.clients.workitem.CoreFieldReferenceNames;
+import com.microsoft.tfs.core.clients.workitem.WorkItem;
+import com.microsoft.tfs.core.clients.workitem.WorkItemClient;
+import com.microsoft.tfs.core.clients.workitem.query.Query;
+import com.microsoft.tfs.core.clients.workitem.query.WorkItemCollection;
+
+/**
+ * Looks up the work items linked to a range of changesets ahead of the
+ * commits being created for them, so that the work item mentions added to the
+ * commit messages do not wait on the server. The lookups of the queued
+ * changesets run in the background, and the titles of the work items are
+ * cached by work item id so that a work item linked to many changesets is only
+ * kept once.
+ */
+public class ChangesetWorkItemCache
+{
+    private static final Log log = LogFactory.getLog(ChangesetWorkItemCache.class);
+
+    private final WorkItemClient witClient;
+    private final ExecutorService lookupExecutor;
+
+    /* The lookups of the changesets whose work items have not been used yet */
+    private final Map<Integer, Future<int[]>> lookups = new HashMap<Integer, Future<int[]>>();
+    private final Map<Integer, String> titles = new HashMap<Integer, String>();
+
+    /**
+     * Constructor
+     * 
+     * @param witClient
+     *        the work item client to query the linked work items with
+     */
+    public ChangesetWorkItemCache(final WorkItemClient witClient)
+    {
+        Check.notNull(witClient, "witClient"); //$NON-NLS-1$
+
+        this.witClient = witClient;
+        this.lookupExecutor = Executors.newFixedThreadPool(GitTFConstants.GIT_TF_WORK_ITEM_LOOKUP_THREADS);
+    }
+
+    /**
+     * Returns the given changesets, and keeps the work items of the
+     * changesets that follow the last returned one queued for lookup.
+     * 
+     * @param changesets
+     *        the changesets the commits are created for
+     * @param lookAhead
+     *        the number of changesets to queue ahead of the last returned one
+     * @return the changesets
+     */
+    public Iterator<Changeset> lookupAhead(final Iterator<Changeset> changesets, final int lookAhead)
+    {
+        Check.notNull(changesets, "changesets"); //$NON-NLS-1$
+        Check.isTrue(lookAhead >= 0, "lookAhead >= 0"); //$NON-NLS-1$
+
+        return new Iterator<Changeset>()
+        {
+            private final LinkedList<Changeset> upcoming = new LinkedList<Changeset>();
+
+            public boolean hasNext()
+            {
+                return !upcoming.isEmpty() || changesets.hasNext();
+            }
+
+            public Changeset next()
+            {
+                while (upcoming.size() <= lookAhead && changesets.hasNext())
+                {
+                    final Changeset changeset = changesets.next();
+
+                    queue(changeset.getChangesetID());
+                    upcoming.add(changeset);
+                }
+
+                return upcoming.removeFirst();
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Queues the lookup of the work items linked to a changeset.
+     * 
+     * @param changesetID
+     *        the changeset to look up
+     */
+    public void queue(final int changesetID)
+    {
+        synchronized (lookups)
+        {
+            if (lookups.containsKey(changesetID))
+            {
+                return;
+            }
+
+            lookups.put(changesetID, lookupExecutor.submit(new Callable<int[]>()
+            {
+                public int[] call()
+                {
+                    return queryWorkItemIDs(changesetID);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Gets the ids of the work items linked to a queued changeset, waiting for
+     * its lookup if needed. The titles of these work items are available from
+     * {@link #getTitle(int)}.
+     * 
+     * @param changesetID
+     *        the changeset to get the work items of
+     * @return the work item ids, or <code>null</code> if the changeset was not
+     *         queued or the lookup failed
+     */
+    public int[] getWorkItemIDs(final int changesetID)
+    {
+        final Future<int[]> lookup;
+
+        synchronized (lookups)
+        {
+            lookup = lookups.remove(changesetID);
+        }
+
+        if (lookup == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return lookup.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (CancellationException e)
+        {
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            /* Query the server again so that the error is reported as usual */
+            log.debug(MessageFormat.format(
+                "Looking up the work items of changeset {0} failed", Integer.toString(changesetID)), e); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    /**
+     * Gets the title of a work item returned by
+     * {@link #getWorkItemIDs(int)}.
+     * 
+     * @param workItemID
+     *        the work item id
+     * @return the title of the work item
+     */
+    public String getTitle(final int workItemID)
+    {
+        synchronized (titles)
+        {
+            return titles.get(workItemID);
+        }
+    }
+
+    /**
+     * Stops the lookups that have not completed yet.
+     */
+    public void close()
+    {
+        lookupExecutor.shutdownNow();
+
+        synchronized (lookups)
+        {
+            lookups.clear();
+        }
+    }
+
+    private int[] queryWorkItemIDs(final int changesetID)
+    {
+        final ArtifactID changesetArtifactId = ArtifactIDFactory.newChangesetArtifactID(changesetID);
+
+        final Query query = witClient.createReferencingQuery(changesetArtifactId.encodeURI());
+        query.getDisplayFieldList().add(CoreFieldReferenceNames.TITLE);
+
+        final WorkItemCollection collection = query.runQuery();
+        final int[] workItemIDs = new int[collection.size()];
+
+        for (int i = 0; i < collection.size(); i++)
+        {
+            final WorkItem workItem = collection.getWorkItem(i);
+            workItemIDs[i] = workItem.getID();
+
+            synchronized (titles)
+            {
+                if (!titles.containsKey(workItemIDs[i]))
+                {
+                    titles.put(
+                        workItemIDs[i],
+                        String.valueOf(workItem.getFields().getField(CoreFieldReferenceNames.TITLE).getValue()));
+                }
+            }
+        }
+
+        return workItemIDs;
+    }
+}
@@ -0,0 +1,758 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.util.TemporaryBuffer;
+
+import com.microsoft.gittf.core.GitTFConstants;
+import com.microsoft.gittf.core.interfaces.VersionControlService;
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.tfs.core.clients.versioncontrol.GetItemsOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.path.ServerPath;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Change;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ChangeType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.DeletedState;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingChange;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Shelveset;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+import com.microsoft.tfs.util.FileHelpers;
+
+/**
+ * A VersionControlService that queries the item listings of upcoming
+ * changesets and downloads the files they changed in the background, while the
+ * commit for the current changeset is created. The prefetched results are
+ * handed out by the same calls the commit creation makes, all other calls go
+ * straight to the wrapped service.
+ * 
+ * The changesets are listed one at a time in the order they are prefetched.
+ * The prefetcher takes its share of the download threads from the budget of the
+ * commit creation, see {@link #getPrefetchDownloadThreads(int)}. The content of
+ * the prefetched files is limited to
+ * {@link GitTFConstants#GIT_TF_PREFETCH_BUFFER_LIMIT} bytes, files beyond that
+ * are downloaded when the commit is created.
+ */
+public class PrefetchingVersionControlService
+    implements VersionControlService
+{
+    private static final Log log = LogFactory.getLog(PrefetchingVersionControlService.class);
+
+    private final VersionControlService versionControlService;
+    private final String serverPath;
+    private final int prefetchChangesets;
+    private final File tempDir;
+
+    private final ExecutorService listingExecutor;
+    private final ExecutorService downloadExecutor;
+
+    /* The prefetched results that have not been used yet, each is used once */
+    private final Map<String, PrefetchedResult> prefetched = new HashMap<String, PrefetchedResult>();
+    private final Map<Integer, List<String>> changesetKeys = new HashMap<Integer, List<String>>();
+    private long bufferedBytes = 0;
+    private int releasedChangesetID = -1;
+
+    /**
+     * Constructor
+     * 
+     * @param versionControlService
+     *        the service to query the server with
+     * @param serverPath
+     *        the server path the commits are created for
+     * @param prefetchChangesets
+     *        the number of changesets to prefetch ahead of the current one
+     * @param downloadThreads
+     *        the number of files to download concurrently, if 0 the changesets
+     *        are listed but no files are prefetched
+     * @param tempDir
+     *        the directory to spill large downloads to, it is deleted by
+     *        {@link #close()}
+     */
+    public PrefetchingVersionControlService(
+        final VersionControlService versionControlService,
+        final String serverPath,
+        final int prefetchChangesets,
+        final int downloadThreads,
+        final File tempDir)
+    {
+        Check.notNull(versionControlService, "versionControlService"); //$NON-NLS-1$
+        Check.notNullOrEmpty(serverPath, "serverPath"); //$NON-NLS-1$
+        Check.isTrue(prefetchChangesets > 0, "prefetchChangesets > 0"); //$NON-NLS-1$
+        Check.isTrue(downloadThreads >= 0, "downloadThreads >= 0"); //$NON-NLS-1$
+        Check.notNull(tempDir, "tempDir"); //$NON-NLS-1$
+
+        this.versionControlService = versionControlService;
+        this.serverPath = serverPath;
+        this.prefetchChangesets = prefetchChangesets;
+        this.tempDir = tempDir;
+
+        tempDir.mkdirs();
+
+        this.listingExecutor = Executors.newSingleThreadExecutor();
+        this.downloadExecutor = downloadThreads > 0 ? Executors.newFixedThreadPool(downloadThreads) : null;
+    }
+
+    /**
+     * Returns the number of download threads the prefetcher uses out of the
+     * download threads configured for a fetch, the commit creation uses the
+     * rest. The prefetched files are written to the repository by the commit
+     * creation, so the commit creation gets the larger share.
+     * 
+     * @param downloadThreads
+     *        the number of download threads configured for the fetch
+     * @return the number of download threads of the prefetcher, 0 if only one
+     *         thread is configured
+     */
+    public static int getPrefetchDownloadThreads(final int downloadThreads)
+    {
+        return Math.max(downloadThreads, 0) / 2;
+    }
+
+    /**
+     * Returns the given changesets, and keeps the changesets that follow the
+     * last returned one prefetched. The prefetched data of a changeset is
+     * released when the next changeset is returned.
+     * 
+     * @param changesets
+     *        the changesets the commits are created for, oldest first
+     * @param firstIncremental
+     *        <code>true</code> if the commit for the first changeset is built
+     *        from the commit of its preceding changeset, all other commits
+     *        always are
+     * @return the changesets
+     */
+    public Iterator<Changeset> prefetchAhead(final Iterator<Changeset> changesets, final boolean firstIncremental)
+    {
+        Check.notNull(changesets, "changesets"); //$NON-NLS-1$
+
+        return new Iterator<Changeset>()
+        {
+            private final LinkedList<Changeset> upcoming = new LinkedList<Changeset>();
+            private boolean first = true;
+            private int currentChangesetID = -1;
+
+            public boolean hasNext()
+            {
+                return !upcoming.isEmpty() || changesets.hasNext();
+            }
+
+            public Changeset next()
+            {
+                if (currentChangesetID >= 0)
+                {
+                    release(currentChangesetID);
+                }
+
+                while (upcoming.size() <= prefetchChangesets && changesets.hasNext())
+                {
+                    final Changeset changeset = changesets.next();
+
+                    prefetch(changeset, first ? firstIncremental : true);
+                    upcoming.add(changeset);
+                    first = false;
+                }
+
+                final Changeset changeset = upcoming.removeFirst();
+                currentChangesetID = changeset.getChangesetID();
+
+                return changeset;
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Starts prefetching the server data needed to create the commit for the
+     * given changeset.
+     * 
+     * @param changeset
+     *        the changeset to prefetch
+     * @param incremental
+     *        <code>true</code> if the commit is built from the commit of the
+     *        preceding changeset, which only needs the folders changed in the
+     *        changeset to be listed
+     */
+    public void prefetch(final Changeset changeset, final boolean incremental)
+    {
+        Check.notNull(changeset, "changeset"); //$NON-NLS-1$
+
+        final int changesetID = changeset.getChangesetID();
+
+        /*
+         * Register the first query right away, so that a commit created before
+         * the prefetch got to it waits for it rather than querying again
+         */
+        final FutureTask<?> firstQuery;
+        final String firstQueryKey;
+
+        if (incremental)
+        {
+            firstQuery = new FutureTask<Changeset>(new Callable<Changeset>()
+            {
+                public Changeset call()
+                {
+                    return versionControlService.getChangeset(changesetID);
+                }
+            });
+            firstQueryKey = getChangesetKey(changesetID);
+        }
+        else
+        {
+            firstQuery = newItemsQuery(serverPath, changesetID, RecursionType.FULL);
+            firstQueryKey = getItemsKey(serverPath, changesetID, RecursionType.FULL);
+        }
+
+        if (!add(changesetID, firstQueryKey, firstQuery, 0))
+        {
+            return;
+        }
+
+        listingExecutor.execute(new Runnable()
+        {
+            public void run()
+            {
+                firstQuery.run();
+
+                try
+                {
+                    if (incremental)
+                    {
+                        prefetchChangedFolders(changesetID, (Changeset) firstQuery.get());
+                    }
+                    else
+                    {
+                        prefetchDownloads(changesetID, (Item[]) firstQuery.get());
+                    }
+                }
+                catch (Exception e)
+                {
+                    log.warn(MessageFormat.format("Could not prefetch changeset {0}", Integer.toString(changesetID)), e); //$NON-NLS-1$
+                }
+            }
+        });
+    }
+
+    /**
+     * Lists the folders changed in the changeset the way the incremental
+     * commit creation does, and downloads the files the changeset changed.
+     */
+    private void prefetchChangedFolders(final int changesetID, final Changeset changesetWithChanges)
+        throws Exception
+    {
+        final Change[] changes = changesetWithChanges != null ? changesetWithChanges.getChanges() : null;
+
+        if (changes == null || changes.length == 0)
+        {
+            return;
+        }
+
+        final Set<String> changedFolders = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+        for (final Change change : changes)
+        {
+            final String itemServerPath = change.getItem().getServerItem();
+
+            /* The full tree is listed for these, see the commit task */
+            if (change.getChangeType().contains(ChangeType.RENAME) || ServerPath.equals(itemServerPath, serverPath))
+            {
+                final FutureTask<Item[]> itemsQuery = newItemsQuery(serverPath, changesetID, RecursionType.FULL);
+
+                if (!add(changesetID, getItemsKey(serverPath, changesetID, RecursionType.FULL), itemsQuery, 0))
+                {
+                    return;
+                }
+
+                itemsQuery.run();
+
+                prefetchDownloads(changesetID, itemsQuery.get());
+                return;
+            }
+
+            if (ServerPath.isChild(serverPath, itemServerPath))
+            {
+                changedFolders.add(ServerPath.getParent(itemServerPath));
+            }
+        }
+
+        for (final String changedFolder : changedFolders)
+        {
+            final FutureTask<Item[]> itemsQuery = newItemsQuery(changedFolder, changesetID, RecursionType.ONE_LEVEL);
+
+            if (!add(changesetID, getItemsKey(changedFolder, changesetID, RecursionType.ONE_LEVEL), itemsQuery, 0))
+            {
+                return;
+            }
+
+            itemsQuery.run();
+
+            prefetchDownloads(changesetID, itemsQuery.get());
+        }
+    }
+
+    /**
+     * Downloads the files among the given items that were changed in the
+     * changeset, as long as the prefetched content fits in the buffer limit.
+     */
+    private void prefetchDownloads(final int changesetID, final Item[] items)
+    {
+        if (items == null || downloadExecutor == null)
+        {
+            return;
+        }
+
+        for (final Item item : items)
+        {
+            if (item.getItemType() == ItemType.FOLDER || item.getChangeSetID() != changesetID)
+            {
+                continue;
+            }
+
+            final long contentLength = Math.max(item.getContentLength(), 0);
+
+            final FutureTask<TemporaryBuffer> download = new FutureTask<TemporaryBuffer>(new Callable<TemporaryBuffer>()
+            {
+                public TemporaryBuffer call()
+                    throws Exception
+                {
+                    return downloadToBuffer(item);
+                }
+            });
+
+            synchronized (prefetched)
+            {
+                if (bufferedBytes + contentLength > GitTFConstants.GIT_TF_PREFETCH_BUFFER_LIMIT
+                    || !add(changesetID, getDownloadKey(item), download, contentLength))
+                {
+                    return;
+                }
+            }
+
+            downloadExecutor.execute(download);
+        }
+    }
+
+    private TemporaryBuffer downloadToBuffer(final Item item)
+        throws IOException
+    {
+        final int inCoreLimit =
+            item.getContentLength() > GitTFConstants.GIT_TF_DOWNLOAD_IN_CORE_LIMIT ? 0
+                : GitTFConstants.GIT_TF_DOWNLOAD_IN_CORE_LIMIT;
+
+        final TemporaryBuffer content = new TemporaryBuffer.LocalFile(tempDir, inCoreLimit);
+
+        try
+        {
+            versionControlService.downloadFile(item, content);
+            content.close();
+        }
+        catch (IOException e)
+        {
+            content.destroy();
+            throw e;
+        }
+
+        return content;
+    }
+
+    private FutureTask<Item[]> newItemsQuery(
+        final String path,
+        final int changesetID,
+        final RecursionType recursion)
+    {
+        return new FutureTask<Item[]>(new Callable<Item[]>()
+        {
+            public Item[] call()
+            {
+                return versionControlService.getItems(path, new ChangesetVersionSpec(changesetID), recursion);
+            }
+        });
+    }
+
+    /**
+     * Registers a prefetched result, unless the changeset has already been
+     * released.
+     * 
+     * @return <code>true</code> if the result was registered
+     */
+    private boolean add(final int changesetID, final String key, final Future<?> result, final long bufferedLength)
+    {
+        synchronized (prefetched)
+        {
+            if (changesetID <= releasedChangesetID)
+            {
+                return false;
+            }
+
+            prefetched.put(key, new PrefetchedResult(result, bufferedLength));
+            bufferedBytes += bufferedLength;
+
+            List<String> keys = changesetKeys.get(changesetID);
+
+            if (keys == null)
+            {
+                keys = new ArrayList<String>();
+                changesetKeys.put(changesetID, keys);
+            }
+
+            keys.add(key);
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes a prefetched result and waits for it.
+     * 
+     * @return the result, or <code>null</code> if it was not prefetched or the
+     *         prefetch failed
+     */
+    private Object take(final String key)
+    {
+        final PrefetchedResult result;
+
+        synchronized (prefetched)
+        {
+            result = prefetched.remove(key);
+
+            if (result == null)
+            {
+                return null;
+            }
+
+            bufferedBytes -= result.getBufferedLength();
+        }
+
+        try
+        {
+            return result.getFuture().get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (CancellationException e)
+        {
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            /* Query the server again so that the error is reported as usual */
+            log.debug(MessageFormat.format("Prefetching {0} failed", key), e); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    /**
+     * Releases the results prefetched for a changeset that were not used.
+     * Nothing is prefetched for this changeset or the ones before it any
+     * longer.
+     * 
+     * @param changesetID
+     *        the changeset whose commit has been created
+     */
+    public void release(final int changesetID)
+    {
+        final List<PrefetchedResult> unused = new ArrayList<PrefetchedResult>();
+
+        synchronized (prefetched)
+        {
+            releasedChangesetID = Math.max(releasedChangesetID, changesetID);
+
+            final List<String> keys = changesetKeys.remove(changesetID);
+
+            if (keys == null)
+            {
+                return;
+            }
+
+            for (final String key : keys)
+            {
+                final PrefetchedResult result = prefetched.remove(key);
+
+                if (result != null)
+                {
+                    bufferedBytes -= result.getBufferedLength();
+                    unused.add(result);
+                }
+            }
+        }
+
+        for (final PrefetchedResult result : unused)
+        {
+            destroy(result.getFuture());
+        }
+    }
+
+    private void destroy(final Future<?> future)
+    {
+        if (!future.isDone())
+        {
+            future.cancel(true);
+            return;
+        }
+
+        try
+        {
+            final Object value = future.get();
+
+            if (value instanceof TemporaryBuffer)
+            {
+                ((TemporaryBuffer) value).destroy();
+            }
+        }
+        catch (Exception e)
+        {
+            /* Nothing to release */
+        }
+    }
+
+    /**
+     * Stops prefetching and releases all the prefetched results.
+     */
+    public void close()
+    {
+        listingExecutor.shutdownNow();
+
+        if (downloadExecutor != null)
+        {
+            downloadExecutor.shutdownNow();
+        }
+
+        final List<Integer> changesetIDs;
+
+        synchronized (prefetched)
+        {
+            changesetIDs = new ArrayList<Integer>(changesetKeys.keySet());
+        }
+
+        for (final Integer changesetID : changesetIDs)
+        {
+            release(changesetID);
+        }
+
+        try
+        {
+            if (tempDir.exists())
+            {
+                FileHelpers.deleteDirectory(tempDir);
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn(MessageFormat.format("Could not clean up temporary folder {0}", tempDir.getAbsolutePath()), e); //$NON-NLS-1$
+        }
+    }
+
+    private static String getChangesetKey(final int changesetID)
+    {
+        return "changeset:" + changesetID; //$NON-NLS-1$
+    }
+
+    private static String getItemsKey(final String path, final int changesetID, final RecursionType recursion)
+    {
+        return "items:" + changesetID + ":" + recursion + ":" + path; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    private static String getDownloadKey(final Item item)
+    {
+        return "download:" + item.getChangeSetID() + ":" + item.getItemID(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public Item getItem(String path, VersionSpec version, DeletedState deletedState, GetItemsOptions options)
+    {
+        return versionControlService.getItem(path, version, deletedState, options);
+    }
+
+    public Item[] getItems(String path, ChangesetVersionSpec version, RecursionType recursion)
+    {
+        final Object items = take(getItemsKey(path, version.getChangesetID(), recursion));
+
+        if (items != null)
+        {
+            return (Item[]) items;
+        }
+
+        return versionControlService.getItems(path, version, recursion);
+    }
+
+    public void downloadFile(Item item, String downloadTo)
+        throws IOException
+    {
+        versionControlService.downloadFile(item, downloadTo);
+    }
+
+    public void downloadFile(Item item, OutputStream outputStream)
+        throws IOException
+    {
+        final TemporaryBuffer content = (TemporaryBuffer) take(getDownloadKey(item));
+
+        if (content != null)
+        {
+            try
+            {
+                content.writeTo(outputStream, null);
+            }
+            finally
+            {
+                content.destroy();
+            }
+
+            return;
+        }
+
+        versionControlService.downloadFile(item, outputStream);
+    }
+
+    public void downloadShelvedFile(PendingChange shelvedChange, String downloadTo)
+    {
+        versionControlService.downloadShelvedFile(shelvedChange, downloadTo);
+    }
+
+    public void downloadShelvedFile(PendingChange shelvedChange, OutputStream outputStream)
+        throws IOException
+    {
+        versionControlService.downloadShelvedFile(shelvedChange, outputStream);
+    }
+
+    public void downloadBaseFile(PendingChange pendingChange, String downloadTo)
+    {
+        versionControlService.downloadBaseFile(pendingChange, downloadTo);
+    }
+
+    public void downloadBaseFile(PendingChange pendingChange, OutputStream outputStream)
+        throws IOException
+    {
+        versionControlService.downloadBaseFile(pendingChange, outputStream);
+    }
+
+    public Changeset getChangeset(int changesetID)
+    {
+        final Object changeset = take(getChangesetKey(changesetID));
+
+        if (changeset != null)
+        {
+            return (Changeset) changeset;
+        }
+
+        return versionControlService.getChangeset(changesetID);
+    }
+
+    public Changeset[] queryHistory(
+        String serverOrLocalPath,
+        VersionSpec version,
+        int deletionID,
+        RecursionType recursion,
+        String user,
+        VersionSpec versionFrom,
+        VersionSpec versionTo,
+        int maxCount,
+        boolean includeFileDetails,
+        boolean slotMode,
+        boolean generateDownloadURLs,
+        boolean sortAscending)
+    {
+        return versionControlService.queryHistory(
+            serverOrLocalPath,
+            version,
+            deletionID,
+            recursion,
+            user,
+            versionFrom,
+            versionTo,
+            maxCount,
+            includeFileDetails,
+            slotMode,
+            generateDownloadURLs,
+            sortAscending);
+    }
+
+    public Shelveset[] queryShelvesets(String shelvesetName, String shelvesetOwner)
+    {
+        return versionControlService.queryShelvesets(shelvesetName, shelvesetOwner);
+    }
+
+    public PendingSet[] queryShelvesetChanges(Shelveset shelveset, boolean includeDownloadInfo)
+    {
+        return versionControlService.queryShelvesetChanges(shelveset, includeDownloadInfo);
+    }
+
+    public void deleteShelveset(Shelveset shelveset)
+    {
+        versionControlService.deleteShelveset(shelveset);
+    }
+
+    private static final class PrefetchedResult
+    {
+        private final Future<?> future;
+        private final long bufferedLength;
+
+        private PrefetchedResult(final Future<?> future, final long bufferedLength)
+        {
+            this.future = future;
+            this.bufferedLength = bufferedLength;
+        }
+
+        public Future<?> getFuture()
+        {
+            return future;
+        }
+
+        public long getBufferedLength()
+        {
+            return bufferedLength;
+        }
+    }
+}
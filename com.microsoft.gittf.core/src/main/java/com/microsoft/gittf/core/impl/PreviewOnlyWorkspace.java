@@ -162,12 +162,12 @@ public class PreviewOnlyWorkspace
     }
 
     public int pendPropertyChange(
-        final String path,
+        final String[] paths,
         final PropertyValue[] properties,
         final RecursionType recursion,
         final LockLevel lockLevel)
     {
-        return 1;
+        return paths.length;
     }
 
     public void undo(ItemSpec[] itemSpecs)
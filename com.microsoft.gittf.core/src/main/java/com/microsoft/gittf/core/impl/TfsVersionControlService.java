@@ -25,6 +25,7 @@
 package com.microsoft.gittf.core.impl;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 import com.microsoft.gittf.core.interfaces.VersionControlService;
 import com.microsoft.gittf.core.util.Check;
@@ -38,6 +39,7 @@ import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingChang
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingSet;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Shelveset;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.DownloadSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
 
@@ -81,16 +83,37 @@ public class TfsVersionControlService
         item.downloadFile(versionControlClient, downloadTo);
     }
 
+    public void downloadFile(Item item, OutputStream outputStream)
+        throws IOException
+    {
+        versionControlClient.downloadFileToStream(new DownloadSpec(item.getDownloadURL()), outputStream, true);
+    }
+
     public void downloadShelvedFile(PendingChange shelvedChange, String downloadTo)
     {
         shelvedChange.downloadShelvedFile(versionControlClient, downloadTo);
     }
 
+    public void downloadShelvedFile(PendingChange shelvedChange, OutputStream outputStream)
+        throws IOException
+    {
+        versionControlClient.downloadFileToStream(
+            new DownloadSpec(shelvedChange.getShelvedDownloadURL()),
+            outputStream,
+            true);
+    }
+
     public void downloadBaseFile(PendingChange pendingChange, String downloadTo)
     {
         pendingChange.downloadBaseFile(versionControlClient, downloadTo);
     }
 
+    public void downloadBaseFile(PendingChange pendingChange, OutputStream outputStream)
+        throws IOException
+    {
+        versionControlClient.downloadFileToStream(new DownloadSpec(pendingChange.getDownloadURL()), outputStream, true);
+    }
+
     public Changeset getChangeset(int changesetID)
     {
         return versionControlClient.getChangeset(changesetID);
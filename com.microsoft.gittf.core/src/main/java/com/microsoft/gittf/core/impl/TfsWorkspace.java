@@ -126,12 +126,12 @@ public class TfsWorkspace
     }
 
     public int pendPropertyChange(
-        final String path,
+        final String[] paths,
         final PropertyValue[] properties,
         final RecursionType recursion,
         final LockLevel lockLevel)
     {
-        return workspace.pendPropertyChange(path, properties, recursion, lockLevel);
+        return workspace.pendPropertyChange(paths, properties, recursion, lockLevel, PendChangesOptions.NONE, null);
     }
 
     public void undo(ItemSpec[] itemSpecs)
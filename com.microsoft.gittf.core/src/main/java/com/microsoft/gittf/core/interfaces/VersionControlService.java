@@ -25,6 +25,7 @@
 package com.microsoft.gittf.core.interfaces;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 import com.microsoft.tfs.core.clients.versioncontrol.GetItemsOptions;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
@@ -46,10 +47,23 @@ public interface VersionControlService
     void downloadFile(Item item, String downloadTo)
         throws IOException;
 
+    /**
+     * Downloads the content of the item to the given stream. The stream is not
+     * closed.
+     */
+    void downloadFile(Item item, OutputStream outputStream)
+        throws IOException;
+
     void downloadShelvedFile(PendingChange shelvedChange, String downloadTo);
 
+    void downloadShelvedFile(PendingChange shelvedChange, OutputStream outputStream)
+        throws IOException;
+
     void downloadBaseFile(PendingChange pendingChange, String downloadTo);
 
+    void downloadBaseFile(PendingChange pendingChange, OutputStream outputStream)
+        throws IOException;
+
     Changeset getChangeset(int changesetID);
 
     Changeset[] queryHistory(
@@ -78,7 +78,7 @@ public interface WorkspaceService
         boolean detectTargetItemType,
         PendChangesOptions pendOptions);
 
-    int pendPropertyChange(String path, PropertyValue[] properties, RecursionType recursion, LockLevel lockLevel);
+    int pendPropertyChange(String[] paths, PropertyValue[] properties, RecursionType recursion, LockLevel lockLevel);
 
     void undo(ItemSpec[] itemSpecs);
 
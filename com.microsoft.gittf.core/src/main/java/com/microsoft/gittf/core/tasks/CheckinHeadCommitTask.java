@@ -56,6 +56,8 @@ import com.microsoft.gittf.core.tasks.framework.TaskExecutor;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressDisplay;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.tasks.pendDiff.CaseCollisionValidator;
+import com.microsoft.gittf.core.tasks.pendDiff.CheckinAnalysisPipeline;
 import com.microsoft.gittf.core.tasks.pendDiff.PendDifferenceTask;
 import com.microsoft.gittf.core.tasks.pendDiff.RenameMode;
 import com.microsoft.gittf.core.util.Check;
@@ -76,7 +78,6 @@ import com.microsoft.tfs.core.clients.versioncontrol.specs.version.LatestVersion
 import com.microsoft.tfs.core.clients.workitem.CheckinWorkItemAction;
 import com.microsoft.tfs.core.clients.workitem.WorkItem;
 import com.microsoft.tfs.core.clients.workitem.WorkItemClient;
-import com.microsoft.tfs.util.FileHelpers;
 
 /**
  * The CheckinHeadCommitTask checks in all the changes between HEAD in the
@@ -284,6 +285,7 @@ public class CheckinHeadCommitTask
 
         WorkspaceInfo workspaceData = null;
         UserMap userMap = null;
+        CheckinAnalysisPipeline analysisPipeline = null;
 
         try
         {
@@ -436,6 +438,29 @@ public class CheckinHeadCommitTask
             boolean anyThingCheckedIn = false;
             boolean otherUserCheckinDetected = false;
 
+            /*
+             * Consecutive commits share most of their trees, only validate the
+             * trees that changed
+             */
+            final CaseCollisionValidator caseCollisionValidator = new CaseCollisionValidator(repository);
+
+            /*
+             * When checking in several commits, analyze the upcoming commits
+             * in the background while the current one is being checked in
+             */
+            if (commitsToCheckin.size() > 1)
+            {
+                final List<PendDifferenceTask> pendTasks = new ArrayList<PendDifferenceTask>();
+
+                for (CommitDelta commitDelta : commitsToCheckin)
+                {
+                    pendTasks.add(createPendTask(commitDelta, workspace, workingFolder, caseCollisionValidator));
+                }
+
+                analysisPipeline =
+                    new CheckinAnalysisPipeline(pendTasks, GitTFConstants.GIT_TF_CHECKIN_ANALYSIS_LOOKAHEAD);
+            }
+
             log.debug("Number of commits to checkin: " + commitsToCheckin.size()); //$NON-NLS-1$
 
             progressMonitor.setWork(commitsToCheckin.size() * 2);
@@ -445,7 +470,8 @@ public class CheckinHeadCommitTask
             {
                 log.debug("Loading the user map."); //$NON-NLS-1$
 
-                userMap = new TfsUserMap(versionControlClient.getConnection(), userMapPath, commitsToCheckin);
+                userMap =
+                    new TfsUserMap(versionControlClient.getConnection(), repository, userMapPath, commitsToCheckin);
 
                 progressMonitor.setDetail(Messages.getString("CheckinHeadCommitTask.MappingAuthors")); //$NON-NLS-1$
 
@@ -505,25 +531,18 @@ public class CheckinHeadCommitTask
 
                 boolean isLastCommit = (i == (commitsToCheckin.size() - 1));
 
-                /* Save space: clean working folder after each checkin */
-                if (i > 0)
-                {
-                    log.debug("Cleaning the working folder" + workingFolder.getAbsolutePath()); //$NON-NLS-1$
-
-                    cleanWorkingFolder(workingFolder);
-                }
+                /*
+                 * The working folder is not cleaned between commits, the pend
+                 * task only rewrites or removes the items the commit touches
+                 */
 
                 /* Pend the differences between the two commits */
                 final PendDifferenceTask pendTask =
-                    new PendDifferenceTask(
-                        repository,
-                        commitDelta.getFromCommit(),
-                        commitDelta.getToCommit(),
+                    analysisPipeline != null ? analysisPipeline.getTask(i) : createPendTask(
+                        commitDelta,
                         workspace,
-                        serverPath,
-                        workingFolder);
-
-                pendTask.setRenameMode(renameMode);
+                        workingFolder,
+                        caseCollisionValidator);
 
                 pendTask.validate();
 
@@ -690,6 +709,11 @@ public class CheckinHeadCommitTask
         }
         finally
         {
+            if (analysisPipeline != null)
+            {
+                analysisPipeline.close();
+            }
+
             if (workspaceData != null)
             {
                 cleanupWorkspace(new NullTaskProgressMonitor(), workspaceData);
@@ -697,6 +721,40 @@ public class CheckinHeadCommitTask
         }
     }
 
+    /**
+     * Creates the task that pends the differences of a commit delta
+     * 
+     * @param commitDelta
+     *        the commit delta to pend
+     * @param workspace
+     *        the workspace to pend the changes in
+     * @param workingFolder
+     *        the working folder of the workspace
+     * @param caseCollisionValidator
+     *        the validator shared by the tasks of this check-in
+     * @return
+     */
+    private PendDifferenceTask createPendTask(
+        final CommitDelta commitDelta,
+        final WorkspaceService workspace,
+        final File workingFolder,
+        final CaseCollisionValidator caseCollisionValidator)
+    {
+        final PendDifferenceTask pendTask =
+            new PendDifferenceTask(
+                repository,
+                commitDelta.getFromCommit(),
+                commitDelta.getToCommit(),
+                workspace,
+                serverPath,
+                workingFolder);
+
+        pendTask.setRenameMode(renameMode);
+        pendTask.setCaseCollisionValidator(caseCollisionValidator);
+
+        return pendTask;
+    }
+
     /**
      * Builds the commit comment to use when checking in
      * 
@@ -902,21 +960,6 @@ public class CheckinHeadCommitTask
         return commitsToCheckin;
     }
 
-    private void cleanWorkingFolder(final File workingFolder)
-    {
-        try
-        {
-            FileHelpers.deleteDirectory(workingFolder);
-            workingFolder.mkdirs();
-        }
-        catch (Exception e)
-        {
-            /* Not fatal */
-            log.warn(MessageFormat.format("Could not clean up temporary directory {0}", //$NON-NLS-1$
-                workingFolder.getAbsolutePath()), e);
-        }
-    }
-
     private void cleanupWorkspace(final TaskProgressMonitor progressMonitor, final WorkspaceInfo workspaceData)
     {
         if (workspaceData == null)
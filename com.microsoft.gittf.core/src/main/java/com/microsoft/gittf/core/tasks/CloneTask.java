@@ -24,7 +24,14 @@
 
 package com.microsoft.gittf.core.tasks;
 
+import java.io.IOException;
 import java.net.URI;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,8 +42,13 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 
+import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
 import com.microsoft.gittf.core.config.ChangesetCommitMap;
+import com.microsoft.gittf.core.config.ChangesetItemManifest;
+import com.microsoft.gittf.core.config.GitTFConfiguration;
+import com.microsoft.gittf.core.impl.ChangesetWorkItemCache;
+import com.microsoft.gittf.core.impl.PrefetchingVersionControlService;
 import com.microsoft.gittf.core.interfaces.VersionControlService;
 import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.Task;
@@ -45,6 +57,7 @@ import com.microsoft.gittf.core.tasks.framework.TaskProgressDisplay;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.DirectoryUtil;
 import com.microsoft.gittf.core.util.ObjectIdUtil;
 import com.microsoft.gittf.core.util.RepositoryUtil;
 import com.microsoft.gittf.core.util.TfsBranchUtil;
@@ -72,6 +85,7 @@ public class CloneTask
     private VersionSpec versionSpec = LatestVersionSpec.INSTANCE;
     private int depth = 1;
     private boolean tag = true;
+    private int downloadThreads = 0;
 
     private static final Log log = LogFactory.getLog(CloneTask.class);
 
@@ -147,6 +161,25 @@ public class CloneTask
         this.tag = tag;
     }
 
+    public int getDownloadThreads()
+    {
+        return downloadThreads;
+    }
+
+    /**
+     * Sets the number of items to download concurrently for each changeset.
+     * If this is not set, the value from the git-tf configuration is used.
+     * 
+     * @param downloadThreads
+     *        the number of concurrent downloads (must be positive)
+     */
+    public void setDownloadThreads(final int downloadThreads)
+    {
+        Check.isTrue(downloadThreads > 0, "downloadThreads > 0"); //$NON-NLS-1$
+
+        this.downloadThreads = downloadThreads;
+    }
+
     @Override
     public TaskStatus run(final TaskProgressMonitor progressMonitor)
         throws Exception
@@ -210,6 +243,7 @@ public class CloneTask
             ObjectId lastCommitID = null;
             ObjectId lastTreeID = null;
             Item[] previousChangesetItems = null;
+            ChangesetItemManifest previousItemManifest = null;
 
             /*
              * Download changesets.
@@ -218,38 +252,141 @@ public class CloneTask
 
             progressMonitor.setWork(numberOfChangesetToDownload);
 
-            for (int i = numberOfChangesetToDownload; i > 0; i--)
+            final ChangesetCommitMap changesetCommitMap = new ChangesetCommitMap(repository);
+            changesetCommitMap.beginBatch();
+
+            /* The history is returned newest first, commit it oldest first */
+            final List<Changeset> oldestFirst = new ArrayList<Changeset>(Arrays.asList(changesets));
+            Collections.reverse(oldestFirst);
+
+            Iterator<Changeset> orderedChangesets = oldestFirst.iterator();
+
+            /*
+             * The work items linked to the next changesets are looked up in the
+             * background rather than one query per commit
+             */
+            ChangesetWorkItemCache workItemCache = null;
+
+            if (witClient != null && numberOfChangesetToDownload > 1)
+            {
+                workItemCache = new ChangesetWorkItemCache(witClient);
+                orderedChangesets =
+                    workItemCache.lookupAhead(orderedChangesets, GitTFConstants.GIT_TF_WORK_ITEM_LOOKAHEAD);
+            }
+
+            /*
+             * The items of the next changesets are listed and downloaded while
+             * the commit for the current one is created
+             */
+            final GitTFConfiguration configuration = GitTFConfiguration.loadFrom(repository);
+            PrefetchingVersionControlService prefetcher = null;
+            int commitDownloadThreads = downloadThreads > 0 ? downloadThreads : configuration.getDownloadThreads();
+
+            if (numberOfChangesetToDownload > 1 && configuration.getPrefetchChangesets() > 0)
             {
-                CreateCommitForChangesetVersionSpecTask commitTask =
-                    new CreateCommitForChangesetVersionSpecTask(
-                        repository,
+                /* The prefetcher and the commit creation share the download threads */
+                final int prefetchDownloadThreads =
+                    PrefetchingVersionControlService.getPrefetchDownloadThreads(commitDownloadThreads);
+
+                prefetcher =
+                    new PrefetchingVersionControlService(
                         vcClient,
-                        changesets[i - 1],
-                        previousChangesetItems,
-                        lastCommitID,
-                        witClient);
+                        tfsPath,
+                        configuration.getPrefetchChangesets(),
+                        prefetchDownloadThreads,
+                        DirectoryUtil.getTempDir(repository));
+
+                commitDownloadThreads -= prefetchDownloadThreads;
 
-                TaskStatus commitStatus = new TaskExecutor(progressMonitor.newSubTask(1)).execute(commitTask);
+                orderedChangesets = prefetcher.prefetchAhead(orderedChangesets, false);
+            }
 
-                if (!commitStatus.isOK())
+            try
+            {
+                for (int i = numberOfChangesetToDownload; i > 0; i--)
                 {
-                    return commitStatus;
+                    final Changeset changeset = orderedChangesets.next();
+
+                    CreateCommitForChangesetVersionSpecTask commitTask =
+                        new CreateCommitForChangesetVersionSpecTask(
+                            repository,
+                            prefetcher != null ? prefetcher : vcClient,
+                            changeset,
+                            previousChangesetItems,
+                            lastCommitID,
+                            witClient);
+
+                    commitTask.setDownloadThreads(commitDownloadThreads);
+
+                    if (workItemCache != null)
+                    {
+                        commitTask.setWorkItemCache(workItemCache);
+                    }
+
+                    if (previousItemManifest != null)
+                    {
+                        commitTask.setPreviousItemManifest(previousItemManifest);
+                    }
+
+                    if (i < numberOfChangesetToDownload)
+                    {
+                        commitTask.setPrecedingChangesetID(changesets[i].getChangesetID());
+                    }
+
+                    TaskStatus commitStatus = new TaskExecutor(progressMonitor.newSubTask(1)).execute(commitTask);
+
+                    if (!commitStatus.isOK())
+                    {
+                        changesetCommitMap.commitBatch();
+
+                        return commitStatus;
+                    }
+
+                    lastCommitID = commitTask.getCommitID();
+                    lastTreeID = commitTask.getCommitTreeID();
+                    previousChangesetItems = commitTask.getCommittedItems();
+                    previousItemManifest = commitTask.getItemManifest();
+
+                    Check.notNull(lastCommitID, "lastCommitID"); //$NON-NLS-1$
+                    Check.notNull(lastTreeID, "lastTreeID"); //$NON-NLS-1$
+
+                    changesetCommitMap.recordChangesetCommit(
+                        changeset.getChangesetID(),
+                        commitTask.getCommitID(),
+                        false);
+
+                    progressMonitor.displayVerbose(Messages.formatString("CloneTask.ClonedFormat", //$NON-NLS-1$
+                        Integer.toString(changeset.getChangesetID()),
+                        ObjectIdUtil.abbreviate(repository, lastCommitID)));
+                }
+            }
+            finally
+            {
+                if (prefetcher != null)
+                {
+                    prefetcher.close();
                 }
 
-                lastCommitID = commitTask.getCommitID();
-                lastTreeID = commitTask.getCommitTreeID();
-                previousChangesetItems = commitTask.getCommittedItems();
-
-                Check.notNull(lastCommitID, "lastCommitID"); //$NON-NLS-1$
-                Check.notNull(lastTreeID, "lastTreeID"); //$NON-NLS-1$
+                if (workItemCache != null)
+                {
+                    workItemCache.close();
+                }
+            }
 
-                new ChangesetCommitMap(repository).setChangesetCommit(
-                    changesets[i - 1].getChangesetID(),
-                    commitTask.getCommitID());
+            changesetCommitMap.commitBatch();
 
-                progressMonitor.displayVerbose(Messages.formatString("CloneTask.ClonedFormat", //$NON-NLS-1$
-                    Integer.toString(changesets[i - 1].getChangesetID()),
-                    ObjectIdUtil.abbreviate(repository, lastCommitID)));
+            /* Lets the first fetch reuse the blobs without listing the files */
+            if (previousItemManifest != null)
+            {
+                try
+                {
+                    previousItemManifest.saveTo(repository, lastCommitID);
+                }
+                catch (IOException e)
+                {
+                    log.warn(MessageFormat.format("Could not write the item manifest of changeset {0}", //$NON-NLS-1$
+                        Integer.toString(previousItemManifest.getChangesetID())), e);
+                }
             }
 
             progressMonitor.setDetail(Messages.getString("CloneTask.Finalizing")); //$NON-NLS-1$
@@ -113,6 +113,16 @@ public class ConfigureRepositoryTask
         return config.getKeepAuthor();
     }
 
+    public boolean getReuseWorkspace()
+    {
+        return config.getReuseWorkspace();
+    }
+
+    public void setReuseWorkspace(final boolean reuseWorkspace)
+    {
+        config.setReuseWorkspace(reuseWorkspace);
+    }
+
     public String getUserMap()
     {
         return config.getUserMap();
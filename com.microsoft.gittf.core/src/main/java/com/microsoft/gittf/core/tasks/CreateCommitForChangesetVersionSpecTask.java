@@ -25,14 +25,28 @@
 package com.microsoft.gittf.core.tasks;
 
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -42,18 +56,23 @@ import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.TemporaryBuffer;
 
 import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
 import com.microsoft.gittf.core.config.ChangesetCommitMap;
+import com.microsoft.gittf.core.config.ChangesetItemManifest;
+import com.microsoft.gittf.core.config.GitTFConfiguration;
+import com.microsoft.gittf.core.impl.ChangesetWorkItemCache;
 import com.microsoft.gittf.core.interfaces.VersionControlService;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressDisplay;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.RepositoryPath;
+import com.microsoft.gittf.core.util.tree.CommitTreeEditor;
 import com.microsoft.gittf.core.util.tree.CommitTreeEntry;
 import com.microsoft.gittf.core.util.tree.CommitTreePath;
 import com.microsoft.gittf.core.util.tree.CommitTreePathComparator;
@@ -63,6 +82,8 @@ import com.microsoft.tfs.core.clients.versioncontrol.PropertyConstants;
 import com.microsoft.tfs.core.clients.versioncontrol.PropertyUtils;
 import com.microsoft.tfs.core.clients.versioncontrol.exceptions.VersionControlException;
 import com.microsoft.tfs.core.clients.versioncontrol.path.ServerPath;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Change;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ChangeType;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
@@ -89,8 +110,14 @@ public class CreateCommitForChangesetVersionSpecTask
     private final Changeset changeset;
     private ObjectId commitTreeID;
     private final WorkItemClient witClient;
+    private ChangesetWorkItemCache workItemCache;
     private Item[] committedItems;
     private final Item[] previousChangesetItems;
+    private ChangesetItemManifest previousItemManifest;
+    private ChangesetItemManifest itemManifest;
+    private final List<Item> unreadableItems = new ArrayList<Item>();
+    private int downloadThreads = 0;
+    private int precedingChangesetID = -1;
 
     public CreateCommitForChangesetVersionSpecTask(
         final Repository repository,
@@ -115,6 +142,83 @@ public class CreateCommitForChangesetVersionSpecTask
         return commitTreeID;
     }
 
+    /**
+     * Sets the number of items to download concurrently from the server. If
+     * this is not set, the value from the git-tf configuration is used.
+     * 
+     * @param downloadThreads
+     *        the number of concurrent downloads (must be positive)
+     */
+    public void setDownloadThreads(final int downloadThreads)
+    {
+        Check.isTrue(downloadThreads > 0, "downloadThreads > 0"); //$NON-NLS-1$
+
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * Sets the changeset that immediately precedes this changeset in the
+     * history of the server path. If the commit for that changeset is the
+     * previous bridged commit, the commit tree is built from its tree by
+     * applying the changes in this changeset instead of listing and
+     * rebuilding the whole server path.
+     * 
+     * @param precedingChangesetID
+     *        the preceding changeset id (must not be negative)
+     */
+    public void setPrecedingChangesetID(final int precedingChangesetID)
+    {
+        Check.isTrue(precedingChangesetID >= 0, "precedingChangesetID >= 0"); //$NON-NLS-1$
+
+        this.precedingChangesetID = precedingChangesetID;
+    }
+
+    /**
+     * Sets the manifest of the files of the previous bridged commit. When the
+     * items of the previous changeset were not given, the blobs of the files
+     * that have not changed are looked up in the manifest rather than listing
+     * the previous changeset on the server. When the commit is built from the
+     * previous commit the manifest is updated in place and returned by
+     * {@link #getItemManifest()}.
+     * 
+     * @param previousItemManifest
+     *        the manifest of the previous commit (must not be
+     *        <code>null</code>)
+     */
+    public void setPreviousItemManifest(final ChangesetItemManifest previousItemManifest)
+    {
+        Check.notNull(previousItemManifest, "previousItemManifest"); //$NON-NLS-1$
+
+        this.previousItemManifest = previousItemManifest;
+    }
+
+    /**
+     * Gets the manifest of the files of the created commit. This is null when
+     * the commit tree was built from the previous commit and neither the
+     * manifest nor the items of the previous commit were given.
+     * 
+     * @return the manifest of the created commit
+     */
+    public ChangesetItemManifest getItemManifest()
+    {
+        return itemManifest;
+    }
+
+    /**
+     * Sets the cache the work items linked to this changeset are looked up in
+     * for the commit message mentions. The work items are queried from the
+     * server when the changeset was not queued in the cache.
+     * 
+     * @param workItemCache
+     *        the work item cache (must not be <code>null</code>)
+     */
+    public void setWorkItemCache(final ChangesetWorkItemCache workItemCache)
+    {
+        Check.notNull(workItemCache, "workItemCache"); //$NON-NLS-1$
+
+        this.workItemCache = workItemCache;
+    }
+
     @Override
     public TaskStatus run(final TaskProgressMonitor progressMonitor)
     {
@@ -135,14 +239,6 @@ public class CreateCommitForChangesetVersionSpecTask
                     Integer.toString(changesetID)));
             }
 
-            /*
-             * Retrieve the items at the specified changeset version from the
-             * server
-             */
-
-            committedItems =
-                versionControlService.getItems(serverPath, new ChangesetVersionSpec(changesetID), RecursionType.FULL);
-
             /*
              * We want to optimize the tree building process. To do so we will
              * inspect the changeset commit map for the previous changeset
@@ -155,37 +251,30 @@ public class CreateCommitForChangesetVersionSpecTask
             final ObjectId previousChangesetCommitId =
                 previousChangesetId >= 0 ? changesetCommitMap.getCommitID(previousChangesetId, true) : null;
 
-            final ChangesetCommitItemReader previousChangesetCommitReader =
-                new ChangesetCommitItemReader(previousChangesetId, previousChangesetCommitId, previousChangesetItems);
-
-            /*
-             * We want trees sorted by children first so we can simply walk them
-             * (child-first) to build the hierarchy once we've finished
-             * inserting blobs.
-             */
-            final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy =
-                new TreeMap<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>>(new CommitTreePathComparator());
-
             repositoryInserter = repository.newObjectInserter();
 
+            ObjectId rootTree = null;
+
             /*
-             * Phase one: insert files as blobs in the git repository and add
-             * them to the TreeFormatter for their parent folder.
+             * If the previous commit holds the tree of the preceding changeset
+             * we only need to apply the changes in this changeset to it.
              */
-            if (committedItems != null)
+            if (precedingChangesetID >= 0
+                && precedingChangesetID == previousChangesetId
+                && previousChangesetCommitId != null)
             {
-                progressMonitor.setWork(committedItems.length);
-                for (final Item item : committedItems)
-                {
-                    createBlob(repositoryInserter, treeHierarchy, previousChangesetCommitReader, item, progressMonitor);
-
-                    progressMonitor.worked(1);
-                }
+                rootTree = createTreeFromPreviousCommit(repositoryInserter, previousChangesetCommitId, progressMonitor);
             }
 
-            /* Phase two: add child trees to their parents. */
-            progressMonitor.setDetail(Messages.getString("CreateCommitTask.CreatingTrees")); //$NON-NLS-1$
-            final ObjectId rootTree = createTrees(repositoryInserter, treeHierarchy);
+            if (rootTree == null)
+            {
+                rootTree =
+                    createTreeFromItems(
+                        repositoryInserter,
+                        previousChangesetId,
+                        previousChangesetCommitId,
+                        progressMonitor);
+            }
 
             /* Phase three: create the commit. */
             progressMonitor.setDetail(Messages.getString("CreateCommitTask.CreatingCommit")); //$NON-NLS-1$            
@@ -193,8 +282,6 @@ public class CreateCommitForChangesetVersionSpecTask
 
             repositoryInserter.flush();
 
-            FileHelpers.deleteDirectory(tempDir);
-
             progressMonitor.endTask();
 
             this.commitId = commit;
@@ -213,144 +300,646 @@ public class CreateCommitForChangesetVersionSpecTask
             {
                 repositoryInserter.release();
             }
+
+            /*
+             * The downloads have been stopped and their buffers destroyed by
+             * now, so the directory is no longer written to
+             */
+            FileHelpers.deleteDirectory(tempDir);
         }
     }
 
-    private void createBlob(
+    private ObjectId createTreeFromItems(
         final ObjectInserter repositoryInserter,
-        final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
-        final ChangesetCommitItemReader previousChangesetCommitReader,
-        final Item item,
+        final int previousChangesetId,
+        final ObjectId previousChangesetCommitId,
         final TaskProgressMonitor progressMonitor)
         throws Exception
     {
-        Check.notNull(repositoryInserter, "repositoryInserter"); //$NON-NLS-1$
-        Check.notNull(treeHierarchy, "treeHierarchy"); //$NON-NLS-1$
-        Check.notNull(previousChangesetCommitReader, "previousChangesetCommitReader"); //$NON-NLS-1$
-        Check.notNull(item, "item"); //$NON-NLS-1$
-        Check.notNull(progressMonitor, "progressMonitor"); //$NON-NLS-1$
+        /*
+         * Retrieve the items at the specified changeset version from the
+         * server
+         */
+
+        committedItems =
+            versionControlService.getItems(serverPath, new ChangesetVersionSpec(changesetID), RecursionType.FULL);
+
+        itemManifest = new ChangesetItemManifest(changesetID);
+
+        /*
+         * The items of the previous changeset are not known if its commit was
+         * built incrementally, in that case use the manifest of its files or
+         * list them from the server.
+         */
+        Item[] previousItems = previousChangesetItems;
+        ChangesetCommitItemReader previousChangesetCommitReader = null;
+
+        if (previousItems == null
+            && previousChangesetCommitId != null
+            && previousItemManifest != null
+            && previousItemManifest.getChangesetID() == previousChangesetId)
+        {
+            previousChangesetCommitReader = new ChangesetCommitItemReader(previousItemManifest);
+        }
+        else
+        {
+            if (previousItems == null && previousChangesetCommitId != null)
+            {
+                previousItems =
+                    versionControlService.getItems(
+                        serverPath,
+                        new ChangesetVersionSpec(previousChangesetId),
+                        RecursionType.FULL);
+            }
 
-        if (item.getItemType() == ItemType.FOLDER)
+            previousChangesetCommitReader =
+                new ChangesetCommitItemReader(previousChangesetId, previousChangesetCommitId, previousItems);
+        }
+
+        /*
+         * We want trees sorted by children first so we can simply walk them
+         * (child-first) to build the hierarchy once we've finished inserting
+         * blobs.
+         */
+        final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy =
+            new TreeMap<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>>(new CommitTreePathComparator());
+
+        /*
+         * Phase one: insert files as blobs in the git repository and add them
+         * to the TreeFormatter for their parent folder. Files that have changed
+         * since the previous changeset are downloaded by a pool of workers,
+         * this thread is the only one that writes to the object inserter and
+         * the tree hierarchy.
+         */
+        if (committedItems != null)
         {
-            return;
+            progressMonitor.setWork(committedItems.length);
+            createBlobs(repositoryInserter, treeHierarchy, committedItems, previousChangesetCommitReader, progressMonitor);
         }
 
-        File tempFile = null;
-        InputStream tempInputStream = null;
-        ObjectId blobID = null;
+        /* Phase two: add child trees to their parents. */
+        progressMonitor.setDetail(Messages.getString("CreateCommitTask.CreatingTrees")); //$NON-NLS-1$
+        return createTrees(repositoryInserter, treeHierarchy);
+    }
 
-        try
+    /**
+     * Builds the commit tree by applying the changes in this changeset to the
+     * tree of the previous commit. Only the folders that contain changes are
+     * listed on the server and only the files that changed are downloaded, all
+     * other sub trees are reused from the previous commit.
+     * 
+     * @return the root tree, or null if the changes cannot be applied to the
+     *         previous tree and the full tree has to be built instead
+     */
+    private ObjectId createTreeFromPreviousCommit(
+        final ObjectInserter repositoryInserter,
+        final ObjectId previousCommitId,
+        final TaskProgressMonitor progressMonitor)
+        throws Exception
+    {
+        final Changeset changesetWithChanges = versionControlService.getChangeset(changesetID);
+        final Change[] changes = changesetWithChanges != null ? changesetWithChanges.getChanges() : null;
+
+        if (changes == null || changes.length == 0)
+        {
+            return null;
+        }
+
+        /*
+         * Sorted so that parent folders are always visited before their
+         * children.
+         */
+        final Set<String> changedFolders = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+        for (final Change change : changes)
         {
-            blobID = previousChangesetCommitReader.getFileObjectId(item.getServerItem(), item.getChangeSetID());
+            final String itemServerPath = change.getItem().getServerItem();
+
+            /*
+             * The source of a rename is not part of the change, so we cannot
+             * tell which entry of the previous tree has to be removed.
+             */
+            if (change.getChangeType().contains(ChangeType.RENAME) || ServerPath.equals(itemServerPath, serverPath))
+            {
+                log.info(MessageFormat.format(
+                    "Changeset {0} renames or replaces items, building the full commit tree", //$NON-NLS-1$
+                    Integer.toString(changesetID)));
+
+                return null;
+            }
 
-            if (blobID == null || ObjectId.equals(blobID, ObjectId.zeroId()))
+            if (ServerPath.isChild(serverPath, itemServerPath))
             {
-                tempFile = File.createTempFile(GitTFConstants.GIT_TF_NAME, null, tempDir);
+                changedFolders.add(ServerPath.getParent(itemServerPath));
+            }
+        }
 
-                try
+        /*
+         * The files that are not in the changed folders are the same as in the
+         * previous commit, so its manifest only needs the changes applied. The
+         * manifest of the previous commit is not used once this commit is
+         * created, it is changed in place.
+         */
+        if (previousItemManifest == null && previousChangesetItems != null)
+        {
+            previousItemManifest = createPreviousItemManifest(previousCommitId);
+        }
+
+        itemManifest =
+            previousItemManifest != null && previousItemManifest.getChangesetID() == precedingChangesetID
+                ? previousItemManifest.moveTo(changesetID) : null;
+
+        final ObjectReader objectReader = repository.newObjectReader();
+        final RevWalk walker = new RevWalk(objectReader);
+
+        try
+        {
+            final CommitTreeEditor treeEditor =
+                new CommitTreeEditor(objectReader, walker.parseCommit(previousCommitId).getTree());
+
+            final List<Item> itemsToDownload = new ArrayList<Item>();
+            final List<String> addedFolders = new ArrayList<String>();
+
+            for (final String changedFolder : changedFolders)
+            {
+                /* Folders that were added are listed in full below */
+                if (isChildOfAny(addedFolders, changedFolder))
                 {
-                    versionControlService.downloadFile(item, tempFile.getAbsolutePath());
+                    continue;
                 }
-                catch (VersionControlException e)
-                {
-                    // if the user is denied read permissions on the file an
-                    // exception will be thrown here.
 
-                    final String itemName = item.getServerItem() == null ? "" : item.getServerItem(); //$NON-NLS-1$
+                final String folderPath = ServerPath.makeRelative(changedFolder, serverPath);
+                final Map<CommitTreePath, CommitTreeEntry> previousEntries = treeEditor.getEntries(folderPath);
 
-                    progressMonitor.displayWarning(Messages.formatString(
-                        "CreateCommitForChangesetVersionSpecTask.NoContentDueToPermissionOrDestroyFormat", //$NON-NLS-1$
-                        itemName));
+                final Item[] folderItems =
+                    versionControlService.getItems(
+                        changedFolder,
+                        new ChangesetVersionSpec(changesetID),
+                        RecursionType.ONE_LEVEL);
 
-                    log.error(e);
+                final Set<String> folderItemNames = new HashSet<String>();
 
-                    return;
+                if (folderItems != null)
+                {
+                    for (final Item item : folderItems)
+                    {
+                        if (ServerPath.equals(item.getServerItem(), changedFolder))
+                        {
+                            continue;
+                        }
+
+                        final String itemName = ServerPath.getFileName(item.getServerItem());
+                        folderItemNames.add(itemName);
+
+                        if (item.getItemType() == ItemType.FOLDER)
+                        {
+                            if (previousEntries == null
+                                || !previousEntries.containsKey(new CommitTreePath(itemName, OBJ_TREE)))
+                            {
+                                treeEditor.remove(combinePath(folderPath, itemName));
+                                addedFolders.add(item.getServerItem());
+
+                                if (itemManifest != null)
+                                {
+                                    itemManifest.remove(item.getServerItem());
+                                }
+                            }
+                        }
+                        else if (item.getChangeSetID() == changesetID
+                            || previousEntries == null
+                            || !previousEntries.containsKey(new CommitTreePath(itemName, OBJ_BLOB)))
+                        {
+                            itemsToDownload.add(item);
+                        }
+                    }
                 }
-                catch (Throwable e)
+
+                /* Remove the entries that were deleted from this folder */
+                if (previousEntries != null)
                 {
-                    /*
-                     * A workaround for unexpected TFS server errors. Aged
-                     * servers with long history might have some items corrupted
-                     * in some change sets and return incorrect HTTP response to
-                     * the download request.
-                     * 
-                     * In this case we'd better suppress the error and assume
-                     * that the file does not exist. The next change set that
-                     * contains this file will commit it into the repository. It
-                     * seems to better to miss something in the file's history
-                     * log rather than to fail cloning the repository entirely.
-                     */
-
-                    // TODO: We should make this behavior optional since it's a
-                    // bit dangerous. If the file download fails in its last
-                    // change set the file will be marked as deleted in the
-                    // repository.
-
-                    if (e instanceof IOException)
+                    for (final CommitTreePath entryPath : new ArrayList<CommitTreePath>(previousEntries.keySet()))
                     {
-                        throw (Exception) e;
+                        if (!folderItemNames.contains(entryPath.getName()))
+                        {
+                            treeEditor.remove(combinePath(folderPath, entryPath.getName()));
+
+                            if (itemManifest != null)
+                            {
+                                itemManifest.remove(ServerPath.combine(changedFolder, entryPath.getName()));
+                            }
+                        }
                     }
-                    else
+                }
+            }
+
+            for (final String addedFolder : addedFolders)
+            {
+                final Item[] folderItems =
+                    versionControlService.getItems(addedFolder, new ChangesetVersionSpec(changesetID), RecursionType.FULL);
+
+                if (folderItems != null)
+                {
+                    for (final Item item : folderItems)
                     {
-                        final String itemName = item.getServerItem() == null ? "???" : item.getServerItem(); //$NON-NLS-1$
-                        final String changeSetID =
-                            item.getChangeSetID() == 0 ? "???" : Integer.toString(item.getChangeSetID()); //$NON-NLS-1$
-                        final String checkinDate =
-                            item.getCheckinDate() == null ? "???" : item.getCheckinDate().toString(); //$NON-NLS-1$
-
-                        final String message =
-                            Messages.formatString("CreateCommitForChangesetVersionSpecTask.UnexpectedErrorFormat", //$NON-NLS-1$
-                                itemName,
-                                changeSetID,
-                                checkinDate);
-
-                        progressMonitor.displayWarning(message);
-                        progressMonitor.displayWarning(e.getMessage());
-                        progressMonitor.displayWarning(Messages.getString("CreateCommitForChangesetVersionSpecTask.SeeLog")); //$NON-NLS-1$
-
-                        log.warn(message);
-                        log.error(e);
+                        if (item.getItemType() != ItemType.FOLDER)
+                        {
+                            itemsToDownload.add(item);
+                        }
                     }
                 }
+            }
+
+            final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy =
+                new TreeMap<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>>(new CommitTreePathComparator());
+
+            progressMonitor.setWork(itemsToDownload.size());
+            unreadableItems.clear();
+            createBlobs(
+                repositoryInserter,
+                treeHierarchy,
+                itemsToDownload.toArray(new Item[itemsToDownload.size()]),
+                null,
+                progressMonitor);
+
+            /*
+             * Files that could not be read are left out of the commit like the
+             * full build does, rather than keeping their previous content.
+             */
+            for (final Item unreadableItem : unreadableItems)
+            {
+                treeEditor.remove(ServerPath.makeRelative(unreadableItem.getServerItem(), serverPath));
 
-                if (tempFile.exists())
+                if (itemManifest != null)
                 {
-                    tempInputStream = new FileInputStream(tempFile);
-                    blobID = repositoryInserter.insert(OBJ_BLOB, tempFile.length(), tempInputStream);
+                    itemManifest.remove(unreadableItem.getServerItem());
                 }
-                else
+            }
+
+            progressMonitor.setDetail(Messages.getString("CreateCommitTask.CreatingTrees")); //$NON-NLS-1$
+
+            for (Entry<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> folder : treeHierarchy.entrySet())
+            {
+                for (Entry<CommitTreePath, CommitTreeEntry> file : folder.getValue().entrySet())
                 {
-                    blobID = ObjectId.zeroId();
+                    treeEditor.putFile(
+                        combinePath(folder.getKey().getName(), file.getKey().getName()),
+                        file.getValue().getFileMode(),
+                        file.getValue().getObjectID());
                 }
             }
 
-            FileMode fileMode = FileMode.REGULAR_FILE;
+            return treeEditor.writeTree(repositoryInserter);
+        }
+        finally
+        {
+            walker.release();
+            objectReader.release();
+        }
+    }
+
+    /**
+     * Builds the manifest of the previous commit from the items of the
+     * preceding changeset and the blobs in the commit tree, for a fetch that
+     * started without a stored manifest. Files that are not in the tree are
+     * left out, their blobs are not reused.
+     */
+    private ChangesetItemManifest createPreviousItemManifest(final ObjectId previousCommitId)
+    {
+        final ChangesetCommitItemReader previousCommitReader =
+            new ChangesetCommitItemReader(precedingChangesetID, previousCommitId, previousChangesetItems);
+
+        final ChangesetItemManifest manifest = new ChangesetItemManifest(precedingChangesetID);
+
+        for (final Item item : previousChangesetItems)
+        {
+            if (item.getItemType() == ItemType.FOLDER)
+            {
+                continue;
+            }
+
+            final ObjectId blobID = previousCommitReader.getFileObjectId(item);
+
+            if (blobID != null)
+            {
+                manifest.put(item.getServerItem(), item.getChangeSetID(), item.getContentHashValue(), blobID);
+            }
+        }
+
+        return manifest;
+    }
+
+    private static boolean isChildOfAny(final List<String> folders, final String serverItemPath)
+    {
+        for (final String folder : folders)
+        {
+            if (ServerPath.isChild(folder, serverItemPath))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String combinePath(final String folderPath, final String name)
+    {
+        if (folderPath.length() == 0)
+        {
+            return name;
+        }
+
+        return folderPath + RepositoryPath.PREFERRED_SEPARATOR_CHARACTER + name;
+    }
+
+    private int getDownloadThreads()
+    {
+        if (downloadThreads > 0)
+        {
+            return downloadThreads;
+        }
+
+        return GitTFConfiguration.loadFrom(repository).getDownloadThreads();
+    }
+
+    private void createBlobs(
+        final ObjectInserter repositoryInserter,
+        final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
+        final Item[] items,
+        final ChangesetCommitItemReader previousChangesetCommitReader,
+        final TaskProgressMonitor progressMonitor)
+        throws Exception
+    {
+        Check.notNull(repositoryInserter, "repositoryInserter"); //$NON-NLS-1$
+        Check.notNull(treeHierarchy, "treeHierarchy"); //$NON-NLS-1$
+        Check.notNull(items, "items"); //$NON-NLS-1$
+        Check.notNull(progressMonitor, "progressMonitor"); //$NON-NLS-1$
+
+        final int threads = getDownloadThreads();
+
+        /*
+         * Limit the number of downloads in flight so that we do not buffer
+         * content faster than the blobs can be inserted.
+         */
+        final int maxPendingDownloads = threads * 2;
 
-            /* handle executable files */
-            if (item.getPropertyValues() != null)
+        final ExecutorService downloadExecutor = Executors.newFixedThreadPool(threads);
+        final CompletionService<ItemDownload> downloads = new ExecutorCompletionService<ItemDownload>(downloadExecutor);
+        int pendingDownloads = 0;
+
+        try
+        {
+            for (final Item item : items)
             {
-                if (PropertyConstants.EXECUTABLE_ENABLED_VALUE.equals(PropertyUtils.selectMatching(
-                    item.getPropertyValues(),
-                    PropertyConstants.EXECUTABLE_KEY)))
+                if (item.getItemType() == ItemType.FOLDER)
                 {
-                    fileMode = FileMode.EXECUTABLE_FILE;
+                    progressMonitor.worked(1);
+                    continue;
                 }
+
+                final ObjectId blobID =
+                    previousChangesetCommitReader != null ? previousChangesetCommitReader.getFileObjectId(item) : null;
+
+                if (blobID != null && !ObjectId.equals(blobID, ObjectId.zeroId()))
+                {
+                    createBlob(repositoryInserter, treeHierarchy, item, blobID, progressMonitor);
+                    progressMonitor.worked(1);
+                    continue;
+                }
+
+                downloads.submit(new Callable<ItemDownload>()
+                {
+                    public ItemDownload call()
+                        throws Exception
+                    {
+                        return downloadItem(item);
+                    }
+                });
+                pendingDownloads++;
+
+                if (pendingDownloads >= maxPendingDownloads)
+                {
+                    insertDownloadedBlob(repositoryInserter, treeHierarchy, takeDownload(downloads), progressMonitor);
+                    pendingDownloads--;
+                }
+            }
+
+            while (pendingDownloads > 0)
+            {
+                insertDownloadedBlob(repositoryInserter, treeHierarchy, takeDownload(downloads), progressMonitor);
+                pendingDownloads--;
+            }
+        }
+        finally
+        {
+            downloadExecutor.shutdownNow();
+
+            try
+            {
+                downloadExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            discardDownloads(downloads);
+        }
+    }
+
+    /**
+     * Destroys the buffers of the downloads that completed but were not
+     * inserted because blob creation failed.
+     */
+    private void discardDownloads(final CompletionService<ItemDownload> downloads)
+    {
+        Future<ItemDownload> future;
+
+        while ((future = downloads.poll()) != null)
+        {
+            try
+            {
+                future.get().getContent().destroy();
+            }
+            catch (Exception e)
+            {
+                /* The download failed, its buffer was already destroyed */
+            }
+        }
+    }
+
+    private ItemDownload takeDownload(final CompletionService<ItemDownload> downloads)
+        throws Exception
+    {
+        try
+        {
+            return downloads.take().get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+            {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Downloads the content of the specified item into a buffer that is held
+     * in memory and only spills to a temporary file for large items. This is
+     * called on the download worker threads and must not touch the object
+     * inserter, the tree hierarchy or the progress monitor.
+     */
+    private ItemDownload downloadItem(final Item item)
+        throws IOException
+    {
+        /*
+         * Items that we know are large go straight to disk rather than being
+         * copied out of memory once they cross the limit.
+         */
+        final int inCoreLimit =
+            item.getContentLength() > GitTFConstants.GIT_TF_DOWNLOAD_IN_CORE_LIMIT ? 0
+                : GitTFConstants.GIT_TF_DOWNLOAD_IN_CORE_LIMIT;
+
+        final TemporaryBuffer content = new TemporaryBuffer.LocalFile(tempDir, inCoreLimit);
+
+        try
+        {
+            versionControlService.downloadFile(item, content);
+            content.close();
+        }
+        catch (IOException e)
+        {
+            content.destroy();
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            content.close();
+            return new ItemDownload(item, content, e);
+        }
+
+        return new ItemDownload(item, content, null);
+    }
+
+    private void insertDownloadedBlob(
+        final ObjectInserter repositoryInserter,
+        final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
+        final ItemDownload download,
+        final TaskProgressMonitor progressMonitor)
+        throws Exception
+    {
+        final Item item = download.getItem();
+        final TemporaryBuffer content = download.getContent();
+        final Throwable e = download.getError();
+
+        InputStream contentInputStream = null;
+
+        try
+        {
+            if (e instanceof VersionControlException)
+            {
+                // if the user is denied read permissions on the file an
+                // exception will be thrown here.
+
+                final String itemName = item.getServerItem() == null ? "" : item.getServerItem(); //$NON-NLS-1$
+
+                progressMonitor.displayWarning(Messages.formatString(
+                    "CreateCommitForChangesetVersionSpecTask.NoContentDueToPermissionOrDestroyFormat", //$NON-NLS-1$
+                    itemName));
+
+                log.error(e);
+
+                unreadableItems.add(item);
+
+                return;
             }
+            else if (e != null)
+            {
+                /*
+                 * A workaround for unexpected TFS server errors. Aged servers
+                 * with long history might have some items corrupted in some
+                 * change sets and return incorrect HTTP response to the
+                 * download request.
+                 * 
+                 * In this case we'd better suppress the error and assume that
+                 * the file does not exist. The next change set that contains
+                 * this file will commit it into the repository. It seems to
+                 * better to miss something in the file's history log rather
+                 * than to fail cloning the repository entirely.
+                 */
+
+                // TODO: We should make this behavior optional since it's a
+                // bit dangerous. If the file download fails in its last
+                // change set the file will be marked as deleted in the
+                // repository.
+
+                final String itemName = item.getServerItem() == null ? "???" : item.getServerItem(); //$NON-NLS-1$
+                final String changeSetID =
+                    item.getChangeSetID() == 0 ? "???" : Integer.toString(item.getChangeSetID()); //$NON-NLS-1$
+                final String checkinDate =
+                    item.getCheckinDate() == null ? "???" : item.getCheckinDate().toString(); //$NON-NLS-1$
+
+                final String message =
+                    Messages.formatString("CreateCommitForChangesetVersionSpecTask.UnexpectedErrorFormat", //$NON-NLS-1$
+                        itemName,
+                        changeSetID,
+                        checkinDate);
+
+                progressMonitor.displayWarning(message);
+                progressMonitor.displayWarning(e.getMessage());
+                progressMonitor.displayWarning(Messages.getString("CreateCommitForChangesetVersionSpecTask.SeeLog")); //$NON-NLS-1$
+
+                log.warn(message);
+                log.error(e);
+            }
+
+            contentInputStream = content.openInputStream();
+            final ObjectId blobID = repositoryInserter.insert(OBJ_BLOB, content.length(), contentInputStream);
 
-            createBlob(repositoryInserter, treeHierarchy, item.getServerItem(), blobID, fileMode, progressMonitor);
+            createBlob(repositoryInserter, treeHierarchy, item, blobID, progressMonitor);
         }
         finally
         {
-            if (tempInputStream != null)
+            if (contentInputStream != null)
             {
-                tempInputStream.close();
+                contentInputStream.close();
             }
 
-            if (tempFile != null)
+            content.destroy();
+
+            progressMonitor.worked(1);
+        }
+    }
+
+    private void createBlob(
+        final ObjectInserter repositoryInserter,
+        final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
+        final Item item,
+        final ObjectId blobID,
+        final TaskProgressMonitor progressMonitor)
+        throws Exception
+    {
+        FileMode fileMode = FileMode.REGULAR_FILE;
+
+        /* handle executable files */
+        if (item.getPropertyValues() != null)
+        {
+            if (PropertyConstants.EXECUTABLE_ENABLED_VALUE.equals(PropertyUtils.selectMatching(
+                item.getPropertyValues(),
+                PropertyConstants.EXECUTABLE_KEY)))
             {
-                tempFile.delete();
+                fileMode = FileMode.EXECUTABLE_FILE;
             }
         }
+
+        createBlob(repositoryInserter, treeHierarchy, item.getServerItem(), blobID, fileMode, progressMonitor);
+
+        if (itemManifest != null)
+        {
+            itemManifest.put(item.getServerItem(), item.getChangeSetID(), item.getContentHashValue(), blobID);
+        }
     }
 
     private String getMentions()
@@ -360,37 +949,54 @@ public class CreateCommitForChangesetVersionSpecTask
             return ""; //$NON-NLS-1$
         }
 
+        final StringBuilder sb = new StringBuilder();
+
+        final int[] workItemIDs = workItemCache != null ? workItemCache.getWorkItemIDs(changesetID) : null;
+        if (workItemIDs != null)
+        {
+            for (final int workItemID : workItemIDs)
+            {
+                addWorkItem(sb, workItemID, workItemCache.getTitle(workItemID));
+            }
+
+            return sb.toString();
+        }
+
         final WorkItem[] workItems = getChangesetWorkItems(changesetID);
         if (workItems == null)
         {
             return ""; //$NON-NLS-1$
         }
 
-        final StringBuilder sb = new StringBuilder();
-
         for (final WorkItem workItem : workItems)
         {
-            addWorkItem(sb, workItem);
+            addWorkItem(sb, workItem.getID(), workItem.getFields().getField(CoreFieldReferenceNames.TITLE).getValue());
         }
 
         return sb.toString();
     }
 
+    /**
+     * Gets the items of the server path at this changeset. This is null when
+     * the commit tree was built from the previous commit.
+     * 
+     * @return the items listed on the server
+     */
     public Item[] getCommittedItems()
     {
         return committedItems;
     }
 
-    private void addWorkItem(final StringBuilder sb, final WorkItem workItem)
+    private void addWorkItem(final StringBuilder sb, final int workItemID, final Object title)
     {
         sb.append(NEWLINE);
         sb.append(HASH);
 
-        final String itemID = Integer.toString(workItem.getID());
+        final String itemID = Integer.toString(workItemID);
         sb.append(itemID);
         sb.append(SPACES.substring(0, Math.max(1, WIT_TITLE_PAD_WIDTH - itemID.length())));
 
-        sb.append(workItem.getFields().getField(CoreFieldReferenceNames.TITLE).getValue());
+        sb.append(title);
     }
 
     private ObjectId createCommit(
@@ -415,6 +1021,35 @@ public class CreateCommitForChangesetVersionSpecTask
             changeset.getComment() + getMentions());
     }
 
+    private static class ItemDownload
+    {
+        private final Item item;
+        private final TemporaryBuffer content;
+        private final Throwable error;
+
+        public ItemDownload(final Item item, final TemporaryBuffer content, final Throwable error)
+        {
+            this.item = item;
+            this.content = content;
+            this.error = error;
+        }
+
+        public Item getItem()
+        {
+            return item;
+        }
+
+        public TemporaryBuffer getContent()
+        {
+            return content;
+        }
+
+        public Throwable getError()
+        {
+            return error;
+        }
+    }
+
     private class ChangesetCommitItemReader
     {
         private boolean initialized = false;
@@ -422,54 +1057,52 @@ public class CreateCommitForChangesetVersionSpecTask
         private final int changesetID;
         private final ObjectId commitId;
 
-        private RevTree commitRevTree;
-        private ObjectReader objectReader;
         private final Item[] committedItems;
+        private final ChangesetItemManifest manifest;
 
         private Map<String, Integer> changesetItems;
+        private Map<String, ObjectId> commitFiles;
 
         public ChangesetCommitItemReader(final int changesetId, final ObjectId commitId, final Item[] committedItems)
         {
             this.changesetID = changesetId;
             this.commitId = commitId;
             this.committedItems = committedItems;
+            this.manifest = null;
         }
 
-        public ObjectId getFileObjectId(final String itemServerPath, final int requestedVersion)
+        public ChangesetCommitItemReader(final ChangesetItemManifest manifest)
         {
+            this.changesetID = manifest.getChangesetID();
+            this.commitId = null;
+            this.committedItems = null;
+            this.manifest = manifest;
+        }
+
+        public ObjectId getFileObjectId(final Item item)
+        {
+            final String itemServerPath = item.getServerItem();
+            final int requestedVersion = item.getChangeSetID();
+
+            /* The manifest already holds the blob of every file */
+            if (manifest != null)
+            {
+                return manifest.getBlobID(itemServerPath, requestedVersion, item.getContentHashValue());
+            }
+
             if (!initialized)
             {
                 initialize();
             }
 
-            if (commitRevTree == null || objectReader == null)
+            if (commitFiles == null)
             {
                 return null;
             }
 
-            TreeWalk file;
-            try
-            {
-                if (commitContainsFileAtVersion(itemServerPath, requestedVersion))
-                {
-                    file =
-                        TreeWalk.forPath(
-                            objectReader,
-                            ServerPath.makeRelative(itemServerPath, serverPath),
-                            commitRevTree);
-
-                    if (file == null)
-                    {
-                        return null;
-                    }
-
-                    return file.getObjectId(0);
-                }
-            }
-            catch (Exception e)
+            if (commitContainsFileAtVersion(itemServerPath, requestedVersion))
             {
-                // if we cannot read the object then we do not need to optimize
-                // the call
+                return commitFiles.get(ServerPath.makeRelative(itemServerPath, serverPath));
             }
 
             return null;
@@ -481,31 +1114,45 @@ public class CreateCommitForChangesetVersionSpecTask
 
             initialized = true;
 
-            if (commitId != null)
+            if (commitId != null && committedItems != null)
             {
-                final RevWalk walker = new RevWalk(repository);
+                /*
+                 * Index the files of the commit in a single walk of its tree
+                 * rather than looking up every item from the root tree.
+                 */
+                final ObjectReader objectReader = repository.newObjectReader();
+                final RevWalk walker = new RevWalk(objectReader);
+                final TreeWalk treeWalker = new TreeWalk(objectReader);
 
                 try
                 {
                     final RevCommit revCommit = walker.parseCommit(commitId);
-                    commitRevTree = revCommit.getTree();
-                    objectReader = repository.newObjectReader();
+
+                    treeWalker.setRecursive(true);
+                    treeWalker.addTree(revCommit.getTree());
+
+                    final Map<String, ObjectId> files = new HashMap<String, ObjectId>(committedItems.length);
+
+                    while (treeWalker.next())
+                    {
+                        files.put(treeWalker.getPathString(), treeWalker.getObjectId(0));
+                    }
+
+                    commitFiles = files;
                 }
                 catch (Exception e)
                 {
                     // if we cannot read the object then we do not need to
                     // optimize the call
-                    commitRevTree = null;
-                    objectReader = null;
+                    commitFiles = null;
 
                     return;
                 }
                 finally
                 {
-                    if (walker != null)
-                    {
-                        walker.release();
-                    }
+                    treeWalker.release();
+                    walker.release();
+                    objectReader.release();
                 }
 
                 changesetItems = new HashMap<String, Integer>(committedItems.length);
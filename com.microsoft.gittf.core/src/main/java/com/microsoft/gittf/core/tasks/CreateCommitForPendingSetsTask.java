@@ -26,8 +26,6 @@ package com.microsoft.gittf.core.tasks;
 
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Calendar;
@@ -49,6 +47,7 @@ import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.NameConflictTreeWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.TemporaryBuffer;
 
 import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
@@ -510,32 +509,30 @@ public abstract class CreateCommitForPendingSetsTask
             return;
         }
 
-        File tempFile = null;
-        InputStream tempInputStream = null;
+        /*
+         * Buffer the content in memory, only large files are spilled to a
+         * temporary file before they are inserted.
+         */
+        final TemporaryBuffer content =
+            new TemporaryBuffer.LocalFile(tempDir, GitTFConstants.GIT_TF_DOWNLOAD_IN_CORE_LIMIT);
+        InputStream contentInputStream = null;
         ObjectId blobID = null;
 
         try
         {
-            tempFile = File.createTempFile(GitTFConstants.GIT_TF_NAME, null, tempDir);
-
             if (addBaseContent)
             {
-                versionControlService.downloadBaseFile(pendingChange, tempFile.getAbsolutePath());
+                versionControlService.downloadBaseFile(pendingChange, content);
             }
             else
             {
-                versionControlService.downloadShelvedFile(pendingChange, tempFile.getAbsolutePath());
+                versionControlService.downloadShelvedFile(pendingChange, content);
             }
 
-            if (tempFile.exists())
-            {
-                tempInputStream = new FileInputStream(tempFile);
-                blobID = repositoryInserter.insert(OBJ_BLOB, tempFile.length(), tempInputStream);
-            }
-            else
-            {
-                blobID = ObjectId.zeroId();
-            }
+            content.close();
+
+            contentInputStream = content.openInputStream();
+            blobID = repositoryInserter.insert(OBJ_BLOB, content.length(), contentInputStream);
 
             FileMode fileMode;
 
@@ -566,15 +563,12 @@ public abstract class CreateCommitForPendingSetsTask
         }
         finally
         {
-            if (tempInputStream != null)
+            if (contentInputStream != null)
             {
-                tempInputStream.close();
+                contentInputStream.close();
             }
 
-            if (tempFile != null)
-            {
-                tempFile.delete();
-            }
+            content.destroy();
         }
     }
 
@@ -33,6 +33,7 @@ import org.eclipse.jgit.lib.Repository;
 
 import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
+import com.microsoft.gittf.core.config.ConfigurationConstants;
 import com.microsoft.gittf.core.impl.PreviewOnlyWorkspace;
 import com.microsoft.gittf.core.impl.TfsWorkspace;
 import com.microsoft.gittf.core.interfaces.WorkspaceService;
@@ -43,12 +44,17 @@ import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.util.Check;
 import com.microsoft.gittf.core.util.DirectoryUtil;
+import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
 import com.microsoft.tfs.core.clients.versioncontrol.VersionControlClient;
+import com.microsoft.tfs.core.clients.versioncontrol.VersionControlConstants;
 import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceLocation;
 import com.microsoft.tfs.core.clients.versioncontrol.WorkspaceOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.path.LocalPath;
 import com.microsoft.tfs.core.clients.versioncontrol.path.ServerPath;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolder;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.ItemSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
 import com.microsoft.tfs.util.FileHelpers;
 import com.microsoft.tfs.util.GUID;
@@ -65,6 +71,7 @@ public class CreateWorkspaceTask
     private boolean updateLocalVersion = true;
     private boolean preview = false;
     private VersionSpec localVersionSpec = null;
+    private boolean reuseWorkspace = false;
 
     private WorkspaceService workspace;
     private File workingFolder;
@@ -98,14 +105,35 @@ public class CreateWorkspaceTask
         localVersionSpec = versionSpec;
     }
 
+    public boolean getReuseWorkspace()
+    {
+        return reuseWorkspace;
+    }
+
+    /**
+     * Sets whether the workspace of the repository that was kept by a previous
+     * command should be used instead of creating a new one. The workspace is
+     * created and kept if it does not exist yet.
+     * 
+     * @param reuseWorkspace
+     *        <code>true</code> to reuse the workspace of the repository
+     */
+    public void setReuseWorkspace(boolean reuseWorkspace)
+    {
+        this.reuseWorkspace = reuseWorkspace;
+    }
+
     @Override
     public TaskStatus run(final TaskProgressMonitor progressMonitor)
     {
-        final String workspaceName =
+        final boolean reuse = reuseWorkspace && !preview;
+
+        String workspaceName =
             MessageFormat.format("{0}-{1}", GitTFConstants.GIT_TF_NAME, GUID.newGUID().getGUIDString()); //$NON-NLS-1$
 
         File tempFolder = null;
         Workspace tempWorkspace = null;
+        boolean reused = false;
         boolean cleanup = false;
 
         progressMonitor.beginTask(Messages.getString("CreateWorkspaceTask.CreatingWorkspace"), //$NON-NLS-1$
@@ -121,7 +149,42 @@ public class CreateWorkspaceTask
                     serverPath));
             }
 
-            tempFolder = DirectoryUtil.getTempDir(repository);
+            if (reuse)
+            {
+                final String reusableWorkspaceName = getReusableWorkspaceName(repository);
+
+                if (reusableWorkspaceName != null)
+                {
+                    tempFolder = getReusableWorkingFolder(repository, reusableWorkspaceName);
+                    tempWorkspace = findReusableWorkspace(reusableWorkspaceName, tempFolder);
+                    reused = tempWorkspace != null;
+                }
+
+                if (!reused)
+                {
+                    if (tempFolder != null && tempFolder.exists())
+                    {
+                        FileHelpers.deleteDirectory(tempFolder);
+                    }
+
+                    /*
+                     * The working folder is named after the workspace, so that
+                     * repositories sharing a git-tf temporary directory do not
+                     * map the same folder
+                     */
+                    tempFolder = getReusableWorkingFolder(repository, workspaceName);
+                }
+
+                /* Clear whatever a previous command left in the folder */
+                if (tempFolder.exists())
+                {
+                    FileHelpers.deleteDirectory(tempFolder);
+                }
+            }
+            else
+            {
+                tempFolder = DirectoryUtil.getTempDir(repository);
+            }
 
             if (!tempFolder.mkdirs())
             {
@@ -132,12 +195,35 @@ public class CreateWorkspaceTask
 
             if (!preview)
             {
-                tempWorkspace = versionControlClient.createWorkspace(new WorkingFolder[]
+                if (tempWorkspace == null)
+                {
+                    tempWorkspace = versionControlClient.createWorkspace(new WorkingFolder[]
+                    {
+                        new WorkingFolder(serverPath, tempFolder.getAbsolutePath())
+                    }, workspaceName, Messages.getString("CreateWorkspaceTask.WorkspaceComment"), //$NON-NLS-1$
+                        WorkspaceLocation.SERVER,
+                        WorkspaceOptions.NONE);
+
+                    if (reuse && !saveReusableWorkspaceName(workspaceName))
+                    {
+                        /*
+                         * The next command could not find the workspace, use
+                         * it as a temporary workspace that is deleted when the
+                         * command completes
+                         */
+                        reuseWorkspace = false;
+                    }
+                }
+                else
                 {
-                    new WorkingFolder(serverPath, tempFolder.getAbsolutePath())
-                }, workspaceName, Messages.getString("CreateWorkspaceTask.WorkspaceComment"), //$NON-NLS-1$
-                    WorkspaceLocation.SERVER,
-                    WorkspaceOptions.NONE);
+                    workspaceName = tempWorkspace.getName();
+
+                    /* Drop the changes a failed command may have left pending */
+                    tempWorkspace.undo(new ItemSpec[]
+                    {
+                        new ItemSpec(serverPath, RecursionType.FULL)
+                    }, GetOptions.NO_DISK_UPDATE);
+                }
 
                 if (updateLocalVersion)
                 {
@@ -149,8 +235,17 @@ public class CreateWorkspaceTask
                     }
                     else
                     {
-                        updateLocalVersionTask =
+                        final UpdateLocalVersionToLatestBridgedChangesetTask updateToLatestTask =
                             new UpdateLocalVersionToLatestBridgedChangesetTask(tempWorkspace, repository);
+
+                        /*
+                         * The server still knows the local versions of a reused
+                         * workspace, only the items that changed since then
+                         * have to be updated
+                         */
+                        updateToLatestTask.setIncremental(reused);
+
+                        updateLocalVersionTask = updateToLatestTask;
                     }
 
                     TaskStatus updateStatus =
@@ -211,6 +306,111 @@ public class CreateWorkspaceTask
         return TaskStatus.OK_STATUS;
     }
 
+    /**
+     * Returns the name of the workspace kept for the repository by a previous
+     * command.
+     * 
+     * @param repository
+     *        the git repository
+     * @return the name of the reusable workspace, or <code>null</code> if no
+     *         workspace was kept
+     */
+    public static String getReusableWorkspaceName(final Repository repository)
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+
+        return repository.getConfig().getString(
+            ConfigurationConstants.CONFIGURATION_SECTION,
+            ConfigurationConstants.WORKSPACE_SUBSECTION,
+            ConfigurationConstants.WORKSPACE_NAME);
+    }
+
+    /**
+     * Returns the folder mapped by the reusable workspace with the given name.
+     * 
+     * @param repository
+     *        the git repository
+     * @param workspaceName
+     *        the name of the reusable workspace
+     * @return the working folder of the workspace
+     */
+    public static File getReusableWorkingFolder(final Repository repository, final String workspaceName)
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+        Check.notNullOrEmpty(workspaceName, "workspaceName"); //$NON-NLS-1$
+
+        return new File(
+            new File(DirectoryUtil.getTempDirRoot(repository), GitTFConstants.GIT_TF_WORKSPACE_DIRNAME),
+            workspaceName);
+    }
+
+    /**
+     * Finds the workspace kept for the repository by a previous command. A
+     * workspace that does not map the server path to the given working folder
+     * any longer (because the repository was configured again, or the git-tf
+     * temporary directory changed) is deleted.
+     * 
+     * @param workspaceName
+     *        the name of the reusable workspace
+     * @param workingFolder
+     *        the working folder of the reusable workspace
+     * @return the workspace to reuse, or <code>null</code> if a new workspace
+     *         has to be created
+     */
+    private Workspace findReusableWorkspace(final String workspaceName, final File workingFolder)
+    {
+        final Workspace existingWorkspace =
+            versionControlClient.queryWorkspace(workspaceName, VersionControlConstants.AUTHENTICATED_USER);
+
+        if (existingWorkspace == null)
+        {
+            return null;
+        }
+
+        final WorkingFolder[] folders = existingWorkspace.getFolders();
+
+        if (folders != null
+            && folders.length == 1
+            && ServerPath.equals(folders[0].getServerItem(), serverPath)
+            && LocalPath.equals(folders[0].getLocalItem(), workingFolder.getAbsolutePath()))
+        {
+            return existingWorkspace;
+        }
+
+        log.info(MessageFormat.format("Workspace {0} does not match the repository configuration", workspaceName)); //$NON-NLS-1$
+
+        versionControlClient.deleteWorkspace(existingWorkspace);
+
+        return null;
+    }
+
+    private boolean saveReusableWorkspaceName(final String workspaceName)
+    {
+        repository.getConfig().setString(
+            ConfigurationConstants.CONFIGURATION_SECTION,
+            ConfigurationConstants.WORKSPACE_SUBSECTION,
+            ConfigurationConstants.WORKSPACE_NAME,
+            workspaceName);
+
+        try
+        {
+            repository.getConfig().save();
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            log.warn(MessageFormat.format("Could not save the name of workspace {0}", workspaceName), e); //$NON-NLS-1$
+
+            repository.getConfig().unset(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.WORKSPACE_SUBSECTION,
+                ConfigurationConstants.WORKSPACE_NAME);
+
+            return false;
+        }
+    }
+
     public WorkspaceService getWorkspace()
     {
         return workspace;
@@ -0,0 +1,127 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks;
+
+import java.text.MessageFormat;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.lib.Repository;
+
+import com.microsoft.gittf.core.Messages;
+import com.microsoft.gittf.core.config.ConfigurationConstants;
+import com.microsoft.gittf.core.config.GitTFConfiguration;
+import com.microsoft.gittf.core.impl.TfsWorkspace;
+import com.microsoft.gittf.core.tasks.framework.Task;
+import com.microsoft.gittf.core.tasks.framework.TaskExecutor;
+import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.tfs.core.clients.versioncontrol.VersionControlClient;
+import com.microsoft.tfs.core.clients.versioncontrol.VersionControlConstants;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+
+/**
+ * Deletes the workspace kept for the repository by commands run with the
+ * reuse-workspace option, together with its working folder, and forgets its
+ * name. Must run while the repository is still configured for the server the
+ * workspace was created on.
+ * 
+ */
+public class DeleteReusableWorkspaceTask
+    extends Task
+{
+    private static final Log log = LogFactory.getLog(DeleteReusableWorkspaceTask.class);
+
+    private final Repository repository;
+    private final VersionControlClient versionControlClient;
+
+    /**
+     * Constructor
+     * 
+     * @param repository
+     * @param versionControlClient
+     *        the client of the server the workspace was created on
+     */
+    public DeleteReusableWorkspaceTask(final Repository repository, final VersionControlClient versionControlClient)
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+        Check.notNull(versionControlClient, "versionControlClient"); //$NON-NLS-1$
+
+        this.repository = repository;
+        this.versionControlClient = versionControlClient;
+    }
+
+    @Override
+    public TaskStatus run(final TaskProgressMonitor progressMonitor)
+    {
+        final String workspaceName = CreateWorkspaceTask.getReusableWorkspaceName(repository);
+
+        if (workspaceName == null || GitTFConfiguration.loadFrom(repository) == null)
+        {
+            return TaskStatus.OK_STATUS;
+        }
+
+        progressMonitor.beginTask(Messages.getString("DeleteReusableWorkspaceTask.DeletingWorkspace"), //$NON-NLS-1$
+            TaskProgressMonitor.INDETERMINATE);
+
+        try
+        {
+            final Workspace workspace =
+                versionControlClient.queryWorkspace(workspaceName, VersionControlConstants.AUTHENTICATED_USER);
+
+            if (workspace != null)
+            {
+                final TaskStatus deleteStatus =
+                    new TaskExecutor(progressMonitor.newSubTask(TaskProgressMonitor.INDETERMINATE)).execute(new DeleteWorkspaceTask(
+                        new TfsWorkspace(workspace),
+                        CreateWorkspaceTask.getReusableWorkingFolder(repository, workspaceName)));
+
+                if (!deleteStatus.isOK())
+                {
+                    return deleteStatus;
+                }
+            }
+
+            repository.getConfig().unset(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.WORKSPACE_SUBSECTION,
+                ConfigurationConstants.WORKSPACE_NAME);
+
+            repository.getConfig().save();
+        }
+        catch (Exception e)
+        {
+            log.warn(MessageFormat.format("Could not delete workspace {0}", workspaceName), e); //$NON-NLS-1$
+
+            return new TaskStatus(TaskStatus.ERROR, e);
+        }
+
+        progressMonitor.endTask();
+
+        return TaskStatus.OK_STATUS;
+    }
+}
@@ -31,6 +31,7 @@ import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -44,14 +45,19 @@ import org.eclipse.jgit.lib.Repository;
 import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
 import com.microsoft.gittf.core.config.ChangesetCommitMap;
+import com.microsoft.gittf.core.config.ChangesetItemManifest;
 import com.microsoft.gittf.core.config.GitTFConfiguration;
+import com.microsoft.gittf.core.impl.ChangesetWorkItemCache;
+import com.microsoft.gittf.core.impl.PrefetchingVersionControlService;
 import com.microsoft.gittf.core.interfaces.VersionControlService;
 import com.microsoft.gittf.core.tasks.framework.Task;
 import com.microsoft.gittf.core.tasks.framework.TaskExecutor;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressDisplay;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.util.ChangesetHistoryPager;
 import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.DirectoryUtil;
 import com.microsoft.gittf.core.util.ObjectIdUtil;
 import com.microsoft.gittf.core.util.RepositoryUtil;
 import com.microsoft.gittf.core.util.TfsBranchUtil;
@@ -79,6 +85,8 @@ public class FetchTask
     private boolean deep = false;
     private boolean shouldUpdateFetchHead = true;
     private boolean force = false;
+    private int downloadThreads = 0;
+    private int historyPageSize = GitTFConstants.GIT_TF_HISTORY_PAGE_SIZE;
 
     private ObjectId fetchedCommitId = null;
     private int fetchedChangesetId = -1;
@@ -121,6 +129,34 @@ public class FetchTask
         this.force = force;
     }
 
+    /**
+     * Sets the number of items to download concurrently for each changeset.
+     * If this is not set, the value from the git-tf configuration is used.
+     * 
+     * @param downloadThreads
+     *        the number of concurrent downloads (must be positive)
+     */
+    public void setDownloadThreads(final int downloadThreads)
+    {
+        Check.isTrue(downloadThreads > 0, "downloadThreads > 0"); //$NON-NLS-1$
+
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * Sets the number of changesets queried at once from the history of a deep
+     * fetch. Defaults to {@link GitTFConstants#GIT_TF_HISTORY_PAGE_SIZE}.
+     * 
+     * @param historyPageSize
+     *        the number of changesets per history query (must be positive)
+     */
+    public void setHistoryPageSize(final int historyPageSize)
+    {
+        Check.isTrue(historyPageSize > 0, "historyPageSize > 0"); //$NON-NLS-1$
+
+        this.historyPageSize = historyPageSize;
+    }
+
     public ObjectId getCommitId()
     {
         return fetchedCommitId;
@@ -144,6 +180,15 @@ public class FetchTask
         final GitTFConfiguration configuration = GitTFConfiguration.loadFrom(repository);
         final ChangesetCommitMap changesetCommitMap = new ChangesetCommitMap(repository);
 
+        try
+        {
+            changesetCommitMap.beginBatch();
+        }
+        catch (IOException e)
+        {
+            return new TaskStatus(TaskStatus.ERROR, e);
+        }
+
         int latestChangesetID = changesetCommitMap.getLastBridgedChangesetID(true);
 
         /*
@@ -175,37 +220,19 @@ public class FetchTask
             }
         }
 
+        /*
+         * Only the changeset to fetch is queried here, the changesets between
+         * the last bridged changeset and this one are paged through while the
+         * commits are created
+         */
         Changeset[] latestChangesets =
-            versionControlClient.queryHistory(
+            queryLatestChangeset(
                 configuration.getServerPath(),
-                versionSpec,
-                0,
-                RecursionType.FULL,
-                null,
-                new ChangesetVersionSpec(force && latestChangesetID > 0 ? latestChangesetID - 1 : latestChangesetID),
-                versionSpec,
-                deep || force ? Integer.MAX_VALUE : GitTFConstants.GIT_TF_SHALLOW_DEPTH,
-                false,
-                false,
-                false,
-                false);
+                new ChangesetVersionSpec(force && latestChangesetID > 0 ? latestChangesetID - 1 : latestChangesetID));
 
         if (latestChangesets.length == 0 && force)
         {
-            latestChangesets =
-                versionControlClient.queryHistory(
-                    configuration.getServerPath(),
-                    versionSpec,
-                    0,
-                    RecursionType.FULL,
-                    null,
-                    null,
-                    versionSpec,
-                    deep || force ? Integer.MAX_VALUE : GitTFConstants.GIT_TF_SHALLOW_DEPTH,
-                    false,
-                    false,
-                    false,
-                    false);
+            latestChangesets = queryLatestChangeset(configuration.getServerPath(), null);
         }
 
         if (latestChangesets.length == 0)
@@ -237,67 +264,194 @@ public class FetchTask
             ObjectId lastCommitID =
                 (latestChangesetID >= 0) ? changesetCommitMap.getCommitID(latestChangesetID, true) : null;
 
+            Iterator<Changeset> changesets =
+                getChangesetsToDownload(configuration.getServerPath(), latestChangesets[0], latestChangesetID);
+
+            /*
+             * The files of the last bridged changeset are only listed on the
+             * server if its manifest was not stored with its commit
+             */
+            ChangesetItemManifest previousItemManifest = loadItemManifest(latestChangesetID, lastCommitID);
+            Item[] previousChangesetItems = null;
+
+            if (previousItemManifest == null)
+            {
+                previousChangesetItems =
+                    versionControlClient.getItems(
+                        configuration.getServerPath(),
+                        new ChangesetVersionSpec(latestChangesetID),
+                        RecursionType.FULL);
+            }
+
             /*
-             * Note: since we query history from last bridged changeset ->
-             * latest, we may have gotten the last bridged changeset returned to
-             * us as the last element. (This will be true if depth > number of
-             * changesets since last bridged changeset.) Filter this changeset
-             * out.
+             * In a deep fetch the work items linked to the next changesets are
+             * looked up in the background rather than one query per commit
              */
-            Changeset[] changesets = calculateChangesetsToDownload(latestChangesets, latestChangesetID);
+            ChangesetWorkItemCache workItemCache = null;
 
-            changesetCounter = changesets.length - 1;
-            Item[] previousChangesetItems =
-                versionControlClient.getItems(
-                    configuration.getServerPath(),
-                    new ChangesetVersionSpec(latestChangesetID),
-                    RecursionType.FULL);
+            if (deep && witClient != null)
+            {
+                workItemCache = new ChangesetWorkItemCache(witClient);
+                changesets = workItemCache.lookupAhead(changesets, GitTFConstants.GIT_TF_WORK_ITEM_LOOKAHEAD);
+            }
 
-            progressMonitor.setWork(changesetCounter + 1);
+            /*
+             * In a deep fetch the items of the next changesets are listed and
+             * downloaded while the commit for the current one is created. The
+             * prefetcher and the commit creation share the download threads.
+             */
+            PrefetchingVersionControlService prefetcher = null;
+            int commitDownloadThreads = downloadThreads > 0 ? downloadThreads : configuration.getDownloadThreads();
 
-            for (int i = changesetCounter; i >= 0; i--)
+            if (deep && configuration.getPrefetchChangesets() > 0)
             {
-                progressMonitor.setDetail(Messages.formatString("FetchTask.ChangesetNumberFormat", //$NON-NLS-1$
-                    Integer.toString(changesets[i].getChangesetID())));
+                final int prefetchDownloadThreads =
+                    PrefetchingVersionControlService.getPrefetchDownloadThreads(commitDownloadThreads);
 
-                CreateCommitForChangesetVersionSpecTask createCommitTask =
-                    new CreateCommitForChangesetVersionSpecTask(
-                        repository,
+                prefetcher =
+                    new PrefetchingVersionControlService(
                         versionControlClient,
-                        changesets[i],
-                        previousChangesetItems,
-                        lastCommitID,
-                        witClient);
-                TaskStatus createCommitTaskStatus =
-                    new TaskExecutor(progressMonitor.newSubTask(1)).execute(createCommitTask);
-
-                if (!createCommitTaskStatus.isOK())
-                {
-                    log.info("Commit Creation failed"); //$NON-NLS-1$
+                        configuration.getServerPath(),
+                        configuration.getPrefetchChangesets(),
+                        prefetchDownloadThreads,
+                        DirectoryUtil.getTempDir(repository));
 
-                    return createCommitTaskStatus;
-                }
+                commitDownloadThreads -= prefetchDownloadThreads;
 
-                lastCommitID = createCommitTask.getCommitID();
-                fetchedChangesetId = changesets[i].getChangesetID();
-                previousChangesetItems = createCommitTask.getCommittedItems();
+                changesets = prefetcher.prefetchAhead(changesets, !force && lastCommitID != null);
+            }
 
-                try
+            /*
+             * The number of changesets to download is not known until the last
+             * page of history has been queried, the progress is reported by
+             * changeset number instead
+             */
+            int progressChangesetID = -1;
+            int precedingChangesetID = (!force && latestChangesetID >= 0) ? latestChangesetID : -1;
+            int fetchedCount = 0;
+
+            try
+            {
+                while (changesets.hasNext())
                 {
-                    boolean forceHWMUpdate = i == changesetCounter && force;
-                    changesetCommitMap.setChangesetCommit(changesets[i].getChangesetID(), lastCommitID, forceHWMUpdate);
+                    final Changeset changeset = changesets.next();
+
+                    if (progressChangesetID < 0)
+                    {
+                        progressChangesetID = changeset.getChangesetID() - 1;
+                        progressMonitor.setWork(Math.max(finalChangesetID - progressChangesetID, 1));
+                    }
+
+                    progressMonitor.setDetail(Messages.formatString("FetchTask.ChangesetNumberFormat", //$NON-NLS-1$
+                        Integer.toString(changeset.getChangesetID())));
+
+                    CreateCommitForChangesetVersionSpecTask createCommitTask =
+                        new CreateCommitForChangesetVersionSpecTask(
+                            repository,
+                            prefetcher != null ? prefetcher : versionControlClient,
+                            changeset,
+                            previousChangesetItems,
+                            lastCommitID,
+                            witClient);
+
+                    createCommitTask.setDownloadThreads(commitDownloadThreads);
+
+                    if (workItemCache != null)
+                    {
+                        createCommitTask.setWorkItemCache(workItemCache);
+                    }
+
+                    if (previousItemManifest != null)
+                    {
+                        createCommitTask.setPreviousItemManifest(previousItemManifest);
+                    }
+
+                    /*
+                     * In a deep fetch every changeset since the last bridged
+                     * one is fetched, so each commit tree can be built from the
+                     * previous one.
+                     */
+                    if (deep && precedingChangesetID >= 0)
+                    {
+                        createCommitTask.setPrecedingChangesetID(precedingChangesetID);
+                    }
+
+                    TaskStatus createCommitTaskStatus =
+                        new TaskExecutor(progressMonitor.newSubTask(Math.max(
+                            changeset.getChangesetID() - progressChangesetID,
+                            0))).execute(createCommitTask);
+
+                    progressChangesetID = Math.max(changeset.getChangesetID(), progressChangesetID);
+
+                    if (!createCommitTaskStatus.isOK())
+                    {
+                        log.info("Commit Creation failed"); //$NON-NLS-1$
+
+                        try
+                        {
+                            changesetCommitMap.commitBatch();
+                        }
+                        catch (IOException e)
+                        {
+                            log.error(e);
+                        }
+
+                        return createCommitTaskStatus;
+                    }
+
+                    lastCommitID = createCommitTask.getCommitID();
+                    fetchedChangesetId = changeset.getChangesetID();
+                    previousChangesetItems = createCommitTask.getCommittedItems();
+                    previousItemManifest = createCommitTask.getItemManifest();
+
+                    try
+                    {
+                        boolean forceHWMUpdate = fetchedCount == 0 && force;
+                        changesetCommitMap.recordChangesetCommit(changeset.getChangesetID(), lastCommitID, forceHWMUpdate);
+                    }
+                    catch (IOException e)
+                    {
+                        return new TaskStatus(TaskStatus.ERROR, e);
+                    }
+
+                    progressMonitor.displayVerbose(Messages.formatString("FetchTask.FetchedChangesetFormat", //$NON-NLS-1$
+                        Integer.toString(changeset.getChangesetID()),
+                        ObjectIdUtil.abbreviate(repository, lastCommitID)));
+
+                    precedingChangesetID = changeset.getChangesetID();
+                    fetchedCount++;
                 }
-                catch (IOException e)
+            }
+            finally
+            {
+                if (prefetcher != null)
                 {
-                    return new TaskStatus(TaskStatus.ERROR, e);
+                    prefetcher.close();
                 }
 
-                progressMonitor.displayVerbose(Messages.formatString("FetchTask.FetchedChangesetFormat", //$NON-NLS-1$
-                    Integer.toString(changesets[i].getChangesetID()),
-                    ObjectIdUtil.abbreviate(repository, lastCommitID)));
+                if (workItemCache != null)
+                {
+                    workItemCache.close();
+                }
             }
 
+            changesetCounter = fetchedCount - 1;
+
             finalCommitID = lastCommitID;
+
+            if (previousItemManifest != null && fetchedCount > 0)
+            {
+                saveItemManifest(previousItemManifest, lastCommitID);
+            }
+        }
+
+        try
+        {
+            changesetCommitMap.commitBatch();
+        }
+        catch (IOException e)
+        {
+            return new TaskStatus(TaskStatus.ERROR, e);
         }
 
         fetchedCommitId = finalCommitID;
@@ -365,28 +519,118 @@ public class FetchTask
         return TaskStatus.OK_STATUS;
     }
 
-    private Changeset[] calculateChangesetsToDownload(Changeset[] changesets, int latestChangeset)
+    /**
+     * Reads the manifest stored for the last bridged changeset.
+     * 
+     * @return the manifest, or null if none was stored for the commit of the
+     *         changeset
+     */
+    private ChangesetItemManifest loadItemManifest(final int changesetID, final ObjectId commitID)
     {
-        Check.notNullOrEmpty(changesets, "changesets"); //$NON-NLS-1$
-
-        List<Changeset> changesetsToDownload = new ArrayList<Changeset>(changesets.length);
-        changesetsToDownload.add(changesets[0]);
+        if (changesetID < 0 || commitID == null)
+        {
+            return null;
+        }
 
-        for (int count = 1; count < changesets.length; count++)
+        try
         {
-            if ((changesets[count].getChangesetID() > latestChangeset && deep)
-                || (changesets[count].getChangesetID() == latestChangeset && force))
+            /* The blobs in the manifest can only be reused with their commit */
+            if (!repository.hasObject(commitID))
             {
-                changesetsToDownload.add(changesets[count]);
+                return null;
             }
 
-            if (changesets[count].getChangesetID() < latestChangeset)
+            return ChangesetItemManifest.loadFrom(repository, changesetID, commitID);
+        }
+        catch (IOException e)
+        {
+            log.warn(MessageFormat.format(
+                "Could not read the item manifest of changeset {0}", Integer.toString(changesetID)), e); //$NON-NLS-1$
+
+            return null;
+        }
+    }
+
+    private void saveItemManifest(final ChangesetItemManifest manifest, final ObjectId commitID)
+    {
+        try
+        {
+            manifest.saveTo(repository, commitID);
+        }
+        catch (IOException e)
+        {
+            /* The next fetch lists the changeset on the server instead */
+            log.warn(MessageFormat.format(
+                "Could not write the item manifest of changeset {0}", Integer.toString(manifest.getChangesetID())), e); //$NON-NLS-1$
+        }
+    }
+
+    private Changeset[] queryLatestChangeset(final String serverPath, final VersionSpec versionFrom)
+    {
+        return versionControlClient.queryHistory(
+            serverPath,
+            versionSpec,
+            0,
+            RecursionType.FULL,
+            null,
+            versionFrom,
+            versionSpec,
+            GitTFConstants.GIT_TF_SHALLOW_DEPTH,
+            false,
+            false,
+            false,
+            false);
+    }
+
+    /**
+     * Returns the changesets to download, oldest changeset first. In a deep
+     * fetch these are all the changesets since the last bridged changeset, the
+     * history is queried one page at a time (see
+     * {@link #setHistoryPageSize(int)}) as the changesets are downloaded. The
+     * last bridged changeset is downloaded again when forced.
+     * 
+     * @param serverPath
+     *        the server path to fetch
+     * @param finalChangeset
+     *        the last changeset to download
+     * @param latestChangeset
+     *        the last bridged changeset
+     * @return the changesets to download
+     */
+    private Iterator<Changeset> getChangesetsToDownload(
+        final String serverPath,
+        final Changeset finalChangeset,
+        final int latestChangeset)
+    {
+        final int finalChangesetID = finalChangeset.getChangesetID();
+
+        if (deep && latestChangeset < finalChangesetID)
+        {
+            return new ChangesetHistoryPager(
+                versionControlClient,
+                serverPath,
+                force ? latestChangeset : latestChangeset + 1,
+                finalChangesetID,
+                historyPageSize);
+        }
+
+        final List<Changeset> changesetsToDownload = new ArrayList<Changeset>(2);
+
+        if (force && latestChangeset >= 0 && latestChangeset < finalChangesetID)
+        {
+            /* Only returned if the last bridged changeset changed the path */
+            final Iterator<Changeset> latest =
+                new ChangesetHistoryPager(versionControlClient, serverPath, latestChangeset, latestChangeset, 1);
+
+            if (latest.hasNext())
             {
-                break;
+                changesetsToDownload.add(latest.next());
             }
         }
 
-        return changesetsToDownload.toArray(new Changeset[changesetsToDownload.size()]);
+        changesetsToDownload.add(finalChangeset);
+
+        return changesetsToDownload.iterator();
     }
 
     private boolean writeFetchHead(final ObjectId commitID, final int changesetID)
@@ -36,6 +36,8 @@ import com.microsoft.gittf.core.util.Check;
 /**
  * Removes the git tf configuration parameters from the .git\config file
  * 
+ * The workspace kept by the reuse-workspace option is not deleted from the
+ * server, run {@link DeleteReusableWorkspaceTask} first to delete it.
  * 
  */
 public class UnconfigureRepositoryTask
@@ -24,7 +24,7 @@
 
 package com.microsoft.gittf.core.tasks;
 
-import java.util.ArrayList;
+import java.text.MessageFormat;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -70,6 +70,12 @@ public abstract class UpdateLocalVersionTask
         this.workspace = workspace;
     }
 
+    /**
+     * Queries the server for the GetOps needed to update the local versions.
+     * The returned arrays are consumed by {@link #run(TaskProgressMonitor)}.
+     * 
+     * @return the GetOps, or <code>null</code> if there is nothing to update
+     */
     protected abstract GetOperation[][] getGetOperations();
 
     @Override
@@ -84,43 +90,49 @@ public abstract class UpdateLocalVersionTask
         if (tfsGetOperations == null)
         {
             /* There is nothing to update */
+            progressMonitor.endTask();
 
             return TaskStatus.OK_STATUS;
         }
 
-        /*
-         * Build the local version updates array to queue all the updates using
-         * a single server call
-         */
-        ArrayList<ClientLocalVersionUpdate> localVersionUpdates = new ArrayList<ClientLocalVersionUpdate>();
+        int updateCount = 0;
 
         for (int i = 0; i < tfsGetOperations.length; i++)
         {
-            for (int j = 0; j < tfsGetOperations[i].length; j++)
-            {
-                GetOperation getOp = tfsGetOperations[i][j];
-
-                localVersionUpdates.add(new ClientLocalVersionUpdate(
-                    getOp.getSourceServerItem(),
-                    getOp.getItemID(),
-                    getOp.getTargetLocalItem(),
-                    getOp.getVersionServer(),
-                    getOp.getPropertyValues()));
-            }
+            updateCount += tfsGetOperations[i].length;
         }
 
-        /* Update the local version information using the Update queue */
+        progressMonitor.setWork(updateCount);
+
+        /*
+         * Update the local version information using the Update queue. The
+         * updates are queued as they are read from the GetOps instead of being
+         * copied into a list first, the queue sends them to the server in
+         * batches.
+         */
         UpdateLocalVersionQueue queue = null;
 
         try
         {
-            log.info("Calling server to update local versions"); //$NON-NLS-1$
+            log.info(MessageFormat.format("Calling server to update {0} local versions", updateCount)); //$NON-NLS-1$
 
             queue = new UpdateLocalVersionQueue(workspace, UpdateLocalVersionQueueOptions.UPDATE_SERVER);
 
-            for (int count = 0; count < localVersionUpdates.size(); count++)
+            for (int i = 0; i < tfsGetOperations.length; i++)
             {
-                queue.queueUpdate(localVersionUpdates.get(count));
+                for (int j = 0; j < tfsGetOperations[i].length; j++)
+                {
+                    GetOperation getOp = tfsGetOperations[i][j];
+
+                    queue.queueUpdate(new ClientLocalVersionUpdate(
+                        getOp.getSourceServerItem(),
+                        getOp.getItemID(),
+                        getOp.getTargetLocalItem(),
+                        getOp.getVersionServer(),
+                        getOp.getPropertyValues()));
+
+                    progressMonitor.worked(1);
+                }
             }
 
             queue.flush();
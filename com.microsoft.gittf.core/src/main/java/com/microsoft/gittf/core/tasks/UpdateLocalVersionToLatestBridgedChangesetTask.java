@@ -50,7 +50,7 @@ public class UpdateLocalVersionToLatestBridgedChangesetTask
 {
     private final Repository repository;
 
-    private GetOperation[][] tfsGetOperations;
+    private boolean incremental = false;
 
     /**
      * Constructor
@@ -67,14 +67,26 @@ public class UpdateLocalVersionToLatestBridgedChangesetTask
         this.repository = repository;
     }
 
-    public GetOperation[][] getGetOperations()
+    /**
+     * Sets whether only the items whose local version differs from the latest
+     * bridged changeset should be updated. This is only useful for a workspace
+     * that was used before, a new workspace has no local versions.
+     * 
+     * @param incremental
+     *        <code>true</code> to update only the items that changed,
+     *        <code>false</code> to update every item (the default)
+     */
+    public void setIncremental(final boolean incremental)
     {
-        if (tfsGetOperations == null)
-        {
-            tfsGetOperations = getLatestDownloadedChangesetGetOps();
-        }
+        this.incremental = incremental;
+    }
 
-        return tfsGetOperations;
+    public GetOperation[][] getGetOperations()
+    {
+        /*
+         * Not cached, so the GetOps are not kept alive once the task has run
+         */
+        return getLatestDownloadedChangesetGetOps();
     }
 
     private GetOperation[][] getLatestDownloadedChangesetGetOps()
@@ -103,7 +115,7 @@ public class UpdateLocalVersionToLatestBridgedChangesetTask
                         new ChangesetVersionSpec(lastDownloadedChangeset))
                 },
                 0,
-                GetOptions.NO_DISK_UPDATE.combine(GetOptions.GET_ALL),
+                incremental ? GetOptions.NO_DISK_UPDATE : GetOptions.NO_DISK_UPDATE.combine(GetOptions.GET_ALL),
                 null,
                 null,
                 false);
@@ -49,8 +49,6 @@ public class UpdateLocalVersionToSpecificVersionsTask
     private final VersionSpec versionSpec;
     private final Repository repository;
 
-    private GetOperation[][] tfsGetOperations;
-
     /**
      * Constructor
      * 
@@ -78,12 +76,10 @@ public class UpdateLocalVersionToSpecificVersionsTask
     @Override
     protected GetOperation[][] getGetOperations()
     {
-        if (tfsGetOperations == null)
-        {
-            tfsGetOperations = getVersionSpecGetOps();
-        }
-
-        return tfsGetOperations;
+        /*
+         * Not cached, so the GetOps are not kept alive once the task has run
+         */
+        return getVersionSpecGetOps();
     }
 
     /**
@@ -31,13 +31,17 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.jgit.lib.Repository;
 
+import com.microsoft.gittf.core.config.GitTFConfiguration;
 import com.microsoft.gittf.core.interfaces.WorkspaceService;
 import com.microsoft.gittf.core.tasks.framework.Task;
 import com.microsoft.gittf.core.tasks.framework.TaskExecutor;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.util.Check;
+import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
 import com.microsoft.tfs.core.clients.versioncontrol.VersionControlClient;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.ItemSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
 
 /**
@@ -133,6 +137,7 @@ public abstract class WorkspaceTask
 
             createTask.setPreview(previewOnly);
             createTask.setVersionSpec(versionSpec);
+            createTask.setReuseWorkspace(!previewOnly && GitTFConfiguration.loadFrom(repository).getReuseWorkspace());
 
             final TaskStatus createStatus = new TaskExecutor(progressMonitor).execute(createTask);
 
@@ -145,14 +150,19 @@ public abstract class WorkspaceTask
                 throw new Exception(createStatus.getMessage());
             }
 
-            workspaceData = new WorkspaceInfo(createTask.getWorkspace(), createTask.getWorkingFolder());
+            workspaceData =
+                new WorkspaceInfo(
+                    createTask.getWorkspace(),
+                    createTask.getWorkingFolder(),
+                    createTask.getReuseWorkspace());
         }
 
         return workspaceData;
     }
 
     /**
-     * Clean up the workspace object
+     * Clean up the workspace object. A workspace that is reused by the next
+     * command is kept, only its pending changes are undone.
      * 
      * @param progressMonitor
      */
@@ -160,6 +170,25 @@ public abstract class WorkspaceTask
     {
         TaskStatus deleteWorkspaceStatus = TaskStatus.OK_STATUS;
 
+        if (workspaceData != null && workspaceData.isReused())
+        {
+            try
+            {
+                workspaceData.getWorkspace().undo(new ItemSpec[]
+                {
+                    new ItemSpec(serverPath, RecursionType.FULL)
+                }, GetOptions.NO_DISK_UPDATE);
+            }
+            catch (Exception e)
+            {
+                log.warn("Could not undo the pending changes of the workspace", e); //$NON-NLS-1$
+            }
+            finally
+            {
+                workspaceData = null;
+            }
+        }
+
         if (workspaceData != null)
         {
             try
@@ -186,14 +215,16 @@ public abstract class WorkspaceTask
     {
         private final WorkspaceService workspace;
         private final File workingFolder;
+        private final boolean reused;
 
-        private WorkspaceInfo(final WorkspaceService workspace, final File workingFolder)
+        private WorkspaceInfo(final WorkspaceService workspace, final File workingFolder, final boolean reused)
         {
             Check.notNull(workspace, "workspace"); //$NON-NLS-1$
             Check.notNull(workingFolder, "workingFolder"); //$NON-NLS-1$
 
             this.workspace = workspace;
             this.workingFolder = workingFolder;
+            this.reused = reused;
         }
 
         public WorkspaceService getWorkspace()
@@ -205,5 +236,14 @@ public abstract class WorkspaceTask
         {
             return workingFolder;
         }
+
+        /**
+         * @return <code>true</code> if the workspace is kept for the next
+         *         command instead of being deleted
+         */
+        public boolean isReused()
+        {
+            return reused;
+        }
     }
 }
@@ -0,0 +1,133 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+
+import com.microsoft.gittf.core.util.Check;
+
+/**
+ * Finds items in a git tree whose names only differ in case. TFS does not
+ * support such items.
+ * 
+ * Two paths only differing in case always have a pair of sibling items only
+ * differing in case, so every tree is checked on its own. Trees are
+ * identified by their object id and trees that were already checked are
+ * skipped, so when the same validator checks a sequence of commits only the
+ * trees that changed since the previous commit are read.
+ * 
+ */
+public class CaseCollisionValidator
+{
+    private final Repository repository;
+
+    private final Set<ObjectId> validatedTrees = new HashSet<ObjectId>();
+
+    /**
+     * Constructor
+     * 
+     * @param repository
+     *        the git repository
+     */
+    public CaseCollisionValidator(final Repository repository)
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+
+        this.repository = repository;
+    }
+
+    /**
+     * Finds an item in the tree that has the same path as an other item in
+     * the tree only different in case
+     * 
+     * @param tree
+     *        the root tree to check
+     * @return the lower cased path of the item found, or null if there are no
+     *         such items in the tree
+     * @throws IOException
+     */
+    public String findCollision(final AnyObjectId tree)
+        throws IOException
+    {
+        Check.notNull(tree, "tree"); //$NON-NLS-1$
+
+        final ObjectReader objectReader = repository.newObjectReader();
+        try
+        {
+            return findCollision(objectReader, tree, ""); //$NON-NLS-1$
+        }
+        finally
+        {
+            objectReader.release();
+        }
+    }
+
+    private String findCollision(final ObjectReader objectReader, final AnyObjectId tree, final String treePath)
+        throws IOException
+    {
+        if (validatedTrees.contains(tree))
+        {
+            return null;
+        }
+
+        final Set<String> itemNames = new HashSet<String>();
+        final CanonicalTreeParser parser = new CanonicalTreeParser(null, objectReader, tree);
+
+        for (; !parser.eof(); parser.next())
+        {
+            final String itemName = parser.getEntryPathString();
+            final String itemPath = treePath.length() == 0 ? itemName : treePath + "/" + itemName; //$NON-NLS-1$
+
+            if (!itemNames.add(itemName.toLowerCase()))
+            {
+                return itemPath.toLowerCase();
+            }
+
+            if (parser.getEntryFileMode() == FileMode.TREE)
+            {
+                final String collision = findCollision(objectReader, parser.getEntryObjectId(), itemPath);
+
+                if (collision != null)
+                {
+                    return collision;
+                }
+            }
+        }
+
+        validatedTrees.add(tree.copy());
+
+        return null;
+    }
+}
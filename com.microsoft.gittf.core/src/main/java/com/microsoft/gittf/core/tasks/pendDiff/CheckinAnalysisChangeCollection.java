@@ -35,10 +35,8 @@ import org.eclipse.jgit.errors.CorruptObjectException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.FileMode;
-import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.treewalk.TreeWalk;
 
 import com.microsoft.gittf.core.util.RepositoryPath;
 import com.microsoft.tfs.util.Check;
@@ -64,6 +62,8 @@ public class CheckinAnalysisChangeCollection
 
     private Set<String> processedDeletedFolders = new HashSet<String>();
 
+    private TreePathIndex targetTreeIndex;
+
     /**
      * Constructor
      */
@@ -308,7 +308,7 @@ public class CheckinAnalysisChangeCollection
             return new TfsFolderRenameDetector();
         }
 
-        return new TfsFolderRenameDetector(repository, sourceTree, targetTree, getRenames());
+        return new TfsFolderRenameDetector(repository, sourceTree, targetTree, getRenames(), getTargetTreeIndex());
     }
 
     /**
@@ -336,47 +336,46 @@ public class CheckinAnalysisChangeCollection
             return;
         }
 
-        ObjectReader objectReader = repository.newObjectReader();
-        try
+        /*
+         * if this folder is deleted we need to walk its parents recursively
+         * until we find the upper most folder that was deleted
+         */
+        String folderToDelete = getUpperMostFolderToDelete(folderPath, null, getTargetTreeIndex());
+
+        /* if this folder was deleted already there is nothing else to do */
+        if (processedDeletedFolders.contains(folderToDelete))
         {
-            /*
-             * if this folder is deleted we need to walk its parents recursively
-             * until we find the upper most folder that was deleted
-             */
-            String folderToDelete = getUpperMostFolderToDelete(folderPath, null, objectReader, targetTree);
-
-            /* if this folder was deleted already there is nothing else to do */
-            if (processedDeletedFolders.contains(folderToDelete))
-            {
-                return;
-            }
-
-            /* pend a delete for the folder */
-            processedDeletedFolders.add(folderToDelete);
-
-            if (folderToDelete != null && folderToDelete.length() != 0)
-            {
-                deletes.add(new DeleteChange(folderToDelete, FileMode.TREE));
-            }
+            return;
         }
-        finally
+
+        /* pend a delete for the folder */
+        processedDeletedFolders.add(folderToDelete);
+
+        if (folderToDelete != null && folderToDelete.length() != 0)
         {
-            if (objectReader != null)
-            {
-                objectReader.release();
-            }
+            deletes.add(new DeleteChange(folderToDelete, FileMode.TREE));
         }
     }
 
-    private String getUpperMostFolderToDelete(
-        String filePath,
-        String previousFilePath,
-        ObjectReader objectReader,
-        RevObject commitRevTree)
-        throws MissingObjectException,
-            IncorrectObjectTypeException,
-            CorruptObjectException,
-            IOException
+    /**
+     * Returns the index of the paths in the target tree, building it the first
+     * time it is needed so that all the folder delete and folder rename checks
+     * share a single walk of the tree
+     * 
+     * @return
+     */
+    private TreePathIndex getTargetTreeIndex()
+    {
+        if (targetTreeIndex == null)
+        {
+            targetTreeIndex = new TreePathIndex(repository, targetTree);
+        }
+
+        return targetTreeIndex;
+    }
+
+    private String getUpperMostFolderToDelete(String filePath, String previousFilePath, TreePathIndex treeIndex)
+        throws IOException
     {
         /*
          * if the file path is empty then we reached the end of the recursive
@@ -391,51 +390,12 @@ public class CheckinAnalysisChangeCollection
          * if this folder does not exist in the tree then we need to check its
          * parent
          */
-        if (!folderExistsInTree(filePath, objectReader, commitRevTree))
+        if (!treeIndex.exists(filePath))
         {
-            return getUpperMostFolderToDelete(RepositoryPath.getParent(filePath), filePath, objectReader, commitRevTree);
+            return getUpperMostFolderToDelete(RepositoryPath.getParent(filePath), filePath, treeIndex);
         }
 
         /* otherwise the previous file path was the one deleted */
         return previousFilePath;
     }
-
-    /**
-     * Determines if the folder path exists in the tree
-     * 
-     * @param filePath
-     *        the folder path
-     * @param objectReader
-     *        the object reader
-     * @param commitRevTree
-     *        the tree to check
-     * @return
-     * @throws MissingObjectException
-     * @throws IncorrectObjectTypeException
-     * @throws CorruptObjectException
-     * @throws IOException
-     */
-    private boolean folderExistsInTree(String filePath, ObjectReader objectReader, RevObject commitRevTree)
-        throws MissingObjectException,
-            IncorrectObjectTypeException,
-            CorruptObjectException,
-            IOException
-    {
-        TreeWalk folder = null;
-        try
-        {
-            /* Check the tree walk object for the folder */
-            folder = TreeWalk.forPath(objectReader, filePath, commitRevTree);
-
-            /* if the folder exists the treewalk object will not be null */
-            return folder != null;
-        }
-        finally
-        {
-            if (folder != null)
-            {
-                folder.release();
-            }
-        }
-    }
 }
@@ -0,0 +1,148 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.util.Check;
+
+/**
+ * Analyzes the commits of a sequence of pend difference tasks on a background
+ * thread, a bounded number of tasks ahead of the one being pended and checked
+ * in. The analysis only reads the git repository, so it does not depend on
+ * the result of checking in the previous commits.
+ * 
+ * The analyses run one at a time, in order, so the tasks may share a
+ * {@link CaseCollisionValidator}.
+ * 
+ */
+public class CheckinAnalysisPipeline
+{
+    private final List<PendDifferenceTask> tasks;
+    private final int lookahead;
+    private final ExecutorService executor;
+
+    private final List<Future<CheckinAnalysisChangeCollection>> analyses;
+
+    /**
+     * Constructor
+     * 
+     * @param tasks
+     *        the tasks to analyze, in the order they will be run
+     * @param lookahead
+     *        the number of tasks to analyze ahead of the task being run
+     */
+    public CheckinAnalysisPipeline(final List<PendDifferenceTask> tasks, final int lookahead)
+    {
+        Check.notNull(tasks, "tasks"); //$NON-NLS-1$
+        Check.isTrue(lookahead >= 0, "lookahead >= 0"); //$NON-NLS-1$
+
+        this.tasks = new ArrayList<PendDifferenceTask>(tasks);
+        this.lookahead = lookahead;
+        this.executor = Executors.newSingleThreadExecutor();
+        this.analyses = new ArrayList<Future<CheckinAnalysisChangeCollection>>(tasks.size());
+    }
+
+    /**
+     * Waits for the analysis of the task specified and hands it to the task,
+     * then starts analyzing the tasks that follow up to the lookahead. Tasks
+     * must be requested in order.
+     * 
+     * @param index
+     *        the index of the task about to be run
+     * @return the task, ready to be run
+     * @throws Exception
+     *         the error that occurred while analyzing the task
+     */
+    public PendDifferenceTask getTask(final int index)
+        throws Exception
+    {
+        Check.isTrue(index >= 0 && index < tasks.size(), "index"); //$NON-NLS-1$
+
+        for (int toAnalyze = analyses.size(); toAnalyze <= Math.min(index + lookahead, tasks.size() - 1); toAnalyze++)
+        {
+            final PendDifferenceTask task = tasks.get(toAnalyze);
+
+            analyses.add(executor.submit(new Callable<CheckinAnalysisChangeCollection>()
+            {
+                public CheckinAnalysisChangeCollection call()
+                    throws Exception
+                {
+                    return task.analyze(new NullTaskProgressMonitor());
+                }
+            }));
+        }
+
+        final PendDifferenceTask task = tasks.get(index);
+
+        try
+        {
+            task.setAnalysis(analyses.get(index).get());
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+            {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+        finally
+        {
+            /* Do not hold on to the tasks that were handed out */
+            tasks.set(index, null);
+            analyses.set(index, null);
+        }
+
+        return task;
+    }
+
+    /**
+     * Cancels the analyses that have not completed yet
+     */
+    public void close()
+    {
+        executor.shutdownNow();
+
+        try
+        {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
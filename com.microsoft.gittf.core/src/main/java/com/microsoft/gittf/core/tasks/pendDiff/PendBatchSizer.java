@@ -0,0 +1,125 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import com.microsoft.gittf.core.util.Check;
+
+/**
+ * Decides how many changes are sent to the server in a single pend request.
+ * The batch size doubles while requests complete quickly and is halved when a
+ * request takes long, so that a fast server is sent a few large requests
+ * while a slow or throttled server is sent smaller ones. The batch size never
+ * exceeds the configured maximum.
+ * 
+ */
+public class PendBatchSizer
+{
+    /**
+     * Requests that complete faster than this grow the batch size
+     */
+    public static final long FAST_REQUEST_MILLIS = 1000;
+
+    /**
+     * Requests that take longer than this shrink the batch size
+     */
+    public static final long SLOW_REQUEST_MILLIS = 5000;
+
+    private final int maxBatchSize;
+    private final boolean adaptive;
+
+    private int batchSize;
+
+    /**
+     * Creates a batch sizer that always uses the same batch size
+     * 
+     * @param batchSize
+     *        the number of changes to send in a single request
+     */
+    public PendBatchSizer(final int batchSize)
+    {
+        Check.isTrue(batchSize > 0, "batchSize > 0"); //$NON-NLS-1$
+
+        this.batchSize = batchSize;
+        this.maxBatchSize = batchSize;
+        this.adaptive = false;
+    }
+
+    /**
+     * Creates a batch sizer that adapts the batch size to the time requests
+     * take
+     * 
+     * @param initialBatchSize
+     *        the number of changes to send in the first request
+     * @param maxBatchSize
+     *        the maximum number of changes to send in a single request
+     */
+    public PendBatchSizer(final int initialBatchSize, final int maxBatchSize)
+    {
+        Check.isTrue(initialBatchSize > 0, "initialBatchSize > 0"); //$NON-NLS-1$
+        Check.isTrue(maxBatchSize > 0, "maxBatchSize > 0"); //$NON-NLS-1$
+
+        this.batchSize = Math.min(initialBatchSize, maxBatchSize);
+        this.maxBatchSize = maxBatchSize;
+        this.adaptive = true;
+    }
+
+    /**
+     * @return the number of changes to send in the next request
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * Records the time a request took and adjusts the batch size
+     * 
+     * @param changeCount
+     *        the number of changes sent in the request
+     * @param elapsedMillis
+     *        the time the request took in milliseconds
+     */
+    public void requestCompleted(final int changeCount, final long elapsedMillis)
+    {
+        if (!adaptive)
+        {
+            return;
+        }
+
+        if (elapsedMillis > SLOW_REQUEST_MILLIS)
+        {
+            batchSize = Math.max(1, Math.min(batchSize, changeCount) / 2);
+        }
+        else if (elapsedMillis < FAST_REQUEST_MILLIS && changeCount >= batchSize)
+        {
+            /*
+             * Only a full batch tells us that the server handles the current
+             * batch size quickly.
+             */
+            batchSize = (int) Math.min((long) batchSize * 2, maxBatchSize);
+        }
+    }
+}
@@ -24,17 +24,16 @@
 
 package com.microsoft.gittf.core.tasks.pendDiff;
 
-import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
-import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
-
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -43,6 +42,7 @@ import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.RenameDetector;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevObject;
@@ -51,6 +51,7 @@ import org.eclipse.jgit.treewalk.NameConflictTreeWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
+import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
 import com.microsoft.gittf.core.config.GitTFConfiguration;
 import com.microsoft.gittf.core.interfaces.WorkspaceService;
@@ -89,8 +90,6 @@ public class PendDifferenceTask
      */
     public static final int NOTHING_TO_PEND = 1;
 
-    private final int MAX_CHANGES_TO_SEND;
-
     private final static Log log = LogFactory.getLog(PendDifferenceTask.class);
 
     private final Repository repository;
@@ -102,10 +101,18 @@ public class PendDifferenceTask
 
     private final GitTFConfiguration configuration;
 
+    private final PendBatchSizer batchSizer;
+
     private RenameMode renameMode = RenameMode.JUSTFILES;
 
     private PendingChange[] pendingChanges;
 
+    private WorkingFolderExtractor extractor;
+
+    private CaseCollisionValidator caseCollisionValidator;
+
+    private CheckinAnalysisChangeCollection precomputedAnalysis;
+
     private boolean validated = false;
 
     /**
@@ -144,8 +151,6 @@ public class PendDifferenceTask
             localWorkingFolder.exists() && localWorkingFolder.isDirectory(),
             "localWorkingFolder.exists && localWorkingFolder.isDirectory"); //$NON-NLS-1$
 
-        MAX_CHANGES_TO_SEND = getMaxChangesToSend();
-
         this.repository = repository;
         this.commitFrom = commitFrom;
         this.commitTo = commitTo;
@@ -155,6 +160,17 @@ public class PendDifferenceTask
 
         this.configuration = GitTFConfiguration.loadFrom(repository);
         Check.notNull(this.configuration, "configuration"); //$NON-NLS-1$
+
+        /*
+         * A batch size set in the environment is used as is, otherwise the
+         * batch size adapts to the server up to the configured maximum.
+         */
+        final int maxChangesToSend = getMaxChangesToSend();
+
+        this.batchSizer =
+            maxChangesToSend > 0 ? new PendBatchSizer(maxChangesToSend) : new PendBatchSizer(
+                GitTFConstants.GIT_TF_INITIAL_PEND_BATCH_SIZE,
+                configuration.getPendBatchSize());
     }
 
     /**
@@ -178,6 +194,30 @@ public class PendDifferenceTask
         this.renameMode = renameMode;
     }
 
+    /**
+     * Sets the validator used to find items that only differ in case. Sharing
+     * a validator between the tasks that pend a sequence of commits avoids
+     * checking the trees that did not change between the commits again.
+     * 
+     * @param caseCollisionValidator
+     */
+    public void setCaseCollisionValidator(CaseCollisionValidator caseCollisionValidator)
+    {
+        this.caseCollisionValidator = caseCollisionValidator;
+    }
+
+    /**
+     * Sets the analysis of the differences between the two commits when it
+     * was already computed by {@link #analyze(TaskProgressMonitor)}, the task
+     * will then only pend the changes
+     * 
+     * @param analysis
+     */
+    public void setAnalysis(CheckinAnalysisChangeCollection analysis)
+    {
+        this.precomputedAnalysis = analysis;
+    }
+
     @Override
     public TaskStatus run(final TaskProgressMonitor progressMonitor)
     {
@@ -220,41 +260,12 @@ public class PendDifferenceTask
         progressMonitor.worked(5);
         progressMonitor.setDetail(null);
 
-        /* Get the RevTree objects for the to and from commits */
-        RevTree fromTree = (commitFrom != null) ? commitFrom.getTree() : null;
-        RevTree toTree = commitTo.getTree();
-        Check.notNull(toTree, "toTree"); //$NON-NLS-1$
-
         final TaskProgressMonitor analyzeMonitor = progressMonitor.newSubTask(75);
         final CheckinAnalysisChangeCollection analysis;
 
         try
         {
-            log.debug("Validate the commit tree objects for any violations"); //$NON-NLS-1$
-
-            /* Validate the commit tree objects for any violations */
-            validate();
-
-            /*
-             * If we are comparing two commits analyze the difference between
-             * both commits
-             */
-            if (fromTree != null)
-            {
-                log.debug("Analyzing differences"); //$NON-NLS-1$
-
-                analysis = analyzeDifferences(repository, fromTree, toTree, renameMode, analyzeMonitor);
-            }
-            /*
-             * Otherwise we need to create ADD changes for all the items in the
-             * tree
-             */
-            else
-            {
-                log.debug("Analyzing entire tree to pend ADDs"); //$NON-NLS-1$
-
-                analysis = analyzeTree(repository, toTree, analyzeMonitor);
-            }
+            analysis = precomputedAnalysis != null ? precomputedAnalysis : analyze(analyzeMonitor);
         }
         catch (Exception e)
         {
@@ -301,6 +312,50 @@ public class PendDifferenceTask
         return TaskStatus.OK_STATUS;
     }
 
+    /**
+     * Validates the commits and analyzes the differences between them. Only
+     * the git repository is read, so this can run ahead of pending the changes
+     * of the previous commits.
+     * 
+     * @param progressMonitor
+     *        the progress monitor to use to report progress
+     * @return the changes that need to be pended
+     * @throws Exception
+     */
+    public CheckinAnalysisChangeCollection analyze(final TaskProgressMonitor progressMonitor)
+        throws Exception
+    {
+        /* Get the RevTree objects for the to and from commits */
+        RevTree fromTree = (commitFrom != null) ? commitFrom.getTree() : null;
+        RevTree toTree = commitTo.getTree();
+        Check.notNull(toTree, "toTree"); //$NON-NLS-1$
+
+        log.debug("Validate the commit tree objects for any violations"); //$NON-NLS-1$
+
+        /* Validate the commit tree objects for any violations */
+        validate();
+
+        /*
+         * If we are comparing two commits analyze the difference between both
+         * commits
+         */
+        if (fromTree != null)
+        {
+            log.debug("Analyzing differences"); //$NON-NLS-1$
+
+            return analyzeDifferences(repository, fromTree, toTree, renameMode, progressMonitor);
+        }
+        /*
+         * Otherwise we need to create ADD changes for all the items in the tree
+         */
+        else
+        {
+            log.debug("Analyzing entire tree to pend ADDs"); //$NON-NLS-1$
+
+            return analyzeTree(repository, toTree, progressMonitor);
+        }
+    }
+
     /**
      * Runs all the validations required on the source and destination commits
      * 
@@ -343,48 +398,18 @@ public class PendDifferenceTask
     private void validateCaseSensitivityRequirements(RevCommit commit)
         throws Exception
     {
-        /* Create a tree walker */
-        RevTree tree = commit.getTree();
-        final TreeWalk treeWalker = new NameConflictTreeWalk(repository);
-
-        try
+        if (caseCollisionValidator == null)
         {
-            treeWalker.addTree(tree);
-            treeWalker.setFilter(TreeFilter.ALL);
-
-            /*
-             * Build a list of items in the tree in a hash set for quicker
-             * lookup
-             */
-            Set<String> existingTreeItems = new HashSet<String>();
-
-            /* Walk the tree looking for duplicates in the tree */
-            while (treeWalker.next())
-            {
-                String pathString = treeWalker.getPathString().toLowerCase();
-
-                if (existingTreeItems.contains(pathString))
-                {
-                    throw new Exception(
-                        Messages.formatString(
-                            "PendDifferenceTask.SimilarItemWithDifferentCaseInCommitFormat", pathString, ObjectIdUtil.abbreviate(repository, commit.getId()))); //$NON-NLS-1$
-                }
+            caseCollisionValidator = new CaseCollisionValidator(repository);
+        }
 
-                existingTreeItems.add(pathString);
+        String pathString = caseCollisionValidator.findCollision(commit.getTree());
 
-                int objectType = treeWalker.getFileMode(0).getObjectType();
-                if (objectType == OBJ_TREE)
-                {
-                    treeWalker.enterSubtree();
-                }
-            }
-        }
-        finally
+        if (pathString != null)
         {
-            if (treeWalker != null)
-            {
-                treeWalker.release();
-            }
+            throw new Exception(
+                Messages.formatString(
+                    "PendDifferenceTask.SimilarItemWithDifferentCaseInCommitFormat", pathString, ObjectIdUtil.abbreviate(repository, commit.getId()))); //$NON-NLS-1$
         }
     }
 
@@ -482,21 +507,30 @@ public class PendDifferenceTask
                 }
             }
 
+            /*
+             * The differences come from a tree walk and carry complete ids,
+             * resolving them through the walker's reader does not need to query
+             * the object database
+             */
+            final ObjectReader objectReader = treeWalker.getObjectReader();
+
             /* Append each change in to the analysis object */
             for (DiffEntry change : treeDifferences)
             {
+                ObjectId newObjectId;
+
                 switch (change.getChangeType())
                 {
                     case ADD:
                     case COPY:
                         if (!isCaseSensitiveRename(change, deleteChanges, addChanges))
                         {
-                            analysis.pendAdd(new AddChange(change.getNewPath(), CommitUtil.resolveAbbreviatedId(
-                                repository,
-                                change.getNewId())));
+                            newObjectId = CommitUtil.resolveAbbreviatedId(objectReader, change.getNewId());
+
+                            analysis.pendAdd(new AddChange(change.getNewPath(), newObjectId));
                             analysis.pendPropertyIfChanged(new PropertyChange(
                                 change.getNewPath(),
-                                CommitUtil.resolveAbbreviatedId(repository, change.getNewId()),
+                                newObjectId,
                                 change.getNewMode()));
                         }
                         break;
@@ -506,14 +540,16 @@ public class PendDifferenceTask
                         {
                             DiffEntry addChange = addChanges.get(change.getOldPath().toUpperCase());
 
+                            newObjectId = CommitUtil.resolveAbbreviatedId(objectReader, addChange.getNewId());
+
                             analysis.pendRename(new RenameChange(
                                 change.getOldPath(),
                                 addChange.getNewPath(),
-                                CommitUtil.resolveAbbreviatedId(repository, addChange.getNewId()),
+                                newObjectId,
                                 !change.getOldId().equals(addChange.getNewId())));
                             analysis.pendPropertyIfChanged(new PropertyChange(
                                 addChange.getNewPath(),
-                                CommitUtil.resolveAbbreviatedId(repository, addChange.getNewId()),
+                                newObjectId,
                                 change.getOldMode(),
                                 addChange.getNewMode()));
                         }
@@ -524,25 +560,36 @@ public class PendDifferenceTask
                         break;
 
                     case MODIFY:
-                        analysis.pendEdit(new EditChange(change.getNewPath(), CommitUtil.resolveAbbreviatedId(
-                            repository,
-                            change.getNewId())));
-                        analysis.pendPropertyIfChanged(new PropertyChange(
-                            change.getNewPath(),
-                            CommitUtil.resolveAbbreviatedId(repository, change.getNewId()),
-                            change.getOldMode(),
-                            change.getNewMode()));
+                        final PropertyChange propertyChange =
+                            new PropertyChange(
+                                change.getNewPath(),
+                                CommitUtil.resolveAbbreviatedId(objectReader, change.getNewId()),
+                                change.getOldMode(),
+                                change.getNewMode());
+
+                        /*
+                         * If only the executable bit has changed there is no
+                         * content to upload, the property change is enough.
+                         */
+                        if (!change.getOldId().equals(change.getNewId()) || !propertyChange.isPropertyChanged())
+                        {
+                            analysis.pendEdit(new EditChange(change.getNewPath(), propertyChange.getObjectID()));
+                        }
+
+                        analysis.pendPropertyIfChanged(propertyChange);
                         break;
 
                     case RENAME:
+                        newObjectId = CommitUtil.resolveAbbreviatedId(objectReader, change.getNewId());
+
                         analysis.pendRename(new RenameChange(
                             change.getOldPath(),
                             change.getNewPath(),
-                            CommitUtil.resolveAbbreviatedId(repository, change.getNewId()),
+                            newObjectId,
                             !change.getOldId().equals(change.getNewId())));
                         analysis.pendPropertyIfChanged(new PropertyChange(
                             change.getNewPath(),
-                            CommitUtil.resolveAbbreviatedId(repository, change.getNewId()),
+                            newObjectId,
                             change.getOldMode(),
                             change.getNewMode()));
                 }
@@ -672,8 +719,12 @@ public class PendDifferenceTask
 
         WorkspaceOperationErrorListener errorListener = null;
 
+        extractor = new WorkingFolderExtractor(repository, localWorkingFolder, GitTFConstants.GIT_TF_EXTRACT_THREADS);
+
         try
         {
+            removeStaleItems(analysis);
+
             errorListener = workspace.getErrorListener();
 
             /* Pend Renames */
@@ -724,10 +775,113 @@ public class PendDifferenceTask
                 errorListener.dispose();
             }
 
+            extractor.close();
+            extractor = null;
+
             progressMonitor.endTask();
         }
     }
 
+    /**
+     * The working folder is reused between the commits of a check-in and
+     * still holds the items extracted for the previous commits. Removes the
+     * items that this commit deletes or renames away, the items it adds or
+     * edits are overwritten when they are extracted.
+     * 
+     * @param analysis
+     *        the collection of changes to pend
+     * @throws IOException
+     */
+    private void removeStaleItems(final CheckinAnalysisChangeCollection analysis)
+        throws IOException
+    {
+        for (final DeleteChange delete : analysis.getDeletes())
+        {
+            extractor.remove(delete.getPath());
+        }
+
+        for (final RenameChange rename : analysis.getRenames())
+        {
+            extractor.remove(rename.getOldPath());
+        }
+    }
+
+    /**
+     * Pends the changes specified in chunks sized by the batch sizer.
+     * 
+     * @param changes
+     *        the changes to pend
+     * @param chunkPender
+     *        pends a chunk of changes
+     * @throws Exception
+     */
+    private <T> void pendChunks(final List<T> changes, final ChunkPender<T> chunkPender)
+        throws Exception
+    {
+        int start = 0;
+
+        while (start < changes.size())
+        {
+            final List<T> chunk = changes.subList(start, Math.min(start + batchSizer.getBatchSize(), changes.size()));
+
+            pendChunk(chunk, chunkPender);
+            start += chunk.size();
+        }
+    }
+
+    /**
+     * Pends the changes specified in chunks sized by the batch sizer. The
+     * content of each chunk is extracted to the working folder while the
+     * previous chunk is being pended on the server.
+     * 
+     * @param changes
+     *        the changes to pend
+     * @param chunkPender
+     *        pends a chunk of changes whose content has been extracted
+     * @throws Exception
+     */
+    private <T extends Change> void pendExtractedChunks(final List<T> changes, final ChunkPender<T> chunkPender)
+        throws Exception
+    {
+        List<T> chunk = null;
+        WorkingFolderExtractor.Extraction extraction = null;
+
+        int start = 0;
+
+        while (start < changes.size())
+        {
+            final List<T> nextChunk =
+                changes.subList(start, Math.min(start + batchSizer.getBatchSize(), changes.size()));
+            final WorkingFolderExtractor.Extraction nextExtraction = extractor.extract(nextChunk);
+
+            if (chunk != null)
+            {
+                extraction.waitFor();
+                pendChunk(chunk, chunkPender);
+            }
+
+            chunk = nextChunk;
+            extraction = nextExtraction;
+            start += nextChunk.size();
+        }
+
+        if (chunk != null)
+        {
+            extraction.waitFor();
+            pendChunk(chunk, chunkPender);
+        }
+    }
+
+    private <T> void pendChunk(final List<T> chunk, final ChunkPender<T> chunkPender)
+        throws Exception
+    {
+        final long start = System.currentTimeMillis();
+
+        chunkPender.pend(chunk);
+
+        batchSizer.requestCompleted(chunk.size(), System.currentTimeMillis() - start);
+    }
+
     /**
      * Pends the deletes in the CheckinAnalysisChangeCollection
      * 
@@ -742,20 +896,14 @@ public class PendDifferenceTask
         final WorkspaceOperationErrorListener errorListener)
         throws Exception
     {
-        final List<DeleteChange> deletesChunk = new ArrayList<DeleteChange>();
-
-        for (final DeleteChange delete : analysis.getDeletes())
+        pendChunks(analysis.getDeletes(), new ChunkPender<DeleteChange>()
         {
-            if (deletesChunk.size() == MAX_CHANGES_TO_SEND)
+            public void pend(final List<DeleteChange> deletesChunk)
+                throws Exception
             {
                 pendDeletesInt(deletesChunk, errorListener);
-                deletesChunk.clear();
             }
-
-            deletesChunk.add(delete);
-        }
-
-        pendDeletesInt(deletesChunk, errorListener);
+        });
     }
 
     private void pendDeletesInt(final List<DeleteChange> deletes, final WorkspaceOperationErrorListener errorListener)
@@ -815,20 +963,48 @@ public class PendDifferenceTask
         final WorkspaceOperationErrorListener errorListener)
         throws Exception
     {
-        final List<EditChange> editsChunk = new ArrayList<EditChange>();
+        final List<EditChange> edits = new ArrayList<EditChange>(analysis.getEdits());
 
-        for (final EditChange edit : analysis.getEdits())
+        /*
+         * Servers that do not support properties cannot record a change of
+         * the executable bit alone, such items are pended as edits instead.
+         */
+        if (!supportsProperties())
         {
-            if (editsChunk.size() == MAX_CHANGES_TO_SEND)
+            final Set<String> changedPaths = new HashSet<String>();
+
+            for (final Change change : analysis.getEdits())
             {
-                pendEditsInt(editsChunk, errorListener);
-                editsChunk.clear();
+                changedPaths.add(change.getPath());
             }
 
-            editsChunk.add(edit);
+            for (final Change change : analysis.getAdds())
+            {
+                changedPaths.add(change.getPath());
+            }
+
+            for (final Change change : analysis.getRenames())
+            {
+                changedPaths.add(change.getPath());
+            }
+
+            for (final PropertyChange property : analysis.getProperties())
+            {
+                if (!changedPaths.contains(property.getPath()))
+                {
+                    edits.add(new EditChange(property.getPath(), property.getObjectID()));
+                }
+            }
         }
 
-        pendEditsInt(editsChunk, errorListener);
+        pendExtractedChunks(edits, new ChunkPender<EditChange>()
+        {
+            public void pend(final List<EditChange> editsChunk)
+                throws Exception
+            {
+                pendEditsInt(editsChunk, errorListener);
+            }
+        });
     }
 
     private void pendEditsInt(final List<EditChange> edits, final WorkspaceOperationErrorListener errorListener)
@@ -851,8 +1027,6 @@ public class PendDifferenceTask
         {
             log.debug(MessageFormat.format("    {0}", edit.getPath())); //$NON-NLS-1$
 
-            extractToWorkingFolder(edit.getPath(), edit.getObjectID());
-
             editSpecs.add(new ItemSpec(ServerPath.combine(serverPathRoot, edit.getPath()), RecursionType.NONE));
             lockLevels.add(LockLevel.NONE);
         }
@@ -894,25 +1068,24 @@ public class PendDifferenceTask
         final WorkspaceOperationErrorListener errorListener)
         throws Exception
     {
-        if (workspace.getServiceLevel().getValue() < WebServiceLevel.TFS_2012.getValue())
+        if (!supportsProperties())
         {
             return;
         }
 
-        final List<PropertyChange> propertiesChunk = new ArrayList<PropertyChange>();
-
-        for (final PropertyChange property : analysis.getProperties())
+        /*
+         * Property changes do not upload any content: items whose content has
+         * changed as well have already been extracted for their add, edit or
+         * rename.
+         */
+        pendChunks(analysis.getProperties(), new ChunkPender<PropertyChange>()
         {
-            if (propertiesChunk.size() == MAX_CHANGES_TO_SEND)
+            public void pend(final List<PropertyChange> propertiesChunk)
+                throws Exception
             {
                 pendPropertiessInt(propertiesChunk, errorListener);
-                propertiesChunk.clear();
             }
-
-            propertiesChunk.add(property);
-        }
-
-        pendPropertiessInt(propertiesChunk, errorListener);
+        });
     }
 
     private void pendPropertiessInt(
@@ -931,13 +1104,17 @@ public class PendDifferenceTask
 
         log.debug(MessageFormat.format("Sending PROPERTIES changes for {0} files:", propertiesCount)); //$NON-NLS-1$
 
-        /* Build the adds item spec */
+        /*
+         * Group the items that get the same property values, each group is
+         * pended in a single request
+         */
+        final Map<List<PropertyValue>, List<String>> pathsByProperties =
+            new LinkedHashMap<List<PropertyValue>, List<String>>();
+
         for (int i = 0; i < propertiesCount; i++)
         {
             final PropertyChange propertyChange = propertyChanges.get(i);
 
-            extractToWorkingFolder(propertyChange.getPath(), propertyChange.getObjectID());
-
             final String path = ServerPath.combine(serverPathRoot, propertyChange.getPath());
 
             final List<PropertyValue> properties = new ArrayList<PropertyValue>();
@@ -948,25 +1125,46 @@ public class PendDifferenceTask
                 properties.add(propertyChange.getExecutablePropertyValue());
             }
 
-            /* Pend the property change in the workspace */
+            List<String> paths = pathsByProperties.get(properties);
+
+            if (paths == null)
+            {
+                paths = new ArrayList<String>();
+                pathsByProperties.put(properties, paths);
+            }
+
+            paths.add(path);
+        }
+
+        for (final Entry<List<PropertyValue>, List<String>> group : pathsByProperties.entrySet())
+        {
+            final List<PropertyValue> properties = group.getKey();
+            final List<String> paths = group.getValue();
+
+            /* Pend the property changes in the workspace */
             final int count =
                 workspace.pendPropertyChange(
-                    path,
+                    paths.toArray(new String[paths.size()]),
                     properties.toArray(new PropertyValue[properties.size()]),
                     RecursionType.NONE,
                     LockLevel.NONE);
 
-            /* Validate that the adds have been pended correctly */
+            /* Validate that the property changes have been pended correctly */
             errorListener.validate();
 
-            if (count != 1)
+            if (count != paths.size())
             {
-                log.error(MessageFormat.format("Server added {0} EDIT changes instead of {1}", count, propertiesCount)); //$NON-NLS-1$
+                log.error(MessageFormat.format("Server added {0} PROPERTY changes instead of {1}", count, paths.size())); //$NON-NLS-1$
                 throw new Exception(Messages.getString("PendDifferencesTask.PendFailed")); //$NON-NLS-1$
             }
         }
     }
 
+    private boolean supportsProperties()
+    {
+        return workspace.getServiceLevel().getValue() >= WebServiceLevel.TFS_2012.getValue();
+    }
+
     private PropertyValue createBooleanProperty(final String key, final boolean value)
     {
         return new PropertyValue(key, (value ? "true" : "false")); //$NON-NLS-1$ //$NON-NLS-2$
@@ -1028,20 +1226,14 @@ public class PendDifferenceTask
     private void pendBatchRenames(final List<RenameChange> renames, final WorkspaceOperationErrorListener errorListener)
         throws Exception
     {
-        final List<RenameChange> renamesChunk = new ArrayList<RenameChange>();
-
-        for (final RenameChange rename : renames)
+        pendChunks(renames, new ChunkPender<RenameChange>()
         {
-            if (renamesChunk.size() == MAX_CHANGES_TO_SEND)
+            public void pend(final List<RenameChange> renamesChunk)
+                throws Exception
             {
                 pendBatchRenamesInt(renamesChunk, errorListener);
-                renamesChunk.clear();
             }
-
-            renamesChunk.add(rename);
-        }
-
-        pendBatchRenamesInt(renamesChunk, errorListener);
+        });
     }
 
     private void pendBatchRenamesInt(
@@ -1151,16 +1343,20 @@ public class PendDifferenceTask
                 throw new Exception(Messages.getString("PendDifferencesTask.PendFailed")); //$NON-NLS-1$
             }
 
+            final List<RenameChange> editRenames = new ArrayList<RenameChange>();
+
             for (int i = 0; i < renames.size(); i++)
             {
                 final RenameChange rename = renames.get(i);
 
                 if (rename.isEdit())
                 {
-                    extractToWorkingFolder(rename.getNewPath(), rename.getObjectID());
+                    editRenames.add(rename);
                 }
             }
 
+            extractor.extract(editRenames).waitFor();
+
             log.debug(MessageFormat.format("Sending EDIT changes for {0} files:", editSpecs.size())); //$NON-NLS-1$
 
             for (int i = 0; i < editSpecs.size(); i++)
@@ -1204,20 +1400,14 @@ public class PendDifferenceTask
         final WorkspaceOperationErrorListener errorListener)
         throws Exception
     {
-        final List<AddChange> addsChunk = new ArrayList<AddChange>();
-
-        for (final AddChange add : analysis.getAdds())
+        pendExtractedChunks(analysis.getAdds(), new ChunkPender<AddChange>()
         {
-            if (addsChunk.size() == MAX_CHANGES_TO_SEND)
+            public void pend(final List<AddChange> addsChunk)
+                throws Exception
             {
                 pendAddsInt(addsChunk, errorListener);
-                addsChunk.clear();
             }
-
-            addsChunk.add(add);
-        }
-
-        pendAddsInt(addsChunk, errorListener);
+        });
     }
 
     private void pendAddsInt(final List<AddChange> adds, final WorkspaceOperationErrorListener errorListener)
@@ -1240,8 +1430,6 @@ public class PendDifferenceTask
         {
             final AddChange add = adds.get(i);
 
-            extractToWorkingFolder(add.getPath(), add.getObjectID());
-
             addPaths[i] = ServerPath.combine(serverPathRoot, add.getPath());
             log.debug(MessageFormat.format("    {0}", addPaths[i])); //$NON-NLS-1$
         }
@@ -1261,64 +1449,15 @@ public class PendDifferenceTask
     }
 
     /**
-     * Extracts an item for the git repository to the path specified. This is
-     * used to extract files whose content have changed and will need to be
-     * uploaded to pend an edit for
+     * Gets the fixed number of changes to send in a single request from the
+     * environment
      * 
-     * @param itemPath
-     *        the path on disk to extract the item to
-     * @param objectID
-     *        the object id of the blob to extract to the file
-     * @throws Exception
+     * @return the number of changes, or -1 if none is set in the environment
      */
-    private void extractToWorkingFolder(String itemPath, ObjectId objectID)
-        throws Exception
-    {
-        /* Ensure that the location exits */
-        File workingFile = new File(localWorkingFolder, itemPath);
-
-        File parentDir = workingFile.getParentFile();
-        boolean parentDirExist = parentDir.exists();
-        if (!parentDirExist)
-        {
-            parentDirExist = parentDir.mkdirs();
-        }
-
-        if (!parentDirExist)
-        {
-            throw new Exception(Messages.formatString(
-                "PendDifferenceTask.CouldNotCreateItemPathFormat", parentDir.getAbsolutePath())); //$NON-NLS-1$
-        }
-
-        if (workingFile.exists())
-        {
-            workingFile.delete();
-        }
-
-        /* Extract the item from git */
-        FileOutputStream workingOutput = new FileOutputStream(workingFile);
-
-        try
-        {
-            /* Copy the blob from the object database to the file */
-            repository.getObjectDatabase().open(objectID, OBJ_BLOB).copyTo(workingOutput);
-
-            if (!workingFile.exists())
-            {
-                throw new Exception(Messages.formatString("PendDifferenceTask.CouldNotCreateItemFormat", itemPath)); //$NON-NLS-1$
-            }
-        }
-        finally
-        {
-            workingOutput.close();
-        }
-    }
-
     private static int getMaxChangesToSend()
     {
         final String MAX_CHANGES_TO_PEND_NAME = "GITTF_MAX_CHANGES"; //$NON-NLS-1$
         final String MAX_CHANGES_TO_PEND_NAME_ALTERNATE = "gittf_max_changes"; //$NON-NLS-1$
-        final int DEFAULT_MAX_CHANGES_TO_PEND = 10;
 
         int count = -1;
 
@@ -1341,6 +1480,15 @@ public class PendDifferenceTask
         {
         }
 
-        return count > 0 ? count : DEFAULT_MAX_CHANGES_TO_PEND;
+        return count > 0 ? count : -1;
+    }
+
+    /**
+     * Pends a chunk of changes in the workspace
+     */
+    private interface ChunkPender<T>
+    {
+        void pend(List<T> chunk)
+            throws Exception;
     }
 }
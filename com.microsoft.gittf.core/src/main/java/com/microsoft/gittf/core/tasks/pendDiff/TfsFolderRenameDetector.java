@@ -26,7 +26,6 @@ package com.microsoft.gittf.core.tasks.pendDiff;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,10 +36,8 @@ import org.eclipse.jgit.errors.CorruptObjectException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.treewalk.TreeWalk;
 
 import com.microsoft.gittf.core.util.RepositoryPath;
 import com.microsoft.tfs.util.Check;
@@ -63,14 +60,12 @@ import com.microsoft.tfs.util.Check;
  */
 public class TfsFolderRenameDetector
 {
-    private final Repository repository;
-    private final RevObject targetTree;
-    private final RevObject sourceTree;
+    private final TreePathIndex sourceTreeIndex;
+    private final TreePathIndex targetTreeIndex;
     private final List<RenameChange> fileRenames;
 
     private Set<RenameChange> sortedFileRenames = new TreeSet<RenameChange>(new RenameChangeOldPathCompartor());
     private Map<String, RenameChange> processedRenames = new HashMap<String, RenameChange>();
-    private Set<String> processedOldPaths = new TreeSet<String>(Collections.reverseOrder());
 
     private List<RenameChange> resultRenames = new ArrayList<RenameChange>();
     private List<List<RenameChange>> resultBatchedRenames = new ArrayList<List<RenameChange>>();
@@ -81,9 +76,8 @@ public class TfsFolderRenameDetector
      */
     public TfsFolderRenameDetector()
     {
-        this.repository = null;
-        this.sourceTree = null;
-        this.targetTree = null;
+        this.sourceTreeIndex = null;
+        this.targetTreeIndex = null;
         this.fileRenames = new ArrayList<RenameChange>();
     }
 
@@ -104,15 +98,40 @@ public class TfsFolderRenameDetector
         RevObject sourceTree,
         RevObject targetTree,
         List<RenameChange> fileRenames)
+    {
+        this(repository, sourceTree, targetTree, fileRenames, null);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param repository
+     *        the git repository
+     * @param sourceTree
+     *        the source tree
+     * @param targetTree
+     *        the target tree
+     * @param fileRenames
+     *        the list of files that were renamed
+     * @param targetTreeIndex
+     *        an index of the target tree that was already built by the
+     *        caller, or null to build a new one
+     */
+    public TfsFolderRenameDetector(
+        Repository repository,
+        RevObject sourceTree,
+        RevObject targetTree,
+        List<RenameChange> fileRenames,
+        TreePathIndex targetTreeIndex)
     {
         Check.notNull(repository, "repository"); //$NON-NLS-1$
         Check.notNull(sourceTree, "sourceTree"); //$NON-NLS-1$
         Check.notNull(targetTree, "targetTree"); //$NON-NLS-1$
         Check.notNull(fileRenames, "fileRenames"); //$NON-NLS-1$
 
-        this.repository = repository;
-        this.sourceTree = sourceTree;
-        this.targetTree = targetTree;
+        this.sourceTreeIndex = new TreePathIndex(repository, sourceTree);
+        this.targetTreeIndex =
+            targetTreeIndex != null ? targetTreeIndex : new TreePathIndex(repository, targetTree);
         this.fileRenames = fileRenames;
     }
 
@@ -307,7 +326,7 @@ public class TfsFolderRenameDetector
             newPathToUse = newPath;
 
             /* If this path has already been renamed then ignore */
-            if (processedOldPaths.contains(oldPath))
+            if (processedRenames.containsKey(oldPath))
             {
                 return false;
             }
@@ -317,7 +336,7 @@ public class TfsFolderRenameDetector
              * old folder path does not exist in the target tree then this
              * folder can be renamed
              */
-            if (!folderExistsInTree(newPathToUse, sourceTree) && !folderExistsInTree(oldPathToUse, targetTree))
+            if (!sourceTreeIndex.exists(newPathToUse) && !targetTreeIndex.exists(oldPathToUse))
             {
                 addRenameToResult(oldPath, oldPathToUse, newPathToUse);
 
@@ -370,7 +389,7 @@ public class TfsFolderRenameDetector
      */
     private void ensureEditAccountedFor(RenameChange rename)
     {
-        if (processedOldPaths.contains(rename.getOldPath()))
+        if (processedRenames.containsKey(rename.getOldPath()))
         {
             processedRenames.get(rename.getOldPath()).updateEditInformation(rename.getObjectID());
         }
@@ -408,7 +427,7 @@ public class TfsFolderRenameDetector
      */
     private void addRenameToResult(String unprocessedOldPath, RenameChange rename)
     {
-        if (processedOldPaths.contains(rename.getOldPath()))
+        if (processedRenames.containsKey(rename.getOldPath()))
         {
             RenameChange addedRenameObject = processedRenames.get(rename.getOldPath());
             if (addedRenameObject.isEdit() != rename.isEdit())
@@ -420,7 +439,6 @@ public class TfsFolderRenameDetector
         }
 
         resultRenames.add(rename);
-        processedOldPaths.add(unprocessedOldPath);
         processedRenames.put(unprocessedOldPath, rename);
 
         addRenameToBatchedResult(rename);
@@ -487,76 +505,43 @@ public class TfsFolderRenameDetector
      */
     private String updateOldPathWithProcessed(String oldPath, String newPath)
     {
-        /* Loop over all the processed renames so far */
-        for (String processedPath : processedOldPaths)
+        /*
+         * Only renames of the old path itself or of one of its parents can
+         * apply, look them up starting with the deepest one so that the most
+         * specific rename wins
+         */
+        String processedPath = oldPath;
+        while (processedPath.length() > 0)
         {
-            /*
-             * if the processed rename is a parent of the old path then update
-             * the old path only if the new Path match the processed data
-             */
-            if (RepositoryPath.isAncestor(oldPath, processedPath))
-            {
-                RenameChange processedRename = processedRenames.get(processedPath);
+            RenameChange processedRename = processedRenames.get(processedPath);
 
-                if (RepositoryPath.isAncestor(newPath, processedRename.getNewPath()))
+            if (processedRename != null)
+            {
+                /*
+                 * if the processed rename is equal to the old path then update
+                 * the old path only if the new Path match the processed data
+                 */
+                if (processedPath.length() == oldPath.length())
                 {
-                    return processedRename.getNewPath() + oldPath.substring(processedPath.length());
+                    if (newPath.equals(processedRename.getNewPath()))
+                    {
+                        return processedRename.getNewPath();
+                    }
                 }
-            }
-
-            /*
-             * if the processed rename is equal to the old path then update the
-             * old path only if the new Path match the processed data
-             */
-            if (oldPath.equals(processedPath))
-            {
-                RenameChange processedRename = processedRenames.get(processedPath);
-
-                if (newPath.equals(processedRename.getNewPath()))
+                /*
+                 * if the processed rename is a parent of the old path then
+                 * update the old path only if the new Path match the processed
+                 * data
+                 */
+                else if (RepositoryPath.isAncestor(newPath, processedRename.getNewPath()))
                 {
-                    return processedRename.getNewPath();
+                    return processedRename.getNewPath() + oldPath.substring(processedPath.length());
                 }
             }
-        }
-
-        return oldPath;
-    }
 
-    /**
-     * Returns true if the folder path specifies exist in the tree
-     * 
-     * @param filePath
-     * @param commitRevTree
-     * @return
-     * @throws MissingObjectException
-     * @throws IncorrectObjectTypeException
-     * @throws CorruptObjectException
-     * @throws IOException
-     */
-    private boolean folderExistsInTree(String filePath, RevObject commitRevTree)
-        throws MissingObjectException,
-            IncorrectObjectTypeException,
-            CorruptObjectException,
-            IOException
-    {
-        ObjectReader objectReader = repository.newObjectReader();
-        TreeWalk folder = null;
-        try
-        {
-            folder = TreeWalk.forPath(objectReader, filePath, commitRevTree);
-            return folder != null;
+            processedPath = RepositoryPath.getParent(processedPath);
         }
-        finally
-        {
-            if (folder != null)
-            {
-                folder.release();
-            }
 
-            if (objectReader != null)
-            {
-                objectReader.release();
-            }
-        }
+        return oldPath;
     }
 }
@@ -0,0 +1,174 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.RepositoryPath;
+
+/**
+ * Answers whether a path exists in a git tree without walking the tree for
+ * every query. All the folders in the tree are indexed in a single walk the
+ * first time the index is queried; the file names of a folder are only read
+ * when a file path in that folder is queried.
+ * 
+ */
+public class TreePathIndex
+{
+    private final Repository repository;
+    private final AnyObjectId tree;
+
+    private Map<String, ObjectId> folders;
+    private final Map<String, Set<String>> folderFiles = new HashMap<String, Set<String>>();
+
+    /**
+     * Constructor
+     * 
+     * @param repository
+     *        the git repository
+     * @param tree
+     *        the tree to index
+     */
+    public TreePathIndex(final Repository repository, final AnyObjectId tree)
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+        Check.notNull(tree, "tree"); //$NON-NLS-1$
+
+        this.repository = repository;
+        this.tree = tree;
+    }
+
+    /**
+     * Determines if the path, either a folder or a file, exists in the tree
+     * 
+     * @param path
+     *        the repository path to look up
+     * @return true if the path exists in the tree
+     * @throws IOException
+     */
+    public boolean exists(final String path)
+        throws IOException
+    {
+        Check.notNullOrEmpty(path, "path"); //$NON-NLS-1$
+
+        if (folders == null)
+        {
+            folders = indexFolders();
+        }
+
+        if (folders.containsKey(path))
+        {
+            return true;
+        }
+
+        /* a file can only exist if its parent folder exists */
+        String parent = RepositoryPath.getParent(path);
+        ObjectId parentTree = parent.length() == 0 ? tree.copy() : folders.get(parent);
+
+        if (parentTree == null)
+        {
+            return false;
+        }
+
+        return getFileNames(parent, parentTree).contains(RepositoryPath.getFileName(path));
+    }
+
+    private Map<String, ObjectId> indexFolders()
+        throws IOException
+    {
+        Map<String, ObjectId> result = new HashMap<String, ObjectId>();
+
+        ObjectReader objectReader = repository.newObjectReader();
+        TreeWalk treeWalk = new TreeWalk(objectReader);
+        try
+        {
+            treeWalk.addTree(tree);
+            treeWalk.setRecursive(false);
+
+            while (treeWalk.next())
+            {
+                if (treeWalk.isSubtree())
+                {
+                    result.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+                    treeWalk.enterSubtree();
+                }
+            }
+        }
+        finally
+        {
+            treeWalk.release();
+            objectReader.release();
+        }
+
+        return result;
+    }
+
+    private Set<String> getFileNames(final String folder, final ObjectId folderTree)
+        throws IOException
+    {
+        Set<String> fileNames = folderFiles.get(folder);
+
+        if (fileNames == null)
+        {
+            fileNames = new HashSet<String>();
+
+            ObjectReader objectReader = repository.newObjectReader();
+            try
+            {
+                CanonicalTreeParser parser = new CanonicalTreeParser(null, objectReader, folderTree);
+
+                for (; !parser.eof(); parser.next())
+                {
+                    if (parser.getEntryFileMode() != FileMode.TREE)
+                    {
+                        fileNames.add(parser.getEntryPathString());
+                    }
+                }
+            }
+            finally
+            {
+                objectReader.release();
+            }
+
+            folderFiles.put(folder, fileNames);
+        }
+
+        return fileNames;
+    }
+}
@@ -0,0 +1,274 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.FileUtils;
+
+import com.microsoft.gittf.core.Messages;
+import com.microsoft.gittf.core.util.Check;
+
+/**
+ * Extracts the content of changed items from the git repository into the
+ * local working folder on a pool of threads, so that the next chunk of
+ * changes can be written to disk while the current chunk is being pended on
+ * the server. Each thread reads the blobs with its own object reader.
+ * 
+ */
+class WorkingFolderExtractor
+{
+    private final Repository repository;
+    private final File localWorkingFolder;
+    private final ExecutorService executor;
+
+    private final List<ObjectReader> readers = Collections.synchronizedList(new ArrayList<ObjectReader>());
+
+    private final ThreadLocal<ObjectReader> threadReader = new ThreadLocal<ObjectReader>()
+    {
+        @Override
+        protected ObjectReader initialValue()
+        {
+            final ObjectReader reader = repository.newObjectReader();
+            readers.add(reader);
+
+            return reader;
+        }
+    };
+
+    /**
+     * Constructor
+     * 
+     * @param repository
+     *        the git repository
+     * @param localWorkingFolder
+     *        the local working folder to extract items to
+     * @param threads
+     *        the number of items to extract concurrently
+     */
+    public WorkingFolderExtractor(final Repository repository, final File localWorkingFolder, final int threads)
+    {
+        Check.notNull(repository, "repository"); //$NON-NLS-1$
+        Check.notNull(localWorkingFolder, "localWorkingFolder"); //$NON-NLS-1$
+        Check.isTrue(threads > 0, "threads > 0"); //$NON-NLS-1$
+
+        this.repository = repository;
+        this.localWorkingFolder = localWorkingFolder;
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Starts extracting the content of the changes specified
+     * 
+     * @param changes
+     *        the changes whose content needs to be extracted
+     * @return the extraction to wait on before the changes are pended
+     */
+    public Extraction extract(final List<? extends Change> changes)
+    {
+        Check.notNull(changes, "changes"); //$NON-NLS-1$
+
+        final List<Future<Object>> extractions = new ArrayList<Future<Object>>(changes.size());
+
+        for (final Change change : changes)
+        {
+            extractions.add(executor.submit(new Callable<Object>()
+            {
+                public Object call()
+                    throws Exception
+                {
+                    extractToWorkingFolder(change.getPath(), change.getObjectID());
+                    return null;
+                }
+            }));
+        }
+
+        return new Extraction(extractions);
+    }
+
+    /**
+     * Removes an item extracted for a previous commit from the working folder,
+     * together with the folders it leaves empty. Folders are removed with their
+     * content.
+     * 
+     * @param itemPath
+     *        the path of the item to remove
+     * @throws IOException
+     */
+    public void remove(final String itemPath)
+        throws IOException
+    {
+        Check.notNullOrEmpty(itemPath, "itemPath"); //$NON-NLS-1$
+
+        final File workingFile = new File(localWorkingFolder, itemPath);
+
+        FileUtils.delete(workingFile, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+
+        /* Deleting a folder fails as long as it is not empty */
+        File parentDir = workingFile.getParentFile();
+        while (parentDir != null && !parentDir.equals(localWorkingFolder) && parentDir.delete())
+        {
+            parentDir = parentDir.getParentFile();
+        }
+    }
+
+    /**
+     * Cancels the extractions that have not completed yet and releases the
+     * object readers
+     */
+    public void close()
+    {
+        executor.shutdownNow();
+
+        try
+        {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (readers)
+        {
+            for (final ObjectReader reader : readers)
+            {
+                reader.release();
+            }
+
+            readers.clear();
+        }
+    }
+
+    /**
+     * Extracts an item for the git repository to the path specified. This is
+     * used to extract files whose content have changed and will need to be
+     * uploaded to pend an edit for. This is called on the extraction threads.
+     * 
+     * @param itemPath
+     *        the path on disk to extract the item to
+     * @param objectID
+     *        the object id of the blob to extract to the file
+     * @throws Exception
+     */
+    private void extractToWorkingFolder(final String itemPath, final ObjectId objectID)
+        throws Exception
+    {
+        /* Ensure that the location exits */
+        final File workingFile = new File(localWorkingFolder, itemPath);
+
+        /*
+         * Another thread may be creating the same parent folder, so only fail
+         * if the folder does not exist afterwards.
+         */
+        final File parentDir = workingFile.getParentFile();
+        if (!parentDir.mkdirs() && !parentDir.isDirectory())
+        {
+            throw new Exception(Messages.formatString(
+                "PendDifferenceTask.CouldNotCreateItemPathFormat", parentDir.getAbsolutePath())); //$NON-NLS-1$
+        }
+
+        if (workingFile.exists())
+        {
+            workingFile.delete();
+        }
+
+        /* Extract the item from git */
+        final FileOutputStream workingOutput = new FileOutputStream(workingFile);
+
+        try
+        {
+            /* Copy the blob from the object database to the file */
+            threadReader.get().open(objectID, OBJ_BLOB).copyTo(workingOutput);
+
+            if (!workingFile.exists())
+            {
+                throw new Exception(Messages.formatString("PendDifferenceTask.CouldNotCreateItemFormat", itemPath)); //$NON-NLS-1$
+            }
+        }
+        finally
+        {
+            workingOutput.close();
+        }
+    }
+
+    /**
+     * The extraction of a chunk of changes
+     * 
+     */
+    public static class Extraction
+    {
+        private final List<Future<Object>> extractions;
+
+        private Extraction(final List<Future<Object>> extractions)
+        {
+            this.extractions = extractions;
+        }
+
+        /**
+         * Waits until the content of all the changes has been extracted
+         * 
+         * @throws Exception
+         *         the first error that occurred while extracting the changes
+         */
+        public void waitFor()
+            throws Exception
+        {
+            try
+            {
+                for (final Future<Object> extraction : extractions)
+                {
+                    extraction.get();
+                }
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof Exception)
+                {
+                    throw (Exception) e.getCause();
+                }
+
+                throw e;
+            }
+        }
+    }
+}
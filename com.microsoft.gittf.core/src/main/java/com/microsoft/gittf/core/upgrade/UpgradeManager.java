@@ -73,6 +73,12 @@ public class UpgradeManager
         {
             upgradeFromV0ToV1(repository, currentConfiguration);
         }
+
+        /* if the version is one or lower upgrade to version two */
+        if (existingFormat <= 1)
+        {
+            upgradeFromV1ToV2(repository, currentConfiguration);
+        }
     }
 
     private static void upgradeFromV0ToV1(final Repository repository, final GitTFConfiguration currentConfiguration)
@@ -109,4 +115,17 @@ public class UpgradeManager
         currentConfiguration.setFileFormatVersion(1);
         currentConfiguration.saveTo(repository);
     }
+
+    private static void upgradeFromV1ToV2(final Repository repository, final GitTFConfiguration currentConfiguration)
+        throws Exception
+    {
+        /*
+         * Move the "changesets" and "commits" sections of the "git-tf" config
+         * file to the changeset index
+         */
+        ChangesetCommitMap.moveConfigurationEntriesToIndex(repository);
+
+        currentConfiguration.setFileFormatVersion(2);
+        currentConfiguration.saveTo(repository);
+    }
 }
@@ -0,0 +1,171 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+import com.microsoft.gittf.core.interfaces.VersionControlService;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
+
+/**
+ * Iterates over the history of a server path in a range of changesets, oldest
+ * changeset first. The history is queried one page at a time as the changesets
+ * are consumed, so that the whole history never has to be held in memory and
+ * the first changesets are available before the rest has been queried.
+ */
+public class ChangesetHistoryPager
+    implements Iterator<Changeset>
+{
+    private final VersionControlService versionControlClient;
+    private final String serverPath;
+    private final int toChangesetID;
+    private final int pageSize;
+
+    private final LinkedList<Changeset> page = new LinkedList<Changeset>();
+
+    private int nextChangesetID;
+    private boolean exhausted;
+
+    /**
+     * Constructor
+     * 
+     * @param versionControlClient
+     *        the version control client to query the history with
+     * @param serverPath
+     *        the server path to query the history of
+     * @param fromChangesetID
+     *        the first changeset of the range (inclusive)
+     * @param toChangesetID
+     *        the last changeset of the range (inclusive)
+     * @param pageSize
+     *        the maximum number of changesets to query at once (must be
+     *        positive)
+     */
+    public ChangesetHistoryPager(
+        final VersionControlService versionControlClient,
+        final String serverPath,
+        final int fromChangesetID,
+        final int toChangesetID,
+        final int pageSize)
+    {
+        Check.notNull(versionControlClient, "versionControlClient"); //$NON-NLS-1$
+        Check.notNullOrEmpty(serverPath, "serverPath"); //$NON-NLS-1$
+        Check.isTrue(pageSize > 0, "pageSize > 0"); //$NON-NLS-1$
+
+        this.versionControlClient = versionControlClient;
+        this.serverPath = serverPath;
+        this.toChangesetID = toChangesetID;
+        this.pageSize = pageSize;
+
+        this.nextChangesetID = Math.max(fromChangesetID, 0);
+        this.exhausted = nextChangesetID > toChangesetID;
+    }
+
+    public boolean hasNext()
+    {
+        if (page.isEmpty() && !exhausted)
+        {
+            queryNextPage();
+        }
+
+        return !page.isEmpty();
+    }
+
+    public Changeset next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+
+        return page.removeFirst();
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    private void queryNextPage()
+    {
+        final Changeset[] changesets = queryHistory(pageSize, true);
+
+        if (changesets.length > 1 && changesets[0].getChangesetID() > changesets[1].getChangesetID())
+        {
+            /*
+             * The server does not sort the history in ascending order, the page
+             * would hold the newest changesets of the range instead of the
+             * oldest ones. Query the rest of the range at once.
+             */
+            final Changeset[] remaining = queryHistory(Integer.MAX_VALUE, false);
+
+            for (int i = remaining.length - 1; i >= 0; i--)
+            {
+                page.add(remaining[i]);
+            }
+
+            exhausted = true;
+            return;
+        }
+
+        for (final Changeset changeset : changesets)
+        {
+            page.add(changeset);
+        }
+
+        if (changesets.length < pageSize)
+        {
+            exhausted = true;
+        }
+        else
+        {
+            nextChangesetID = changesets[changesets.length - 1].getChangesetID() + 1;
+            exhausted = nextChangesetID > toChangesetID;
+        }
+    }
+
+    private Changeset[] queryHistory(final int maxCount, final boolean sortAscending)
+    {
+        final ChangesetVersionSpec toVersion = new ChangesetVersionSpec(toChangesetID);
+
+        return versionControlClient.queryHistory(
+            serverPath,
+            toVersion,
+            0,
+            RecursionType.FULL,
+            null,
+            new ChangesetVersionSpec(nextChangesetID),
+            toVersion,
+            maxCount,
+            false,
+            false,
+            false,
+            sortAscending);
+    }
+}
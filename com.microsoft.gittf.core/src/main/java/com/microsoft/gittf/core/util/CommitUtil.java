@@ -181,30 +181,19 @@ public final class CommitUtil
         Check.notNull(repository, "repository"); //$NON-NLS-1$
         Check.notNull(objectID, "objectID"); //$NON-NLS-1$
 
+        /* A complete id does not need to be looked up */
+        if (objectID.isComplete())
+        {
+            return objectID.toObjectId();
+        }
+
         if (repository != null)
         {
             ObjectReader objReader = repository.getObjectDatabase().newReader();
 
             try
             {
-                Collection<ObjectId> objects = objReader.resolve(objectID);
-
-                if (objects.size() == 0)
-                {
-                    return null;
-                }
-                else if (objects.size() == 1)
-                {
-                    return objects.iterator().next();
-                }
-                else
-                {
-                    throw new RuntimeException(Messages.formatString("RepositoryUtil.AmbiguousObjectFormat", objectID)); //$NON-NLS-1$
-                }
-            }
-            catch (IOException exception)
-            {
-                throw new RuntimeException(exception);
+                return resolveAbbreviatedId(objReader, objectID);
             }
             finally
             {
@@ -217,4 +206,49 @@ public final class CommitUtil
 
         return null;
     }
+
+    /**
+     * Resolves the abbreviated id specified using an existing object reader
+     * 
+     * @param objectReader
+     *        the object reader to use, the caller remains responsible for
+     *        releasing it
+     * @param objectID
+     *        objectid to expand
+     * @return
+     */
+    public static final ObjectId resolveAbbreviatedId(
+        final ObjectReader objectReader,
+        final AbbreviatedObjectId objectID)
+    {
+        Check.notNull(objectReader, "objectReader"); //$NON-NLS-1$
+        Check.notNull(objectID, "objectID"); //$NON-NLS-1$
+
+        if (objectID.isComplete())
+        {
+            return objectID.toObjectId();
+        }
+
+        try
+        {
+            Collection<ObjectId> objects = objectReader.resolve(objectID);
+
+            if (objects.size() == 0)
+            {
+                return null;
+            }
+            else if (objects.size() == 1)
+            {
+                return objects.iterator().next();
+            }
+            else
+            {
+                throw new RuntimeException(Messages.formatString("RepositoryUtil.AmbiguousObjectFormat", objectID)); //$NON-NLS-1$
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new RuntimeException(exception);
+        }
+    }
 }
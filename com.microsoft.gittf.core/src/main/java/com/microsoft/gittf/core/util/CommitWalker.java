@@ -32,6 +32,7 @@ import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevWalk;
 
 import com.microsoft.gittf.core.Messages;
@@ -290,55 +291,93 @@ public final class CommitWalker
         Check.notNull(walker, "walker"); //$NON-NLS-1$
         Check.notNull(start, "start"); //$NON-NLS-1$
 
-        List<RevCommit> path = null;
-
         /*
-         * We need to parse the start here since at this point only the id is
-         * loaded. This is essential for the getParents method to complete
-         * results.
+         * Depth first search from the start, following the last parent first.
+         * A commit is flagged when it is first visited: if it is reached again
+         * through another merge, its ancestors have already been searched
+         * without finding the end, so the search is linear in the number of
+         * commits rather than in the number of paths through the merges.
          */
-        walker.parseHeaders(start);
-
-        // parents are sorted in order of oldest first
-        RevCommit[] parents = start.getParents();
+        final RevFlag visited = walker.newFlag("visited"); //$NON-NLS-1$
 
-        /*
-         * If start == end, we've reached our target and should stop following
-         * this path. Likewise, if there are no parents and end == null, then we
-         * are simply looking for the initial commit and we've found that also.
-         */
-        if (end == null && parents.length == 0)
-        {
-            path = new ArrayList<RevCommit>();
-            path.add(null);
-        }
-        else if (end != null && start.getId().equals(end.getId()))
-        {
-            path = new ArrayList<RevCommit>();
-        }
-        else
+        try
         {
-            /* Recurse last parent first */
-            for (int parentIdx = parents.length - 1; parentIdx >= 0; parentIdx--)
+            final List<RevCommit> stack = new ArrayList<RevCommit>();
+            final List<Integer> nextParentIndexes = new ArrayList<Integer>();
+
+            /*
+             * We need to parse the commits we visit since at this point only
+             * the id is loaded. This is essential for the getParents method to
+             * complete results.
+             */
+            walker.parseHeaders(start);
+            start.add(visited);
+
+            stack.add(start);
+            nextParentIndexes.add(start.getParentCount() - 1);
+
+            while (!stack.isEmpty())
             {
-                RevCommit parentCommit = parents[parentIdx];
+                final int top = stack.size() - 1;
+                final RevCommit commit = stack.get(top);
+
+                /*
+                 * If commit == end, we've reached our target and should stop
+                 * following this path. Likewise, if there are no parents and
+                 * end == null, then we are simply looking for the initial
+                 * commit and we've found that also.
+                 */
+                if ((end == null && commit.getParentCount() == 0)
+                    || (end != null && commit.getId().equals(end.getId())))
+                {
+                    final List<RevCommit> path = new ArrayList<RevCommit>(stack.size() + 1);
+
+                    if (end == null)
+                    {
+                        path.add(null);
+                    }
+
+                    for (int i = top; i >= 0; i--)
+                    {
+                        path.add(stack.get(i));
+                    }
+
+                    return path;
+                }
+
+                // parents are sorted in order of oldest first
+                final int parentIdx = nextParentIndexes.get(top);
+
+                if (parentIdx < 0)
+                {
+                    stack.remove(top);
+                    nextParentIndexes.remove(top);
 
-                path = detectAutoSquashedPath(walker, parentCommit, end);
+                    continue;
+                }
+
+                nextParentIndexes.set(top, parentIdx - 1);
+
+                final RevCommit parentCommit = commit.getParent(parentIdx);
 
-                if (path != null)
+                if (parentCommit.has(visited))
                 {
-                    break;
+                    continue;
                 }
+
+                walker.parseHeaders(parentCommit);
+                parentCommit.add(visited);
+
+                stack.add(parentCommit);
+                nextParentIndexes.add(parentCommit.getParentCount() - 1);
             }
-        }
 
-        /* If we found a path, add the start to the end of the path. */
-        if (path != null)
+            return null;
+        }
+        finally
         {
-            path.add(start);
+            walker.disposeFlag(visited);
         }
-
-        return path;
     }
 
     /**
@@ -25,17 +25,30 @@
 package com.microsoft.gittf.core.util;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.TagCommand;
+import org.eclipse.jgit.internal.storage.file.RefDirectory;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
 import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
 
 import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
@@ -65,14 +78,163 @@ public final class TagUtil
             return false;
         }
 
-        String tagName = Messages.formatString("CreateCommitTask.TagNameFormat", //$NON-NLS-1$
+        return createTag(repository, commitID, getTFSChangesetTagName(changesetID), getTFSTagOwner(configuration));
+    }
+
+    /**
+     * Creates the tfs tags for the changesets specified. The tag objects are
+     * written through a single object inserter and the tag refs are updated
+     * in one batch.
+     * 
+     * @param repository
+     *        the git repository
+     * @param changesetCommits
+     *        the commit ids that the changesets map to keyed by changeset id
+     * @return true if all the tags were created
+     */
+    public static boolean createTFSChangesetTags(
+        final Repository repository,
+        final Map<Integer, ObjectId> changesetCommits)
+    {
+        Check.notNull(changesetCommits, "changesetCommits"); //$NON-NLS-1$
+
+        if (changesetCommits.isEmpty())
+        {
+            return true;
+        }
+
+        GitTFConfiguration configuration = GitTFConfiguration.loadFrom(repository);
+
+        if (!configuration.getTag())
+        {
+            return false;
+        }
+
+        final PersonIdent tagOwner = getTFSTagOwner(configuration);
+
+        final ObjectInserter inserter = repository.newObjectInserter();
+        final RevWalk walker = new RevWalk(repository);
+        try
+        {
+            final Map<String, Ref> existingTags = repository.getRefDatabase().getRefs(Constants.R_TAGS);
+
+            final BatchRefUpdate tagUpdate = repository.getRefDatabase().newBatchUpdate();
+            tagUpdate.setAllowNonFastForwards(true);
+            tagUpdate.disableRefLog();
+
+            for (Entry<Integer, ObjectId> changesetCommit : changesetCommits.entrySet())
+            {
+                final String tagName = getTFSChangesetTagName(changesetCommit.getKey());
+
+                final TagBuilder tag = new TagBuilder();
+                tag.setTag(tagName);
+                tag.setTagger(tagOwner);
+                tag.setObjectId(changesetCommit.getValue(), Constants.OBJ_COMMIT);
+
+                final ObjectId tagID = inserter.insert(tag);
+
+                /* Existing tags are replaced as with a forced tag command */
+                final Ref existingTag = existingTags.get(tagName);
+                final ObjectId existingTagID = existingTag != null ? existingTag.getObjectId() : ObjectId.zeroId();
+
+                tagUpdate.addCommand(new ReceiveCommand(existingTagID, tagID, Constants.R_TAGS + tagName));
+            }
+
+            inserter.flush();
+
+            tagUpdate.execute(walker, NullProgressMonitor.INSTANCE);
+
+            boolean tagged = true;
+
+            for (ReceiveCommand command : tagUpdate.getCommands())
+            {
+                if (command.getResult() != ReceiveCommand.Result.OK)
+                {
+                    log.warn(MessageFormat.format("Failed to create tag {0}: {1}", //$NON-NLS-1$
+                        command.getRefName(),
+                        command.getResult()));
+
+                    tagged = false;
+                }
+            }
+
+            return tagged;
+        }
+        catch (Exception e)
+        {
+            // this is not a critical failure so we can still continue with the
+            // operation even if tagging failed.
+
+            log.error(e);
+
+            return false;
+        }
+        finally
+        {
+            walker.release();
+            inserter.release();
+        }
+    }
+
+    /**
+     * Moves the tfs tags of the changesets specified into the packed-refs file
+     * so that deep clones do not leave a loose ref per changeset.
+     * 
+     * @param repository
+     *        the git repository
+     * @param changesetIDs
+     *        the changeset ids
+     */
+    public static void packTFSChangesetTags(final Repository repository, final Collection<Integer> changesetIDs)
+    {
+        Check.notNull(changesetIDs, "changesetIDs"); //$NON-NLS-1$
+
+        final RefDatabase refDatabase = repository.getRefDatabase();
+
+        if (changesetIDs.isEmpty() || !(refDatabase instanceof RefDirectory))
+        {
+            return;
+        }
+
+        try
+        {
+            final Map<String, Ref> existingTags = refDatabase.getRefs(Constants.R_TAGS);
+            final List<String> tagRefNames = new ArrayList<String>(changesetIDs.size());
+
+            for (int changesetID : changesetIDs)
+            {
+                final String tagName = getTFSChangesetTagName(changesetID);
+
+                if (existingTags.containsKey(tagName))
+                {
+                    tagRefNames.add(Constants.R_TAGS + tagName);
+                }
+            }
+
+            if (!tagRefNames.isEmpty())
+            {
+                ((RefDirectory) refDatabase).pack(tagRefNames);
+            }
+        }
+        catch (Exception e)
+        {
+            // the tags remain loose refs which is not a failure
+
+            log.error(e);
+        }
+    }
+
+    private static String getTFSChangesetTagName(final int changesetID)
+    {
+        return Messages.formatString("CreateCommitTask.TagNameFormat", //$NON-NLS-1$
             Integer.toString(changesetID));
+    }
 
-        PersonIdent tagOwner = new PersonIdent(GitTFConstants.GIT_TF_NAME, MessageFormat.format("{0} - {1}", //$NON-NLS-1$
+    private static PersonIdent getTFSTagOwner(final GitTFConfiguration configuration)
+    {
+        return new PersonIdent(GitTFConstants.GIT_TF_NAME, MessageFormat.format("{0} - {1}", //$NON-NLS-1$
             configuration.getServerURI().toString(),
             configuration.getServerPath()));
-
-        return createTag(repository, commitID, tagName, tagOwner);
     }
 
     /**
@@ -0,0 +1,352 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.util.tree;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.RepositoryPath;
+
+/**
+ * Edits an existing commit tree in place. Folders of the base tree are only
+ * read when they are visited and only the folders that have been modified
+ * (and their parents) are written back, all other sub trees keep their
+ * existing object ids.
+ * 
+ */
+public class CommitTreeEditor
+{
+    private final ObjectReader objectReader;
+    private final Folder root;
+
+    /**
+     * Constructor
+     * 
+     * @param objectReader
+     *        the object reader used to read the trees of the base tree
+     * @param baseTreeID
+     *        the tree to start from, or null to start from an empty tree
+     */
+    public CommitTreeEditor(final ObjectReader objectReader, final ObjectId baseTreeID)
+    {
+        Check.notNull(objectReader, "objectReader"); //$NON-NLS-1$
+
+        this.objectReader = objectReader;
+        this.root = new Folder(null, null, baseTreeID);
+
+        if (baseTreeID == null)
+        {
+            root.setModified();
+        }
+    }
+
+    /**
+     * Gets the entries of a folder in the tree
+     * 
+     * @param folderPath
+     *        the repository relative path of the folder, the empty string for
+     *        the root folder
+     * @return the entries of the folder keyed by name, or null if the folder
+     *         does not exist in the tree
+     * @throws IOException
+     */
+    public Map<CommitTreePath, CommitTreeEntry> getEntries(final String folderPath)
+        throws IOException
+    {
+        Check.notNull(folderPath, "folderPath"); //$NON-NLS-1$
+
+        final Folder folder = getFolder(folderPath, false);
+
+        if (folder == null)
+        {
+            return null;
+        }
+
+        return Collections.unmodifiableMap(folder.getEntries());
+    }
+
+    /**
+     * Adds a file to the tree or replaces the existing entry with the same
+     * path. Any missing parent folders are created.
+     * 
+     * @param filePath
+     *        the repository relative path of the file
+     * @param fileMode
+     *        the file mode of the file
+     * @param blobID
+     *        the object id of the file content
+     * @throws IOException
+     */
+    public void putFile(final String filePath, final FileMode fileMode, final ObjectId blobID)
+        throws IOException
+    {
+        Check.notNullOrEmpty(filePath, "filePath"); //$NON-NLS-1$
+        Check.notNull(fileMode, "fileMode"); //$NON-NLS-1$
+        Check.notNull(blobID, "blobID"); //$NON-NLS-1$
+
+        final Folder folder = getFolder(RepositoryPath.getParent(filePath), true);
+        final String fileName = RepositoryPath.getFileName(filePath);
+
+        folder.removeEntry(fileName);
+        folder.getEntries().put(new CommitTreePath(fileName, OBJ_BLOB), new CommitTreeEntry(fileMode, blobID));
+        folder.setModified();
+    }
+
+    /**
+     * Removes a file or a folder and all of its content from the tree. Nothing
+     * is done if the path does not exist.
+     * 
+     * @param path
+     *        the repository relative path of the file or folder
+     * @throws IOException
+     */
+    public void remove(final String path)
+        throws IOException
+    {
+        Check.notNullOrEmpty(path, "path"); //$NON-NLS-1$
+
+        final Folder folder = getFolder(RepositoryPath.getParent(path), false);
+
+        if (folder != null && folder.removeEntry(RepositoryPath.getFileName(path)))
+        {
+            folder.setModified();
+        }
+    }
+
+    /**
+     * Writes the modified folders of the tree. Folders that have become empty
+     * are removed from their parents.
+     * 
+     * @param repositoryInserter
+     *        the inserter to write the trees with
+     * @return the object id of the root tree
+     * @throws IOException
+     */
+    public ObjectId writeTree(final ObjectInserter repositoryInserter)
+        throws IOException
+    {
+        Check.notNull(repositoryInserter, "repositoryInserter"); //$NON-NLS-1$
+
+        return writeTree(repositoryInserter, root);
+    }
+
+    private ObjectId writeTree(final ObjectInserter repositoryInserter, final Folder folder)
+        throws IOException
+    {
+        if (!folder.isModified())
+        {
+            return folder.getTreeID();
+        }
+
+        final Map<CommitTreePath, CommitTreeEntry> entries = folder.getEntries();
+
+        /* Link up the modified child trees with this folder */
+        for (Entry<String, Folder> child : folder.getChildren().entrySet())
+        {
+            final Folder childFolder = child.getValue();
+
+            if (!childFolder.isModified())
+            {
+                continue;
+            }
+
+            final ObjectId childTreeID = writeTree(repositoryInserter, childFolder);
+            final CommitTreePath childPath = new CommitTreePath(child.getKey(), OBJ_TREE);
+
+            if (childFolder.getEntries().isEmpty())
+            {
+                entries.remove(childPath);
+            }
+            else
+            {
+                entries.put(childPath, new CommitTreeEntry(FileMode.TREE, childTreeID));
+            }
+        }
+
+        TreeFormatter treeFormatter = new TreeFormatter();
+
+        for (Entry<CommitTreePath, CommitTreeEntry> entry : entries.entrySet())
+        {
+            treeFormatter.append(
+                entry.getKey().getName(),
+                entry.getValue().getFileMode(),
+                entry.getValue().getObjectID());
+        }
+
+        final ObjectId treeID = treeFormatter.insertTo(repositoryInserter);
+
+        folder.setWritten(treeID);
+
+        return treeID;
+    }
+
+    private Folder getFolder(final String folderPath, final boolean create)
+        throws IOException
+    {
+        Folder folder = root;
+
+        if (folderPath.length() == 0)
+        {
+            return folder;
+        }
+
+        for (String name : folderPath.split(String.valueOf(RepositoryPath.PREFERRED_SEPARATOR_CHARACTER)))
+        {
+            Folder child = folder.getChildren().get(name);
+
+            if (child == null)
+            {
+                final CommitTreeEntry entry = folder.getEntries().get(new CommitTreePath(name, OBJ_TREE));
+
+                if (entry != null)
+                {
+                    child = new Folder(folder, name, entry.getObjectID());
+                }
+                else if (create)
+                {
+                    /* A file cannot share its name with a folder */
+                    folder.removeEntry(name);
+
+                    child = new Folder(folder, name, null);
+                    child.setModified();
+                }
+                else
+                {
+                    return null;
+                }
+
+                folder.getChildren().put(name, child);
+            }
+
+            folder = child;
+        }
+
+        return folder;
+    }
+
+    private class Folder
+    {
+        private final Folder parent;
+        private final String name;
+        private final Map<String, Folder> children = new HashMap<String, Folder>();
+
+        private ObjectId treeID;
+        private Map<CommitTreePath, CommitTreeEntry> entries;
+        private boolean modified = false;
+
+        public Folder(final Folder parent, final String name, final ObjectId treeID)
+        {
+            this.parent = parent;
+            this.name = name;
+            this.treeID = treeID;
+        }
+
+        public ObjectId getTreeID()
+        {
+            return treeID;
+        }
+
+        public Map<String, Folder> getChildren()
+        {
+            return children;
+        }
+
+        public Map<CommitTreePath, CommitTreeEntry> getEntries()
+            throws IOException
+        {
+            if (entries == null)
+            {
+                entries = new TreeMap<CommitTreePath, CommitTreeEntry>();
+
+                if (treeID != null)
+                {
+                    final CanonicalTreeParser treeParser = new CanonicalTreeParser(null, objectReader, treeID);
+
+                    while (!treeParser.eof())
+                    {
+                        final FileMode mode = treeParser.getEntryFileMode();
+                        final int type = mode == FileMode.TREE ? OBJ_TREE : OBJ_BLOB;
+
+                        entries.put(
+                            new CommitTreePath(treeParser.getEntryPathString(), type),
+                            new CommitTreeEntry(mode, treeParser.getEntryObjectId()));
+
+                        treeParser.next();
+                    }
+                }
+            }
+
+            return entries;
+        }
+
+        public boolean removeEntry(final String entryName)
+            throws IOException
+        {
+            final boolean removedFolder = getEntries().remove(new CommitTreePath(entryName, OBJ_TREE)) != null;
+            final boolean removedFile = getEntries().remove(new CommitTreePath(entryName, OBJ_BLOB)) != null;
+
+            if (removedFolder)
+            {
+                children.remove(entryName);
+            }
+
+            return removedFolder || removedFile;
+        }
+
+        public boolean isModified()
+        {
+            return modified;
+        }
+
+        public void setModified()
+        {
+            for (Folder folder = this; folder != null && !folder.modified; folder = folder.parent)
+            {
+                folder.modified = true;
+            }
+        }
+
+        public void setWritten(final ObjectId treeID)
+        {
+            this.treeID = treeID;
+            this.modified = false;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.config;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+
+public class ChangesetCommitIndexTest
+    extends TestCase
+{
+    private static final ObjectId COMMIT1 = ObjectId.fromString("1111111111111111111111111111111111111111"); //$NON-NLS-1$
+    private static final ObjectId COMMIT2 = ObjectId.fromString("2222222222222222222222222222222222222222"); //$NON-NLS-1$
+    private static final ObjectId COMMIT3 = ObjectId.fromString("3333333333333333333333333333333333333333"); //$NON-NLS-1$
+
+    private File indexFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+
+        indexFile = new File(Util.getTemporaryTestFilesLocation(getName()), "index"); //$NON-NLS-1$
+        indexFile.getParentFile().mkdirs();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testLookups()
+        throws Exception
+    {
+        final ChangesetCommitIndex index = new ChangesetCommitIndex(indexFile);
+
+        assertNull(index.getCommitID(1));
+        assertEquals(-1, index.getPreviousChangesetID(5));
+
+        index.put(2, COMMIT1);
+        index.put(5, COMMIT2);
+        index.put(9, COMMIT3);
+
+        assertEquals(COMMIT1, index.getCommitID(2));
+        assertEquals(COMMIT2, index.getCommitID(5));
+        assertEquals(COMMIT3, index.getCommitID(9));
+        assertNull(index.getCommitID(4));
+
+        assertEquals(-1, index.getPreviousChangesetID(2));
+        assertEquals(2, index.getPreviousChangesetID(5));
+        assertEquals(5, index.getPreviousChangesetID(7));
+        assertEquals(9, index.getPreviousChangesetID(100));
+
+        assertEquals(3, index.getEntriesAfter(-1).size());
+        assertEquals(2, index.getEntriesAfter(2).size());
+        assertEquals(COMMIT3, index.getEntriesAfter(6).get(9));
+        assertTrue(index.getEntriesAfter(9).isEmpty());
+
+        assertEquals(5, new ChangesetCommitIndex(indexFile).getChangesetID(COMMIT2));
+        assertEquals(-1, index.getChangesetID(ObjectId.zeroId()));
+    }
+
+    @Test
+    public void testReplaceEntry()
+        throws Exception
+    {
+        final ChangesetCommitIndex index = new ChangesetCommitIndex(indexFile);
+
+        index.put(2, COMMIT1);
+        index.put(5, COMMIT2);
+        index.put(2, COMMIT3);
+
+        assertEquals(COMMIT3, index.getCommitID(2));
+        assertEquals(2, index.getChangesetID(COMMIT3));
+        assertEquals(-1, index.getChangesetID(COMMIT1));
+
+        final SortedMap<Integer, ObjectId> expected = new TreeMap<Integer, ObjectId>();
+        expected.put(2, COMMIT3);
+        expected.put(5, COMMIT2);
+
+        assertEquals(expected, index.readAll());
+    }
+
+    @Test
+    public void testPartialRecordIsDropped()
+        throws Exception
+    {
+        final ChangesetCommitIndex index = new ChangesetCommitIndex(indexFile);
+
+        index.put(2, COMMIT1);
+
+        final RandomAccessFile file = new RandomAccessFile(indexFile, "rw"); //$NON-NLS-1$
+        try
+        {
+            file.seek(file.length());
+            file.writeInt(5);
+            file.write(new byte[5]);
+        }
+        finally
+        {
+            file.close();
+        }
+
+        assertEquals(1, index.readAll().size());
+        assertNull(index.getCommitID(5));
+
+        index.put(7, COMMIT2);
+
+        assertEquals(COMMIT1, index.getCommitID(2));
+        assertEquals(COMMIT2, index.getCommitID(7));
+        assertEquals(2, index.readAll().size());
+    }
+}
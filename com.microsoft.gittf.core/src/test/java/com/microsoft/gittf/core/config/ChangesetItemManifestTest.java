@@ -0,0 +1,193 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+
+public class ChangesetItemManifestTest
+    extends TestCase
+{
+    private static final ObjectId COMMIT1 = ObjectId.fromString("1111111111111111111111111111111111111111"); //$NON-NLS-1$
+    private static final ObjectId COMMIT2 = ObjectId.fromString("2222222222222222222222222222222222222222"); //$NON-NLS-1$
+    private static final ObjectId BLOB1 = ObjectId.fromString("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"); //$NON-NLS-1$
+    private static final ObjectId BLOB2 = ObjectId.fromString("bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb"); //$NON-NLS-1$
+
+    private static final byte[] HASH1 =
+    {
+        1, 2, 3, 4
+    };
+
+    private static final byte[] HASH2 =
+    {
+        5, 6, 7, 8
+    };
+
+    private File manifestFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+
+        manifestFile = new File(Util.getTemporaryTestFilesLocation(getName()), "manifest"); //$NON-NLS-1$
+        manifestFile.getParentFile().mkdirs();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testLookups()
+        throws Exception
+    {
+        final ChangesetItemManifest manifest = new ChangesetItemManifest(5);
+
+        manifest.put("$/project/a.txt", 3, HASH1, BLOB1); //$NON-NLS-1$
+        manifest.put("$/project/folder/b.txt", 5, null, BLOB2); //$NON-NLS-1$
+
+        assertEquals(BLOB1, manifest.getBlobID("$/Project/A.txt", 3, HASH1)); //$NON-NLS-1$
+        assertEquals(BLOB1, manifest.getBlobID("$/project/a.txt", 3, null)); //$NON-NLS-1$
+        assertEquals(BLOB2, manifest.getBlobID("$/project/folder/b.txt", 5, HASH2)); //$NON-NLS-1$
+
+        assertNull(manifest.getBlobID("$/project/a.txt", 4, HASH1)); //$NON-NLS-1$
+        assertNull(manifest.getBlobID("$/project/a.txt", 3, HASH2)); //$NON-NLS-1$
+        assertNull(manifest.getBlobID("$/project/c.txt", 3, HASH1)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testRemoveFolder()
+        throws Exception
+    {
+        final ChangesetItemManifest manifest = new ChangesetItemManifest(5);
+
+        manifest.put("$/project/folder/a.txt", 3, HASH1, BLOB1); //$NON-NLS-1$
+        manifest.put("$/project/folder/sub/b.txt", 4, HASH2, BLOB2); //$NON-NLS-1$
+        manifest.put("$/project/folder.txt", 5, HASH1, BLOB1); //$NON-NLS-1$
+        manifest.put("$/project/folder2/c.txt", 5, HASH1, BLOB1); //$NON-NLS-1$
+
+        manifest.remove("$/project/Folder"); //$NON-NLS-1$
+
+        assertEquals(2, manifest.size());
+        assertNull(manifest.getBlobID("$/project/folder/a.txt", 3, HASH1)); //$NON-NLS-1$
+        assertNull(manifest.getBlobID("$/project/folder/sub/b.txt", 4, HASH2)); //$NON-NLS-1$
+        assertEquals(BLOB1, manifest.getBlobID("$/project/folder.txt", 5, HASH1)); //$NON-NLS-1$
+        assertEquals(BLOB1, manifest.getBlobID("$/project/folder2/c.txt", 5, HASH1)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testMoveToKeepsFiles()
+        throws Exception
+    {
+        final ChangesetItemManifest manifest = new ChangesetItemManifest(5);
+        manifest.put("$/project/a.txt", 3, HASH1, BLOB1); //$NON-NLS-1$
+        manifest.put("$/project/b.txt", 4, HASH1, BLOB1); //$NON-NLS-1$
+
+        assertSame(manifest, manifest.moveTo(6));
+        manifest.put("$/project/a.txt", 6, HASH2, BLOB2); //$NON-NLS-1$
+
+        assertEquals(6, manifest.getChangesetID());
+        assertEquals(2, manifest.size());
+        assertEquals(BLOB2, manifest.getBlobID("$/project/a.txt", 6, HASH2)); //$NON-NLS-1$
+        assertNull(manifest.getBlobID("$/project/a.txt", 3, HASH1)); //$NON-NLS-1$
+        assertEquals(BLOB1, manifest.getBlobID("$/project/b.txt", 4, HASH1)); //$NON-NLS-1$
+
+        try
+        {
+            manifest.moveTo(5);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void testWriteAndRead()
+        throws Exception
+    {
+        final ChangesetItemManifest manifest = new ChangesetItemManifest(5);
+
+        manifest.put("$/project/A.txt", 3, HASH1, BLOB1); //$NON-NLS-1$
+        manifest.put("$/project/folder/b.txt", 5, null, BLOB2); //$NON-NLS-1$
+
+        manifest.write(manifestFile, COMMIT1);
+
+        final ChangesetItemManifest read = ChangesetItemManifest.read(manifestFile, 5, COMMIT1);
+
+        assertNotNull(read);
+        assertEquals(5, read.getChangesetID());
+        assertEquals(2, read.size());
+        assertEquals(BLOB1, read.getBlobID("$/project/a.txt", 3, HASH1)); //$NON-NLS-1$
+        assertNull(read.getBlobID("$/project/a.txt", 3, HASH2)); //$NON-NLS-1$
+        assertEquals(BLOB2, read.getBlobID("$/project/folder/b.txt", 5, HASH2)); //$NON-NLS-1$
+
+        /* Only the changeset and commit it was written for */
+        assertNull(ChangesetItemManifest.read(manifestFile, 6, COMMIT1));
+        assertNull(ChangesetItemManifest.read(manifestFile, 5, COMMIT2));
+        assertNull(ChangesetItemManifest.read(new File(manifestFile.getParentFile(), "missing"), 5, COMMIT1)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testNotAManifest()
+        throws Exception
+    {
+        final FileOutputStream output = new FileOutputStream(manifestFile);
+
+        try
+        {
+            output.write(new byte[]
+            {
+                'G', 'T', 'F'
+            });
+        }
+        finally
+        {
+            output.close();
+        }
+
+        try
+        {
+            ChangesetItemManifest.read(manifestFile, 5, COMMIT1);
+            fail();
+        }
+        catch (IOException e)
+        {
+            /* expected */
+        }
+    }
+}
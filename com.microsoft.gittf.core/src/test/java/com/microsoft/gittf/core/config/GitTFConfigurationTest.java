@@ -0,0 +1,78 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.config;
+
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+
+public class GitTFConfigurationTest
+    extends TestCase
+{
+    private Repository repository;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+        repository = Util.initializeGitRepo(getName());
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testLoadedConfigurationIsACopy()
+        throws Exception
+    {
+        final GitTFConfiguration configuration =
+            new GitTFConfiguration(new URI("http://fakeCollection:8080/tfs/DefaultCollection"), "$/"); //$NON-NLS-1$ //$NON-NLS-2$
+        configuration.setDownloadThreads(2);
+        assertTrue(configuration.saveTo(repository));
+
+        final GitTFConfiguration loaded = GitTFConfiguration.loadFrom(repository);
+        assertEquals(2, loaded.getDownloadThreads());
+
+        /* changing a loaded configuration does not change what others load */
+        loaded.setDownloadThreads(3);
+        assertEquals(2, GitTFConfiguration.loadFrom(repository).getDownloadThreads());
+
+        /* saving a configuration is seen by the next load */
+        assertTrue(loaded.saveTo(repository));
+        assertEquals(3, GitTFConfiguration.loadFrom(repository).getDownloadThreads());
+
+        GitTFConfiguration.removeFrom(repository);
+        assertNull(GitTFConfiguration.loadFrom(repository));
+    }
+}
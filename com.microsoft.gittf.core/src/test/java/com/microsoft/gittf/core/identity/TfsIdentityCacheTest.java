@@ -0,0 +1,120 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.identity;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+
+public class TfsIdentityCacheTest
+    extends TestCase
+{
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private static final URI SERVER_URI = URI.create("http://fakeCollection:8080/tfs/DefaultCollection"); //$NON-NLS-1$
+
+    private File cacheFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+
+        cacheFile = new File(Util.getRepositoryFile(getName()), "identities"); //$NON-NLS-1$
+        cacheFile.getParentFile().mkdirs();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testSearchesAreCachedAcrossInstances()
+        throws Exception
+    {
+        final TfsIdentityCache cache = new TfsIdentityCache(cacheFile, SERVER_URI, HOUR, HOUR);
+        cache.put(1, "John@Example.com", Arrays.asList(new TfsUser("DOMAIN\\john", "John Doe"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        cache.put(1, "nobody@example.com", null); //$NON-NLS-1$
+        cache.save();
+
+        final TfsIdentityCache reloaded = new TfsIdentityCache(cacheFile, SERVER_URI, HOUR, HOUR);
+
+        final List<TfsUser> users = reloaded.get(1, "john@example.com"); //$NON-NLS-1$
+        assertEquals(1, users.size());
+        assertEquals("DOMAIN\\john", users.get(0).getName()); //$NON-NLS-1$
+        assertEquals("John Doe", users.get(0).getDisplayName()); //$NON-NLS-1$
+
+        assertEquals(0, reloaded.get(1, "nobody@example.com").size()); //$NON-NLS-1$
+
+        assertNull(reloaded.get(2, "john@example.com")); //$NON-NLS-1$
+        assertNull(reloaded.get(1, "jane@example.com")); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testExpiredSearchesAreNotReturned()
+        throws Exception
+    {
+        final TfsIdentityCache cache = new TfsIdentityCache(cacheFile, SERVER_URI, HOUR, -1);
+        cache.put(1, "john@example.com", Arrays.asList(new TfsUser("DOMAIN\\john"))); //$NON-NLS-1$ //$NON-NLS-2$
+        cache.put(1, "nobody@example.com", null); //$NON-NLS-1$
+
+        assertNotNull(cache.get(1, "john@example.com")); //$NON-NLS-1$
+        assertNull(cache.get(1, "nobody@example.com")); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testSearchesOfAnotherServerAreNotReturned()
+        throws Exception
+    {
+        final TfsIdentityCache cache = new TfsIdentityCache(cacheFile, SERVER_URI, HOUR, HOUR);
+        cache.put(1, "john@example.com", Arrays.asList(new TfsUser("DOMAIN\\john"))); //$NON-NLS-1$ //$NON-NLS-2$
+        cache.save();
+
+        final URI otherServerURI = URI.create("http://otherServer:8080/tfs/DefaultCollection"); //$NON-NLS-1$
+        final TfsIdentityCache otherServerCache = new TfsIdentityCache(cacheFile, otherServerURI, HOUR, HOUR);
+
+        assertNull(otherServerCache.get(1, "john@example.com")); //$NON-NLS-1$
+
+        /* Saving for the other server replaces the searches of the first */
+        otherServerCache.put(1, "jane@example.com", null); //$NON-NLS-1$
+        otherServerCache.save();
+
+        final TfsIdentityCache reloaded = new TfsIdentityCache(cacheFile, SERVER_URI, HOUR, HOUR);
+
+        assertNull(reloaded.get(1, "john@example.com")); //$NON-NLS-1$
+        assertNull(reloaded.get(1, "jane@example.com")); //$NON-NLS-1$
+        assertNotNull(new TfsIdentityCache(cacheFile, otherServerURI, HOUR, HOUR).get(1, "jane@example.com")); //$NON-NLS-1$
+    }
+}
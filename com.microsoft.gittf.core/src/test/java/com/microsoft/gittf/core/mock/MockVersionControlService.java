@@ -27,14 +27,22 @@ package com.microsoft.gittf.core.mock;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import com.microsoft.gittf.core.OutputConstants;
 import com.microsoft.gittf.core.interfaces.VersionControlService;
 import com.microsoft.gittf.core.test.Util;
 import com.microsoft.tfs.core.clients.versioncontrol.GetItemsOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Change;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ChangeType;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.DeletedState;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
@@ -53,6 +61,7 @@ public class MockVersionControlService
     private static final int INVALID_CHANGESET_NUMBER = -1;
 
     private HashMap<Integer, HashSet<String>> itemData = new HashMap<Integer, HashSet<String>>();
+    private HashMap<Integer, HashSet<String>> deleteData = new HashMap<Integer, HashSet<String>>();
     private HashMap<Integer, MockChangesetProperties> changesetData = new HashMap<Integer, MockChangesetProperties>();
 
     private int latestChangeset;
@@ -95,7 +104,8 @@ public class MockVersionControlService
 
     public Item[] getItems(String path, ChangesetVersionSpec version, RecursionType recursion)
     {
-        // recursion is ignored
+        // full recursion only lists the files, one level recursion lists the
+        // folder itself, its files and its child folders
 
         int versionChangesetNumber = getChangesetNumberFromVersion(version);
         if (versionChangesetNumber == INVALID_CHANGESET_NUMBER)
@@ -103,28 +113,61 @@ public class MockVersionControlService
             return null;
         }
 
+        String serverPath = trimServerPath(path);
+        TreeMap<String, Integer> files = getFilesAtChangeset(versionChangesetNumber);
+
         ArrayList<Item> toReturn = new ArrayList<Item>();
-        HashMap<String, Integer> itemInList = new HashMap<String, Integer>();
 
-        for (int backwardChangesetCounter = versionChangesetNumber; backwardChangesetCounter > 0; backwardChangesetCounter--)
+        if (recursion == RecursionType.ONE_LEVEL)
         {
-            if (!itemData.containsKey(new Integer(backwardChangesetCounter)))
+            TreeMap<String, Integer> childFolders = new TreeMap<String, Integer>();
+            int folderChangeset = 0;
+
+            for (Entry<String, Integer> file : files.entrySet())
             {
-                continue;
+                if (file.getKey().equals(serverPath) || !isPathUnder(file.getKey(), serverPath))
+                {
+                    continue;
+                }
+
+                folderChangeset = Math.max(folderChangeset, file.getValue());
+
+                String childPath = file.getKey().substring(serverPath.length() + 1);
+                int separatorIndex = childPath.indexOf('/');
+
+                if (separatorIndex < 0)
+                {
+                    toReturn.add(createItem(file.getKey(), file.getValue(), ItemType.FILE));
+                }
+                else
+                {
+                    String childFolder = serverPath + "/" + childPath.substring(0, separatorIndex); //$NON-NLS-1$
+                    Integer childFolderChangeset = childFolders.get(childFolder);
+
+                    childFolders.put(childFolder, childFolderChangeset == null ? file.getValue() : Math.max(
+                        childFolderChangeset,
+                        file.getValue()));
+                }
             }
 
-            HashSet<String> changesetData = itemData.get(new Integer(backwardChangesetCounter));
+            if (folderChangeset > 0)
+            {
+                toReturn.add(0, createItem(serverPath, folderChangeset, ItemType.FOLDER));
+            }
 
-            Item[] itemsInChangeset = getItemsUnderPathFromChangeset(path, changesetData, backwardChangesetCounter);
-            for (Item itemInChangeset : itemsInChangeset)
+            for (Entry<String, Integer> childFolder : childFolders.entrySet())
             {
-                if (itemInList.containsKey(itemInChangeset.getServerItem()))
+                toReturn.add(createItem(childFolder.getKey(), childFolder.getValue(), ItemType.FOLDER));
+            }
+        }
+        else
+        {
+            for (Entry<String, Integer> file : files.entrySet())
+            {
+                if (isPathUnder(file.getKey(), serverPath))
                 {
-                    continue;
+                    toReturn.add(createItem(file.getKey(), file.getValue(), ItemType.FILE));
                 }
-
-                toReturn.add(itemInChangeset);
-                itemInList.put(itemInChangeset.getServerItem(), new Integer(itemInChangeset.getChangeSetID()));
             }
         }
 
@@ -142,16 +185,32 @@ public class MockVersionControlService
         fw.close();
     }
 
+    public void downloadFile(Item item, OutputStream outputStream)
+        throws IOException
+    {
+        outputStream.write(generatFileContent(item).getBytes());
+    }
+
     public void downloadShelvedFile(PendingChange shelvedChange, String downloadTo)
     {
 
     }
 
+    public void downloadShelvedFile(PendingChange shelvedChange, OutputStream outputStream)
+    {
+
+    }
+
     public void downloadBaseFile(PendingChange pendingChange, String downloadTo)
     {
 
     }
 
+    public void downloadBaseFile(PendingChange pendingChange, OutputStream outputStream)
+    {
+
+    }
+
     public Changeset getChangeset(int changesetID)
     {
         if (changesetID > 0 && changesetID <= latestChangeset)
@@ -159,6 +218,7 @@ public class MockVersionControlService
             Changeset change = new Changeset();
             change.setChangesetID(changesetID);
             UpdateChangesetOption(change);
+            change.setChanges(getChanges(changesetID));
 
             return change;
         }
@@ -186,6 +246,7 @@ public class MockVersionControlService
         // - versionFrom
         // - versionTo
         // - maxCount
+        // - sortAscending
 
         ArrayList<Changeset> toReturn = new ArrayList<Changeset>();
 
@@ -206,11 +267,6 @@ public class MockVersionControlService
 
             for (int backwardChangesetCounter = latestChangeset; backwardChangesetCounter > 0; backwardChangesetCounter--)
             {
-                if (toReturn.size() >= maxCount)
-                {
-                    break;
-                }
-
                 if (backwardChangesetCounter < versionFromChangeSetNumber)
                 {
                     break;
@@ -226,13 +282,7 @@ public class MockVersionControlService
                     continue;
                 }
 
-                if (!itemData.containsKey(new Integer(backwardChangesetCounter)))
-                {
-                    continue;
-                }
-
-                HashSet<String> changesetData = itemData.get(new Integer(backwardChangesetCounter));
-                if (!DoesChangesetDataHasServerPath(changesetData, serverOrLocalPath))
+                if (!DoesChangesetHaveServerPath(backwardChangesetCounter, serverOrLocalPath))
                 {
                     continue;
                 }
@@ -245,6 +295,18 @@ public class MockVersionControlService
             }
         }
 
+        // Like the server, return the first maxCount changesets in the
+        // requested order
+        if (sortAscending)
+        {
+            Collections.reverse(toReturn);
+        }
+
+        while (toReturn.size() > maxCount)
+        {
+            toReturn.remove(toReturn.size() - 1);
+        }
+
         Changeset[] changesets = new Changeset[toReturn.size()];
         return toReturn.toArray(changesets);
     }
@@ -270,6 +332,24 @@ public class MockVersionControlService
         }
     }
 
+    public void DeleteItem(String serverPath, int changesetId)
+    {
+        HashSet<String> changesetData = deleteData.get(new Integer(changesetId));
+
+        if (changesetData == null)
+        {
+            changesetData = new HashSet<String>();
+            deleteData.put(new Integer(changesetId), changesetData);
+        }
+
+        changesetData.add(serverPath);
+
+        if (changesetId > latestChangeset)
+        {
+            latestChangeset = changesetId;
+        }
+    }
+
     public void updateChangesetInformation(MockChangesetProperties changesetProperties, int changesetId)
     {
         changesetData.put(new Integer(changesetId), changesetProperties);
@@ -367,30 +447,165 @@ public class MockVersionControlService
         return false;
     }
 
-    private Item[] getItemsUnderPathFromChangeset(String path, HashSet<String> changesetData, int changesetNumber)
+    private boolean DoesChangesetHaveServerPath(int changesetNumber, String serverOrLocalPath)
     {
-        String serverPath = path.replace('*', ' ').trim();
-        serverPath =
-            (serverPath.endsWith("/") || serverPath.endsWith("\\")) ? serverPath.substring(0, serverPath.length() - 1) //$NON-NLS-1$ //$NON-NLS-2$
-                : serverPath;
+        HashSet<String> changesetData = itemData.get(new Integer(changesetNumber));
 
-        ArrayList<Item> toReturn = new ArrayList<Item>();
+        if (changesetData != null && DoesChangesetDataHasServerPath(changesetData, serverOrLocalPath))
+        {
+            return true;
+        }
 
-        for (String changesetItemPath : changesetData)
+        HashSet<String> deletedData = deleteData.get(new Integer(changesetNumber));
+
+        return deletedData != null && DoesChangesetDataHasServerPath(deletedData, serverOrLocalPath);
+    }
+
+    /**
+     * Gets the files that exist at a changeset and the changeset each was last
+     * changed in
+     */
+    private TreeMap<String, Integer> getFilesAtChangeset(int changesetNumber)
+    {
+        TreeMap<String, Integer> files = new TreeMap<String, Integer>();
+
+        for (int changesetCounter = 1; changesetCounter <= changesetNumber; changesetCounter++)
         {
-            if (changesetItemPath.startsWith(serverPath))
+            HashSet<String> deletedData = deleteData.get(new Integer(changesetCounter));
+
+            if (deletedData != null)
             {
-                Item item = new Item();
-                item.setServerItem(changesetItemPath);
-                item.setChangeSetID(changesetNumber);
-                item.setItemType(ItemType.FILE);
+                for (String deletedPath : deletedData)
+                {
+                    for (Iterator<String> filePaths = files.keySet().iterator(); filePaths.hasNext();)
+                    {
+                        if (isPathUnder(filePaths.next(), deletedPath))
+                        {
+                            filePaths.remove();
+                        }
+                    }
+                }
+            }
 
-                toReturn.add(item);
+            HashSet<String> changesetData = itemData.get(new Integer(changesetCounter));
+
+            if (changesetData != null)
+            {
+                for (String changedPath : changesetData)
+                {
+                    files.put(changedPath, changesetCounter);
+                }
             }
         }
 
-        Item[] items = new Item[toReturn.size()];
-        return toReturn.toArray(items);
+        return files;
+    }
+
+    /**
+     * Gets the changes of a changeset the way the server reports them, folders
+     * that are added or deleted have a change of their own
+     */
+    private Change[] getChanges(int changesetNumber)
+    {
+        TreeMap<String, Integer> previousFiles = getFilesAtChangeset(changesetNumber - 1);
+        ArrayList<Change> changes = new ArrayList<Change>();
+
+        HashSet<String> deletedData = deleteData.get(new Integer(changesetNumber));
+
+        if (deletedData != null)
+        {
+            for (String deletedPath : new TreeSet<String>(deletedData))
+            {
+                if (!previousFiles.containsKey(deletedPath))
+                {
+                    changes.add(createChange(deletedPath, changesetNumber, ItemType.FOLDER, ChangeType.DELETE));
+                }
+
+                for (String previousFile : previousFiles.keySet())
+                {
+                    if (isPathUnder(previousFile, deletedPath))
+                    {
+                        changes.add(createChange(previousFile, changesetNumber, ItemType.FILE, ChangeType.DELETE));
+                    }
+                }
+            }
+        }
+
+        HashSet<String> changesetData = itemData.get(new Integer(changesetNumber));
+
+        if (changesetData != null)
+        {
+            TreeSet<String> addedFolders = new TreeSet<String>();
+
+            for (String changedPath : new TreeSet<String>(changesetData))
+            {
+                String folder = getParentPath(changedPath);
+
+                while (folder.lastIndexOf('/') > 0)
+                {
+                    if (!hasFileUnder(previousFiles, folder) && addedFolders.add(folder))
+                    {
+                        changes.add(createChange(folder, changesetNumber, ItemType.FOLDER, ChangeType.ADD));
+                    }
+
+                    folder = getParentPath(folder);
+                }
+
+                changes.add(createChange(
+                    changedPath,
+                    changesetNumber,
+                    ItemType.FILE,
+                    previousFiles.containsKey(changedPath) ? ChangeType.EDIT : ChangeType.ADD));
+            }
+        }
+
+        Change[] changeArray = new Change[changes.size()];
+        return changes.toArray(changeArray);
+    }
+
+    private Change createChange(String serverPath, int changesetNumber, ItemType itemType, ChangeType changeType)
+    {
+        return new Change(createItem(serverPath, changesetNumber, itemType), changeType, null);
+    }
+
+    private Item createItem(String serverPath, int changesetNumber, ItemType itemType)
+    {
+        Item item = new Item();
+        item.setServerItem(serverPath);
+        item.setChangeSetID(changesetNumber);
+        item.setItemType(itemType);
+
+        return item;
+    }
+
+    private boolean hasFileUnder(TreeMap<String, Integer> files, String folderPath)
+    {
+        for (String filePath : files.keySet())
+        {
+            if (isPathUnder(filePath, folderPath))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private String trimServerPath(String path)
+    {
+        String serverPath = path.replace('*', ' ').trim();
+        return (serverPath.endsWith("/") || serverPath.endsWith("\\")) ? serverPath.substring(0, serverPath.length() - 1) //$NON-NLS-1$ //$NON-NLS-2$
+            : serverPath;
+    }
+
+    private String getParentPath(String serverPath)
+    {
+        return serverPath.substring(0, serverPath.lastIndexOf('/'));
+    }
+
+    private boolean isPathUnder(String path, String folderPath)
+    {
+        return path.equals(folderPath) || path.startsWith(folderPath + "/"); //$NON-NLS-1$
     }
 
     public Shelveset[] queryShelvesets(String shelvesetName, String shelvesetOwner)
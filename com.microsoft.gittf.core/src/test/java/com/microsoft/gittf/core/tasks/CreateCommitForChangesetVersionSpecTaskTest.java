@@ -0,0 +1,159 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.tasks;
+
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.config.ChangesetCommitMap;
+import com.microsoft.gittf.core.mock.MockVersionControlService;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.test.Util;
+import com.microsoft.gittf.core.util.RepositoryUtil;
+
+public class CreateCommitForChangesetVersionSpecTaskTest
+    extends TestCase
+{
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testIncrementalTreesMatchFullTrees()
+        throws Exception
+    {
+        URI projectCollectionURI = new URI("http://fakeCollection:8080/tfs/DefaultCollection"); //$NON-NLS-1$
+        String tfsPath = "$/project"; //$NON-NLS-1$
+        String gitRepositoryPath = Util.getRepositoryFile(getName()).getAbsolutePath();
+
+        final MockVersionControlService mockVersionControlService = new MockVersionControlService();
+
+        mockVersionControlService.AddFile("$/project/folder/file0.txt", 1); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder/file1.txt", 1); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder/nestedFolder/file0.txt", 1); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder2/file0.txt", 1); //$NON-NLS-1$
+
+        // Edit a file
+        mockVersionControlService.AddFile("$/project/folder/file0.txt", 2); //$NON-NLS-1$
+
+        // Add files to existing folders
+        mockVersionControlService.AddFile("$/project/folder/file2.txt", 3); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder2/file1.txt", 3); //$NON-NLS-1$
+
+        // Delete a file
+        mockVersionControlService.DeleteItem("$/project/folder/file1.txt", 4); //$NON-NLS-1$
+
+        // Add a folder with a nested folder
+        mockVersionControlService.AddFile("$/project/newFolder/file0.txt", 5); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/newFolder/subFolder/file0.txt", 5); //$NON-NLS-1$
+
+        // Delete a folder and edit a file
+        mockVersionControlService.DeleteItem("$/project/folder/nestedFolder", 6); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder2/file0.txt", 6); //$NON-NLS-1$
+
+        final Repository repository = RepositoryUtil.createNewRepository(gitRepositoryPath, false);
+
+        CloneTask cloneTask = new CloneTask(projectCollectionURI, mockVersionControlService, tfsPath, repository);
+        cloneTask.setDepth(6);
+        TaskStatus cloneTaskStatus = cloneTask.run(new NullTaskProgressMonitor());
+
+        // Verify task completed without errors
+        assertTrue(cloneTaskStatus.isOK());
+
+        final ChangesetCommitMap changesetCommitMap = new ChangesetCommitMap(repository);
+        final RevWalk revWalk = new RevWalk(repository);
+
+        for (int changesetID = 2; changesetID <= 6; changesetID++)
+        {
+            final ObjectId parentCommitID = changesetCommitMap.getCommitID(changesetID - 1, true);
+            assertNotNull(parentCommitID);
+
+            // Build the tree from the previous commit
+            CreateCommitForChangesetVersionSpecTask incrementalTask =
+                new CreateCommitForChangesetVersionSpecTask(
+                    repository,
+                    mockVersionControlService,
+                    mockVersionControlService.getChangeset(changesetID),
+                    null,
+                    parentCommitID,
+                    null);
+            incrementalTask.setPrecedingChangesetID(changesetID - 1);
+
+            assertTrue(incrementalTask.run(new NullTaskProgressMonitor()).isOK());
+            assertNull(incrementalTask.getCommittedItems());
+
+            // Build the tree from the full listing
+            CreateCommitForChangesetVersionSpecTask fullTask =
+                new CreateCommitForChangesetVersionSpecTask(
+                    repository,
+                    mockVersionControlService,
+                    mockVersionControlService.getChangeset(changesetID),
+                    null,
+                    parentCommitID,
+                    null);
+
+            assertTrue(fullTask.run(new NullTaskProgressMonitor()).isOK());
+            assertNotNull(fullTask.getCommittedItems());
+
+            assertEquals(fullTask.getCommitTreeID(), incrementalTask.getCommitTreeID());
+
+            // The cloned commit was built incrementally as well
+            RevCommit clonedCommit = revWalk.parseCommit(changesetCommitMap.getCommitID(changesetID, true));
+            assertEquals(fullTask.getCommitTreeID(), clonedCommit.getTree().getId());
+        }
+
+        // Verify the final tree
+        RevCommit lastCommit = revWalk.parseCommit(changesetCommitMap.getCommitID(6, true));
+
+        assertNotNull(TreeWalk.forPath(repository, "folder/file0.txt", lastCommit.getTree())); //$NON-NLS-1$
+        assertNotNull(TreeWalk.forPath(repository, "folder/file2.txt", lastCommit.getTree())); //$NON-NLS-1$
+        assertNotNull(TreeWalk.forPath(repository, "newFolder/subFolder/file0.txt", lastCommit.getTree())); //$NON-NLS-1$
+        assertNull(TreeWalk.forPath(repository, "folder/file1.txt", lastCommit.getTree())); //$NON-NLS-1$
+        assertNull(TreeWalk.forPath(repository, "folder/nestedFolder", lastCommit.getTree())); //$NON-NLS-1$
+
+        TreeWalk fileWalk = TreeWalk.forPath(repository, "folder2/file0.txt", lastCommit.getTree()); //$NON-NLS-1$
+        assertTrue(mockVersionControlService.verifyFileContent(
+            repository.open(fileWalk.getObjectId(0)).getBytes(),
+            "$/project/folder2/file0.txt", //$NON-NLS-1$
+            6));
+    }
+}
@@ -44,12 +44,14 @@ import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.junit.Test;
 
+import com.microsoft.gittf.core.config.ChangesetCommitMap;
 import com.microsoft.gittf.core.mock.MockChangesetProperties;
 import com.microsoft.gittf.core.mock.MockVersionControlService;
 import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.test.Util;
 import com.microsoft.gittf.core.util.RepositoryUtil;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
 
 public class FetchTaskTest
     extends TestCase
@@ -383,4 +385,105 @@ public class FetchTaskTest
         List<Ref> tags = git.tagList().call();
         assertEquals(3, tags.size());
     }
+
+    @Test
+    public void testForcedFetchKeepsHighWaterMark()
+        throws Exception
+    {
+        URI projectCollectionURI = new URI("http://fakeCollection:8080/tfs/DefaultCollection"); //$NON-NLS-1$
+        String tfsPath = "$/project"; //$NON-NLS-1$
+        String gitRepositoryPath = Util.getRepositoryFile(getName()).getAbsolutePath();
+
+        final MockVersionControlService mockVersionControlService = new MockVersionControlService();
+
+        mockVersionControlService.AddFile("$/project/folder/file0.txt", 1); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder/file1.txt", 2); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder/file2.txt", 3); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder/file1.txt", 4); //$NON-NLS-1$
+        mockVersionControlService.AddFile("$/project/folder/file2.txt", 5); //$NON-NLS-1$
+
+        final Repository repository = RepositoryUtil.createNewRepository(gitRepositoryPath, false);
+
+        CloneTask cloneTask = new CloneTask(projectCollectionURI, mockVersionControlService, tfsPath, repository);
+        cloneTask.setDepth(5);
+        TaskStatus cloneTaskStatus = cloneTask.run(new NullTaskProgressMonitor());
+
+        // Verify task completed without errors
+        assertTrue(cloneTaskStatus.isOK());
+        assertEquals(5, new ChangesetCommitMap(repository).getLastBridgedChangesetID(false));
+
+        // Force fetch an older changeset, this lowers the HWM
+        FetchTask forcedFetchTask = new FetchTask(repository, mockVersionControlService);
+        forcedFetchTask.setVersionSpec(new ChangesetVersionSpec(3));
+        forcedFetchTask.setForce(true);
+        TaskStatus forcedFetchTaskStatus = forcedFetchTask.run(new NullTaskProgressMonitor());
+
+        assertTrue(forcedFetchTaskStatus.isOK());
+        assertEquals(3, new ChangesetCommitMap(repository).getLastBridgedChangesetID(false));
+
+        // A normal fetch must not raise the HWM back to the later changesets
+        FetchTask fetchTask = new FetchTask(repository, mockVersionControlService);
+        fetchTask.setVersionSpec(new ChangesetVersionSpec(3));
+        TaskStatus fetchTaskStatus = fetchTask.run(new NullTaskProgressMonitor());
+
+        assertTrue(fetchTaskStatus.isOK());
+
+        final ChangesetCommitMap changesetCommitMap = new ChangesetCommitMap(repository);
+        assertEquals(3, changesetCommitMap.getLastBridgedChangesetID(false));
+        assertNotNull(changesetCommitMap.getCommitID(5, true));
+    }
+
+    @Test
+    public void testFetchDeepAcrossHistoryPages()
+        throws Exception
+    {
+        URI projectCollectionURI = new URI("http://fakeCollection:8080/tfs/DefaultCollection"); //$NON-NLS-1$
+        String tfsPath = "$/project"; //$NON-NLS-1$
+        String gitRepositoryPath = Util.getRepositoryFile(getName()).getAbsolutePath();
+
+        final MockVersionControlService mockVersionControlService = new MockVersionControlService();
+
+        mockVersionControlService.AddFile("$/project/folder/file0.txt", 1); //$NON-NLS-1$
+
+        final Repository repository = RepositoryUtil.createNewRepository(gitRepositoryPath, false);
+
+        CloneTask cloneTask = new CloneTask(projectCollectionURI, mockVersionControlService, tfsPath, repository);
+        TaskStatus cloneTaskStatus = cloneTask.run(new NullTaskProgressMonitor());
+
+        // Verify task completed without errors
+        assertTrue(cloneTaskStatus.isOK());
+
+        // Five new changesets, queried in pages of two
+        for (int i = 2; i <= 6; i++)
+        {
+            mockVersionControlService.AddFile("$/project/folder/file" + i + ".txt", i); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        FetchTask fetchTask = new FetchTask(repository, mockVersionControlService);
+        fetchTask.setDeep(true);
+        fetchTask.setHistoryPageSize(2);
+        TaskStatus fetchTaskStatus = fetchTask.run(new NullTaskProgressMonitor());
+
+        // Verify task completed without errors
+        assertTrue(fetchTaskStatus.isOK());
+        assertEquals(6, fetchTask.getLatestChangeSetId());
+
+        // Every changeset is fetched once, each commit on top of the previous
+        final ChangesetCommitMap changesetCommitMap = new ChangesetCommitMap(repository);
+        assertEquals(6, changesetCommitMap.getLastBridgedChangesetID(false));
+
+        RevWalk revWalk = new RevWalk(repository);
+
+        for (int i = 2; i <= 6; i++)
+        {
+            final ObjectId commitID = changesetCommitMap.getCommitID(i, true);
+            assertNotNull(commitID);
+
+            RevCommit commit = revWalk.parseCommit(commitID);
+            assertEquals(1, commit.getParentCount());
+            assertEquals(changesetCommitMap.getCommitID(i - 1, true), commit.getParent(0).getId());
+        }
+
+        assertEquals(changesetCommitMap.getCommitID(6, true), fetchTask.getCommitId());
+    }
 }
@@ -0,0 +1,109 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+
+public class CaseCollisionValidatorTest
+    extends TestCase
+{
+    private Repository repository;
+    private ObjectInserter inserter;
+    private ObjectId blob;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        inserter = repository.newObjectInserter();
+        blob = inserter.insert(Constants.OBJ_BLOB, Constants.encode("content")); //$NON-NLS-1$
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        inserter.release();
+        repository.close();
+
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testFindCollision()
+        throws Exception
+    {
+        final TreeFormatter valid = new TreeFormatter();
+        valid.append("a.txt", FileMode.REGULAR_FILE, blob); //$NON-NLS-1$
+        valid.append("b.txt", FileMode.REGULAR_FILE, blob); //$NON-NLS-1$
+        final ObjectId validTree = inserter.insert(valid);
+
+        final TreeFormatter invalid = new TreeFormatter();
+        invalid.append("B.txt", FileMode.REGULAR_FILE, blob); //$NON-NLS-1$
+        invalid.append("b.txt", FileMode.REGULAR_FILE, blob); //$NON-NLS-1$
+        final ObjectId invalidTree = inserter.insert(invalid);
+
+        final TreeFormatter root = new TreeFormatter();
+        root.append("Folder", FileMode.TREE, validTree); //$NON-NLS-1$
+        root.append("other", FileMode.TREE, validTree); //$NON-NLS-1$
+        final ObjectId validRoot = inserter.insert(root);
+
+        final TreeFormatter nestedCollision = new TreeFormatter();
+        nestedCollision.append("Folder", FileMode.TREE, validTree); //$NON-NLS-1$
+        nestedCollision.append("other", FileMode.TREE, invalidTree); //$NON-NLS-1$
+        final ObjectId nestedCollisionRoot = inserter.insert(nestedCollision);
+
+        final TreeFormatter folderCollision = new TreeFormatter();
+        folderCollision.append("Folder", FileMode.TREE, validTree); //$NON-NLS-1$
+        folderCollision.append("folder", FileMode.TREE, validTree); //$NON-NLS-1$
+        final ObjectId folderCollisionRoot = inserter.insert(folderCollision);
+
+        inserter.flush();
+
+        final CaseCollisionValidator validator = new CaseCollisionValidator(repository);
+
+        assertNull(validator.findCollision(validRoot));
+        assertEquals("other/b.txt", validator.findCollision(nestedCollisionRoot)); //$NON-NLS-1$
+        assertEquals("folder", validator.findCollision(folderCollisionRoot)); //$NON-NLS-1$
+
+        /* the result does not depend on what was validated before */
+        assertEquals("other/b.txt", new CaseCollisionValidator(repository).findCollision(nestedCollisionRoot)); //$NON-NLS-1$
+        assertNull(validator.findCollision(validRoot));
+    }
+}
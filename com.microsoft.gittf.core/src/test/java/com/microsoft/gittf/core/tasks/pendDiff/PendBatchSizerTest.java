@@ -0,0 +1,82 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class PendBatchSizerTest
+    extends TestCase
+{
+    @Test
+    public void testBatchSizeGrowsUpToMaximum()
+    {
+        final PendBatchSizer sizer = new PendBatchSizer(10, 50);
+
+        sizer.requestCompleted(10, 100);
+        assertEquals(20, sizer.getBatchSize());
+
+        sizer.requestCompleted(20, 100);
+        sizer.requestCompleted(40, 100);
+        assertEquals(50, sizer.getBatchSize());
+
+        sizer.requestCompleted(50, 100);
+        assertEquals(50, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testBatchSizeShrinksOnSlowRequests()
+    {
+        final PendBatchSizer sizer = new PendBatchSizer(40, 100);
+
+        /* A fast partial batch says nothing about the batch size */
+        sizer.requestCompleted(5, 100);
+        assertEquals(40, sizer.getBatchSize());
+
+        sizer.requestCompleted(40, PendBatchSizer.SLOW_REQUEST_MILLIS + 1);
+        assertEquals(20, sizer.getBatchSize());
+
+        sizer.requestCompleted(20, (PendBatchSizer.FAST_REQUEST_MILLIS + PendBatchSizer.SLOW_REQUEST_MILLIS) / 2);
+        assertEquals(20, sizer.getBatchSize());
+
+        for (int i = 0; i < 10; i++)
+        {
+            sizer.requestCompleted(sizer.getBatchSize(), PendBatchSizer.SLOW_REQUEST_MILLIS + 1);
+        }
+        assertEquals(1, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testFixedBatchSize()
+    {
+        final PendBatchSizer sizer = new PendBatchSizer(25);
+
+        sizer.requestCompleted(25, 100);
+        sizer.requestCompleted(25, PendBatchSizer.SLOW_REQUEST_MILLIS + 1);
+        assertEquals(25, sizer.getBatchSize());
+    }
+}
@@ -0,0 +1,139 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+
+public class TfsFolderRenameDetectorTest
+    extends TestCase
+{
+    private static final int FILE_COUNT = 20000;
+
+    private Repository repository;
+    private ObjectInserter inserter;
+    private ObjectId blob;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        inserter = repository.newObjectInserter();
+        blob = inserter.insert(Constants.OBJ_BLOB, Constants.encode("content")); //$NON-NLS-1$
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        inserter.release();
+        repository.close();
+
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testNestedFolderRenamesOfLargeTree()
+        throws Exception
+    {
+        /* src/main/file* moves to source/java/file* */
+        final ObjectId sourceTree = tree("src", tree("main", files())); //$NON-NLS-1$ //$NON-NLS-2$
+        final ObjectId targetTree = tree("source", tree("java", files())); //$NON-NLS-1$ //$NON-NLS-2$
+        inserter.flush();
+
+        final List<RenameChange> fileRenames = new ArrayList<RenameChange>();
+        for (int i = 0; i < FILE_COUNT; i++)
+        {
+            fileRenames.add(new RenameChange("src/main/file" + i, "source/java/file" + i, blob, false)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        final RevWalk walk = new RevWalk(repository);
+        final TfsFolderRenameDetector detector =
+            new TfsFolderRenameDetector(
+                repository,
+                walk.parseTree(sourceTree),
+                walk.parseTree(targetTree),
+                fileRenames);
+        walk.release();
+
+        detector.compute();
+
+        assertEquals(2, detector.getRenames().size());
+
+        assertEquals("src", detector.getRenames().get(0).getOldPath()); //$NON-NLS-1$
+        assertEquals("source", detector.getRenames().get(0).getNewPath()); //$NON-NLS-1$
+
+        assertEquals("source/main", detector.getRenames().get(1).getOldPath()); //$NON-NLS-1$
+        assertEquals("source/java", detector.getRenames().get(1).getNewPath()); //$NON-NLS-1$
+    }
+
+    private ObjectId files()
+        throws Exception
+    {
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < FILE_COUNT; i++)
+        {
+            names.add("file" + i); //$NON-NLS-1$
+        }
+
+        /* tree entries must be sorted by name */
+        Collections.sort(names);
+
+        final TreeFormatter formatter = new TreeFormatter();
+        for (String name : names)
+        {
+            formatter.append(name, FileMode.REGULAR_FILE, blob);
+        }
+
+        return inserter.insert(formatter);
+    }
+
+    private ObjectId tree(final String name, final ObjectId child)
+        throws Exception
+    {
+        final TreeFormatter formatter = new TreeFormatter();
+        formatter.append(name, FileMode.TREE, child);
+
+        return inserter.insert(formatter);
+    }
+}
@@ -0,0 +1,99 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+
+public class TreePathIndexTest
+    extends TestCase
+{
+    private Repository repository;
+    private ObjectInserter inserter;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        inserter = repository.newObjectInserter();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        inserter.release();
+        repository.close();
+
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testExists()
+        throws Exception
+    {
+        final ObjectId blob = inserter.insert(Constants.OBJ_BLOB, Constants.encode("content")); //$NON-NLS-1$
+
+        final TreeFormatter child = new TreeFormatter();
+        child.append("file.txt", FileMode.REGULAR_FILE, blob); //$NON-NLS-1$
+
+        final TreeFormatter parent = new TreeFormatter();
+        parent.append("child", FileMode.TREE, inserter.insert(child)); //$NON-NLS-1$
+        parent.append("file.txt", FileMode.REGULAR_FILE, blob); //$NON-NLS-1$
+
+        final TreeFormatter root = new TreeFormatter();
+        root.append("parent", FileMode.TREE, inserter.insert(parent)); //$NON-NLS-1$
+        root.append("root.txt", FileMode.REGULAR_FILE, blob); //$NON-NLS-1$
+
+        final ObjectId rootTree = inserter.insert(root);
+        inserter.flush();
+
+        final TreePathIndex index = new TreePathIndex(repository, rootTree);
+
+        assertTrue(index.exists("parent")); //$NON-NLS-1$
+        assertTrue(index.exists("parent/child")); //$NON-NLS-1$
+        assertTrue(index.exists("parent/child/file.txt")); //$NON-NLS-1$
+        assertTrue(index.exists("parent/file.txt")); //$NON-NLS-1$
+        assertTrue(index.exists("root.txt")); //$NON-NLS-1$
+
+        assertFalse(index.exists("Parent")); //$NON-NLS-1$
+        assertFalse(index.exists("parent/missing")); //$NON-NLS-1$
+        assertFalse(index.exists("parent/child/file.txt/missing")); //$NON-NLS-1$
+        assertFalse(index.exists("missing/child/file.txt")); //$NON-NLS-1$
+    }
+}
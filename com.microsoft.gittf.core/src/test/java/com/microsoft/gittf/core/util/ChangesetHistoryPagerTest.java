@@ -0,0 +1,202 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.microsoft.gittf.core.mock.MockVersionControlService;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+
+public class ChangesetHistoryPagerTest
+    extends TestCase
+{
+    private static final String SERVER_PATH = "$/project"; //$NON-NLS-1$
+
+    private static final int PAGE_SIZE = 2;
+
+    @Test
+    public void testPagesCoverRangeOldestFirst()
+        throws Exception
+    {
+        final CountingVersionControlService versionControlService = new CountingVersionControlService(true);
+
+        for (int i = 1; i <= 7; i++)
+        {
+            versionControlService.AddFile(SERVER_PATH + "/file" + i + ".txt", i); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        final ChangesetHistoryPager pager =
+            new ChangesetHistoryPager(versionControlService, SERVER_PATH, 1, 7, PAGE_SIZE);
+
+        assertEquals(toList(1, 2, 3, 4, 5, 6, 7), getChangesetIDs(pager));
+
+        /* Pages 1-2, 3-4, 5-6 and a last, partial page with 7 */
+        assertEquals(4, versionControlService.getQueryCount());
+    }
+
+    @Test
+    public void testRangeEndingOnPageBoundary()
+        throws Exception
+    {
+        final CountingVersionControlService versionControlService = new CountingVersionControlService(true);
+
+        for (int i = 1; i <= 8; i++)
+        {
+            versionControlService.AddFile(SERVER_PATH + "/file" + i + ".txt", i); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        final ChangesetHistoryPager pager =
+            new ChangesetHistoryPager(versionControlService, SERVER_PATH, 3, 6, PAGE_SIZE);
+
+        assertEquals(toList(3, 4, 5, 6), getChangesetIDs(pager));
+
+        /* The last page ends on the range, no empty page is queried */
+        assertEquals(2, versionControlService.getQueryCount());
+    }
+
+    @Test
+    public void testPagesSkipChangesetsOfOtherPaths()
+        throws Exception
+    {
+        final CountingVersionControlService versionControlService = new CountingVersionControlService(true);
+
+        for (int i = 1; i <= 9; i++)
+        {
+            final String folder = i % 2 == 0 ? SERVER_PATH : "$/other"; //$NON-NLS-1$
+
+            versionControlService.AddFile(folder + "/file" + i + ".txt", i); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        final ChangesetHistoryPager pager =
+            new ChangesetHistoryPager(versionControlService, SERVER_PATH, 1, 9, PAGE_SIZE);
+
+        assertEquals(toList(2, 4, 6, 8), getChangesetIDs(pager));
+        assertEquals(3, versionControlService.getQueryCount());
+    }
+
+    @Test
+    public void testServerIgnoringSortOrder()
+        throws Exception
+    {
+        final CountingVersionControlService versionControlService = new CountingVersionControlService(false);
+
+        for (int i = 1; i <= 7; i++)
+        {
+            versionControlService.AddFile(SERVER_PATH + "/file" + i + ".txt", i); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        final ChangesetHistoryPager pager =
+            new ChangesetHistoryPager(versionControlService, SERVER_PATH, 1, 7, PAGE_SIZE);
+
+        /* The first page is descending, the rest is queried at once */
+        assertEquals(toList(1, 2, 3, 4, 5, 6, 7), getChangesetIDs(pager));
+        assertEquals(2, versionControlService.getQueryCount());
+    }
+
+    private static List<Integer> getChangesetIDs(final ChangesetHistoryPager pager)
+    {
+        final List<Integer> changesetIDs = new ArrayList<Integer>();
+
+        while (pager.hasNext())
+        {
+            changesetIDs.add(pager.next().getChangesetID());
+        }
+
+        return changesetIDs;
+    }
+
+    private static List<Integer> toList(final int... changesetIDs)
+    {
+        final List<Integer> list = new ArrayList<Integer>();
+
+        for (final int changesetID : changesetIDs)
+        {
+            list.add(changesetID);
+        }
+
+        return list;
+    }
+
+    /**
+     * Counts the history queries, and optionally behaves like a server that
+     * always returns the history newest changeset first.
+     */
+    private static class CountingVersionControlService
+        extends MockVersionControlService
+    {
+        private final boolean supportsSortAscending;
+        private int queryCount = 0;
+
+        public CountingVersionControlService(final boolean supportsSortAscending)
+        {
+            this.supportsSortAscending = supportsSortAscending;
+        }
+
+        public int getQueryCount()
+        {
+            return queryCount;
+        }
+
+        @Override
+        public Changeset[] queryHistory(
+            String serverOrLocalPath,
+            VersionSpec version,
+            int deletionID,
+            RecursionType recursion,
+            String user,
+            VersionSpec versionFrom,
+            VersionSpec versionTo,
+            int maxCount,
+            boolean includeFileDetails,
+            boolean slotMode,
+            boolean generateDownloadURLs,
+            boolean sortAscending)
+        {
+            queryCount++;
+
+            return super.queryHistory(
+                serverOrLocalPath,
+                version,
+                deletionID,
+                recursion,
+                user,
+                versionFrom,
+                versionTo,
+                maxCount,
+                includeFileDetails,
+                slotMode,
+                generateDownloadURLs,
+                sortAscending && supportsSortAscending);
+        }
+    }
+}
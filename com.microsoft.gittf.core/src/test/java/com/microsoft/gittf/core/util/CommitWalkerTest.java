@@ -0,0 +1,154 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+
+package com.microsoft.gittf.core.util;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+import com.microsoft.gittf.core.util.CommitWalker.CommitDelta;
+
+public class CommitWalkerTest
+    extends TestCase
+{
+    /*
+     * Each level of criss-cross merges doubles the number of paths from the
+     * tip to the root, searching them one at a time would not complete.
+     */
+    private static final int CRISS_CROSS_LEVELS = 64;
+
+    private Repository repository;
+    private ObjectInserter inserter;
+    private ObjectId emptyTree;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        inserter = repository.newObjectInserter();
+        emptyTree = inserter.insert(new TreeFormatter());
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        inserter.release();
+        repository.close();
+
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testAutoSquashedPathFollowsLastParent()
+        throws Exception
+    {
+        final ObjectId root = commit("root"); //$NON-NLS-1$
+        final ObjectId left = commit("left", root); //$NON-NLS-1$
+        final ObjectId right = commit("right", root); //$NON-NLS-1$
+        final ObjectId merge = commit("merge", left, right); //$NON-NLS-1$
+
+        final List<CommitDelta> deltas = CommitWalker.getAutoSquashedCommitList(repository, root, merge);
+
+        assertEquals(2, deltas.size());
+        assertEquals(root, deltas.get(0).getFromCommit().getId());
+        assertEquals(right, deltas.get(0).getToCommit().getId());
+        assertEquals(right, deltas.get(1).getFromCommit().getId());
+        assertEquals(merge, deltas.get(1).getToCommit().getId());
+
+        final List<CommitDelta> unbridgedDeltas = CommitWalker.getAutoSquashedCommitList(repository, null, merge);
+
+        assertEquals(3, unbridgedDeltas.size());
+        assertNull(unbridgedDeltas.get(0).getFromCommit());
+        assertEquals(root, unbridgedDeltas.get(0).getToCommit().getId());
+    }
+
+    @Test
+    public void testAutoSquashedPathInCrissCrossHistory()
+        throws Exception
+    {
+        final ObjectId root = commit("root"); //$NON-NLS-1$
+        final ObjectId bridged = commit("bridged", root); //$NON-NLS-1$
+
+        ObjectId left = commit("left", bridged); //$NON-NLS-1$
+        ObjectId right = commit("right", root); //$NON-NLS-1$
+
+        for (int i = 0; i < CRISS_CROSS_LEVELS; i++)
+        {
+            final ObjectId newLeft = commit("left " + i, right, left); //$NON-NLS-1$
+            final ObjectId newRight = commit("right " + i, left, right); //$NON-NLS-1$
+
+            left = newLeft;
+            right = newRight;
+        }
+
+        /* Every path through the merges has to be rejected but the last one */
+        final ObjectId tip = commit("tip", left, right); //$NON-NLS-1$
+        final List<CommitDelta> deltas = CommitWalker.getAutoSquashedCommitList(repository, bridged, tip);
+
+        assertEquals(bridged, deltas.get(0).getFromCommit().getId());
+        assertEquals(tip, deltas.get(deltas.size() - 1).getToCommit().getId());
+
+        /* The search fails when the source is not an ancestor */
+        final ObjectId unrelated = commit("unrelated"); //$NON-NLS-1$
+
+        try
+        {
+            CommitWalker.getAutoSquashedCommitList(repository, unrelated, tip);
+            fail();
+        }
+        catch (Exception e)
+        {
+        }
+    }
+
+    private ObjectId commit(final String message, final ObjectId... parents)
+        throws Exception
+    {
+        final PersonIdent ident = new PersonIdent("gittf", "gittf@example.com"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(emptyTree);
+        commit.setParentIds(parents);
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage(message);
+
+        return inserter.insert(commit);
+    }
+}
@@ -0,0 +1,149 @@
+/***********************************************************************************************
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ * 
+ * MIT License:
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ***********************************************************************************************/
+
+package com.microsoft.gittf.core.util.tree;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Test;
+
+import com.microsoft.gittf.core.test.Util;
+
+public class CommitTreeEditorTest
+    extends TestCase
+{
+    private Repository repository;
+    private ObjectInserter inserter;
+    private ObjectReader reader;
+
+    protected void setUp()
+        throws Exception
+    {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        inserter = repository.newObjectInserter();
+        reader = repository.newObjectReader();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        inserter.release();
+        reader.release();
+        repository.close();
+
+        Util.tearDown(getName());
+    }
+
+    @Test
+    public void testUnmodifiedSubtreesAreReused()
+        throws Exception
+    {
+        final CommitTreeEditor baseEditor = new CommitTreeEditor(reader, null);
+        baseEditor.putFile("a/file0.txt", FileMode.REGULAR_FILE, blob("a0")); //$NON-NLS-1$ //$NON-NLS-2$
+        baseEditor.putFile("b/nested/file0.txt", FileMode.REGULAR_FILE, blob("b0")); //$NON-NLS-1$ //$NON-NLS-2$
+        final ObjectId baseTree = baseEditor.writeTree(inserter);
+
+        final CommitTreeEditor editor = new CommitTreeEditor(reader, baseTree);
+        editor.putFile("a/file1.txt", FileMode.EXECUTABLE_FILE, blob("a1")); //$NON-NLS-1$ //$NON-NLS-2$
+        final ObjectId tree = editor.writeTree(inserter);
+
+        assertFalse(baseTree.equals(tree));
+        assertEquals(getObjectId(baseTree, "b"), getObjectId(tree, "b")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(blob("a0"), getObjectId(tree, "a/file0.txt")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(blob("a1"), getObjectId(tree, "a/file1.txt")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final Map<CommitTreePath, CommitTreeEntry> entries = new CommitTreeEditor(reader, tree).getEntries("a"); //$NON-NLS-1$
+        assertEquals(FileMode.EXECUTABLE_FILE, entries.get(new CommitTreePath("file1.txt", OBJ_BLOB)).getFileMode()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testSameTreeAsBuiltFromScratch()
+        throws Exception
+    {
+        final CommitTreeEditor baseEditor = new CommitTreeEditor(reader, null);
+        baseEditor.putFile("a/file0.txt", FileMode.REGULAR_FILE, blob("a0")); //$NON-NLS-1$ //$NON-NLS-2$
+        baseEditor.putFile("a/file1.txt", FileMode.REGULAR_FILE, blob("a1")); //$NON-NLS-1$ //$NON-NLS-2$
+        baseEditor.putFile("c.txt", FileMode.REGULAR_FILE, blob("c")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final CommitTreeEditor editor = new CommitTreeEditor(reader, baseEditor.writeTree(inserter));
+        editor.remove("a/file1.txt"); //$NON-NLS-1$
+        editor.putFile("a.b/file.txt", FileMode.REGULAR_FILE, blob("ab")); //$NON-NLS-1$ //$NON-NLS-2$
+        editor.putFile("c.txt", FileMode.REGULAR_FILE, blob("c2")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final CommitTreeEditor expectedEditor = new CommitTreeEditor(reader, null);
+        expectedEditor.putFile("c.txt", FileMode.REGULAR_FILE, blob("c2")); //$NON-NLS-1$ //$NON-NLS-2$
+        expectedEditor.putFile("a.b/file.txt", FileMode.REGULAR_FILE, blob("ab")); //$NON-NLS-1$ //$NON-NLS-2$
+        expectedEditor.putFile("a/file0.txt", FileMode.REGULAR_FILE, blob("a0")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        assertEquals(expectedEditor.writeTree(inserter), editor.writeTree(inserter));
+    }
+
+    @Test
+    public void testEmptyFoldersAreRemoved()
+        throws Exception
+    {
+        final CommitTreeEditor baseEditor = new CommitTreeEditor(reader, null);
+        baseEditor.putFile("a/b/file0.txt", FileMode.REGULAR_FILE, blob("a0")); //$NON-NLS-1$ //$NON-NLS-2$
+        baseEditor.putFile("c.txt", FileMode.REGULAR_FILE, blob("c")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final CommitTreeEditor editor = new CommitTreeEditor(reader, baseEditor.writeTree(inserter));
+        editor.remove("a/b/file0.txt"); //$NON-NLS-1$
+        final ObjectId tree = editor.writeTree(inserter);
+
+        final Map<CommitTreePath, CommitTreeEntry> entries = new CommitTreeEditor(reader, tree).getEntries(""); //$NON-NLS-1$
+        assertEquals(1, entries.size());
+        assertFalse(entries.containsKey(new CommitTreePath("a", OBJ_TREE))); //$NON-NLS-1$
+        assertNull(new CommitTreeEditor(reader, tree).getEntries("a")); //$NON-NLS-1$
+    }
+
+    private ObjectId blob(final String content)
+        throws Exception
+    {
+        return inserter.insert(OBJ_BLOB, content.getBytes("UTF-8")); //$NON-NLS-1$
+    }
+
+    private ObjectId getObjectId(final ObjectId tree, final String path)
+        throws Exception
+    {
+        final TreeWalk treeWalk = TreeWalk.forPath(reader, path, tree);
+        assertNotNull(treeWalk);
+
+        return treeWalk.getObjectId(0);
+    }
+}